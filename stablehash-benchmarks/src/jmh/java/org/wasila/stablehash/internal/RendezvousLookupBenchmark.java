@@ -0,0 +1,79 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendezvous lookup by key hash for growing number of nodes with equal and random weights.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RendezvousLookupBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int nodes;
+
+    @Param({"false", "true"})
+    public boolean weighted;
+
+    private RendezvousHash<String> hash;
+    private long[] hashes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Map<String, Integer> weights = new HashMap<>();
+        for (int i = 0; i < nodes; i++) {
+            weights.put("node-" + i, weighted ? 1 + random.nextInt(100) : 1);
+        }
+        hash = new RendezvousHash<>(weights);
+
+        hashes = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hashes[i] = random.nextLong();
+        }
+    }
+
+    @Benchmark
+    public String lookup() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return hash.nodeForHash(hashes[next]);
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wasila.stablehash.StableHashOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares replica lookup by ring walk with lookup in precomputed table of distinct successors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplicaLookupBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"10", "100", "1000"})
+    public int nodes;
+
+    @Param({"0", "3"})
+    public int precomputedReplicas;
+
+    private ConsistentHash<String> hash;
+    private long[] hashes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<String> nodeList = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            nodeList.add("node-" + i);
+        }
+        hash = new ConsistentHash<>(nodeList, StableHashOptions.defaults().withPrecomputedReplicas(precomputedReplicas));
+
+        Random random = new Random(42);
+        hashes = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hashes[i] = random.nextLong();
+        }
+    }
+
+    @Benchmark
+    public Set<String> replicas() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return hash.getNodesForHash(hashes[next], 3);
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wasila.stablehash.SearchLayout;
+import org.wasila.stablehash.StableHashOptions;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares successor search of ring layouts on rings of growing size. Lookups use random
+ * 32-bit hashes so that every search walks cold part of the structure on large rings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RingSearchBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "4000000"})
+    public int points;
+
+    @Param({"BINARY", "EYTZINGER", "BTREE", "RADIX_BUCKETS"})
+    public SearchLayout layout;
+
+    private Ring ring;
+    private long[] hashes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        RingBuilder builder = new RingBuilder(points);
+        for (int i = 0; i < points; i++) {
+            builder.add(random.nextInt() & 0xFFFFFFFFL, i % 100);
+        }
+        ring = builder.build(StableHashOptions.defaults().withSearchLayout(layout));
+
+        hashes = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hashes[i] = random.nextInt() & 0xFFFFFFFFL;
+        }
+    }
+
+    @Benchmark
+    public int successor() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return ring.ownerAt(ring.successor(hashes[next]));
+    }
+
+}
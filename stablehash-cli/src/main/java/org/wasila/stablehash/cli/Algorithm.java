@@ -0,0 +1,51 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.util.Map;
+
+/**
+ * Algorithms the tool can route keys with.
+ */
+public enum Algorithm {
+
+    CONSISTENT {
+        @Override
+        StableHash<String> create(Map<String, Integer> weights, int partitions) {
+            return StableHashStaticFactory.newConsistentHash(weights);
+        }
+    },
+
+    RENDEZVOUS {
+        @Override
+        StableHash<String> create(Map<String, Integer> weights, int partitions) {
+            return StableHashStaticFactory.newRendezvousHash(weights);
+        }
+    },
+
+    PARTITIONED {
+        @Override
+        StableHash<String> create(Map<String, Integer> weights, int partitions) {
+            return StableHashStaticFactory.newPartitionedHash(weights, partitions);
+        }
+    };
+
+    abstract StableHash<String> create(Map<String, Integer> weights, int partitions);
+
+}
@@ -0,0 +1,150 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+import org.wasila.stablehash.StableHash;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line tool answering which node owns every key of a key file and which keys move when topology changes.
+ *
+ * Per node counts (and number of moved keys) are printed to standard output; per key assignments are written
+ * to file given with {@code --out}.
+ */
+public class CliMain {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: stablehash-cli --topology FILE --keys FILE [options]",
+            "  --topology FILE       nodes, one per line: name [weight]",
+            "  --new-topology FILE   compare with this topology; only keys which move are written",
+            "  --keys FILE           key file",
+            "  --format FORMAT       lines (default) or length-prefixed (32-bit big-endian length before every key)",
+            "  --algorithm NAME      consistent (default), rendezvous or partitioned",
+            "  --partitions N        number of partitions of partitioned algorithm (default 4096)",
+            "  --keyed               hash keys as KeyedStableHash with KeyHasher.ofString() does, without decoding them",
+            "  --threads N           number of routing threads (default: number of processors)",
+            "  --chunk-size BYTES    size of key file chunk routed by one task (default 32MB)",
+            "  --out FILE            write key<TAB>node (or key<TAB>oldNode<TAB>newNode) lines to FILE");
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * @return process exit code: 0 on success, 1 on I/O error, 2 on invalid arguments
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Path topology = null;
+        Path newTopology = null;
+        Path keys = null;
+        Path output = null;
+        KeyFormat format = KeyFormat.LINES;
+        Algorithm algorithm = Algorithm.CONSISTENT;
+        int partitions = 4096;
+        boolean keyed = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkSize = KeyFile.DEFAULT_CHUNK_SIZE;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--topology":
+                        topology = Paths.get(value(args, ++i));
+                        break;
+                    case "--new-topology":
+                        newTopology = Paths.get(value(args, ++i));
+                        break;
+                    case "--keys":
+                        keys = Paths.get(value(args, ++i));
+                        break;
+                    case "--out":
+                        output = Paths.get(value(args, ++i));
+                        break;
+                    case "--format":
+                        format = KeyFormat.valueOf(value(args, ++i).toUpperCase(Locale.ROOT).replace('-', '_'));
+                        break;
+                    case "--algorithm":
+                        algorithm = Algorithm.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "--partitions":
+                        partitions = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--keyed":
+                        keyed = true;
+                        break;
+                    case "--threads":
+                        threads = positive(Integer.parseInt(value(args, ++i)), "--threads");
+                        break;
+                    case "--chunk-size":
+                        chunkSize = positive(Integer.parseInt(value(args, ++i)), "--chunk-size");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (topology == null || keys == null) {
+                throw new IllegalArgumentException("--topology and --keys are required");
+            }
+
+            Map<String, Integer> weights = Topology.read(topology);
+            StableHash<String> hash = algorithm.create(weights, partitions);
+            StableHash<String> newHash = newTopology == null ? null : Topology.derive(hash, weights, Topology.read(newTopology));
+            KeyRouter router = new KeyRouter(hash, newHash, keyed, threads, chunkSize);
+
+            RoutingSummary summary;
+            if (output == null) {
+                summary = router.route(keys, format, null);
+            } else {
+                try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    summary = router.route(keys, format, channel);
+                }
+            }
+            out.print(summary);
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println("I/O error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static int positive(int value, String option) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid value of " + option + ": " + value + "; should be > 0.");
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Key file split into chunks ending on key boundaries. Every chunk is memory-mapped separately (so files
+ * bigger than 2GB are supported) and keys are parsed in place from the mapped buffer.
+ */
+final class KeyFile implements Closeable {
+
+    static final int DEFAULT_CHUNK_SIZE = 32 << 20;
+
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final int SCAN_BUFFER_SIZE = 4096;
+
+    /**
+     * Receives key as range of buffer; buffer must not be kept after the call.
+     */
+    interface KeyConsumer {
+
+        void accept(ByteBuffer buffer, int offset, int length);
+
+    }
+
+    static final class Chunk {
+
+        final long start;
+        final int length;
+
+        Chunk(long start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+    }
+
+    private final FileChannel channel;
+    private final KeyFormat format;
+    private final long size;
+
+    KeyFile(Path path, KeyFormat format) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.format = format;
+        this.size = channel.size();
+    }
+
+    List<Chunk> split(int chunkSize) throws IOException {
+        return format == KeyFormat.LINES ? splitLines(chunkSize) : splitLengthPrefixed(chunkSize);
+    }
+
+    MappedByteBuffer map(Chunk chunk) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.length);
+    }
+
+    void forEachKey(ByteBuffer buffer, KeyConsumer consumer) {
+        int limit = buffer.limit();
+        if (format == KeyFormat.LINES) {
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    acceptLine(buffer, lineStart, i, consumer);
+                    lineStart = i + 1;
+                }
+            }
+            acceptLine(buffer, lineStart, limit, consumer);
+        } else {
+            int pos = 0;
+            while (pos < limit) {
+                int length = buffer.getInt(pos);
+                consumer.accept(buffer, pos + 4, length);
+                pos += 4 + length;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void acceptLine(ByteBuffer buffer, int start, int end, KeyConsumer consumer) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end > start) {
+            consumer.accept(buffer, start, end - start);
+        }
+    }
+
+    private List<Chunk> splitLines(int chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long pos = 0;
+        while (pos < size) {
+            long end = Math.min(pos + chunkSize, size);
+            if (end < size) {
+                end = nextLineStart(end - 1);
+            }
+            chunks.add(chunk(pos, end));
+            pos = end;
+        }
+        return chunks;
+    }
+
+    private long nextLineStart(long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long pos = from;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private List<Chunk> splitLengthPrefixed(int chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        long chunkStart = 0;
+        long pos = 0;
+        while (pos < size) {
+            if (pos + 4 > size) {
+                throw new IOException("Truncated key length at offset " + pos);
+            }
+            if (window == null || pos + 4 > windowStart + window.limit()) {
+                windowStart = pos;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW_SIZE, size - pos));
+            }
+            int length = window.getInt((int) (pos - windowStart));
+            if (length < 0 || pos + 4 + length > size) {
+                throw new IOException("Invalid key length " + length + " at offset " + pos);
+            }
+            long next = pos + 4 + length;
+            if (next - chunkStart > chunkSize && pos > chunkStart) {
+                chunks.add(chunk(chunkStart, pos));
+                chunkStart = pos;
+            }
+            pos = next;
+        }
+        if (pos > chunkStart) {
+            chunks.add(chunk(chunkStart, pos));
+        }
+        return chunks;
+    }
+
+    private static Chunk chunk(long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Key at offset " + start + " is too long");
+        }
+        return new Chunk(start, (int) (end - start));
+    }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+/**
+ * Layout of keys in a key file.
+ */
+public enum KeyFormat {
+
+    /**
+     * One key per line; lines end with LF or CRLF, empty lines are skipped.
+     */
+    LINES,
+
+    /**
+     * Every key is preceded by its length in bytes as 32-bit big-endian integer.
+     */
+    LENGTH_PREFIXED
+
+}
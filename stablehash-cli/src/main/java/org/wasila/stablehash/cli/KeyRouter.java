@@ -0,0 +1,229 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+import org.wasila.stablehash.KeyHasher;
+import org.wasila.stablehash.KeyedStableHash;
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Routes all keys of a key file. Chunks of the file are routed in parallel; output of every chunk is
+ * collected in its own buffer and written to the output channel in file order, with bounded number
+ * of chunks in flight.
+ *
+ * Without new topology output has one {@code key<TAB>node} line per key. With new topology only keys
+ * which move are written as {@code key<TAB>oldNode<TAB>newNode}.
+ */
+public final class KeyRouter {
+
+    static final String NO_NODE = "-";
+
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private final StableHash<String> hash;
+    private final StableHash<String> newHash;
+    private final boolean keyed;
+    private final int threads;
+    private final int chunkSize;
+
+    /**
+     * @param hash      Hash to route keys with
+     * @param newHash   Hash of new topology to compare with or null
+     * @param keyed     true to hash keys as {@code keyed(hash, KeyHasher.ofString())} does, directly from
+     *                  mapped file; false to hash them as {@code hash.getNode(String)} does
+     * @param threads   Number of routing threads
+     * @param chunkSize Size of chunks of key file routed by single task
+     */
+    public KeyRouter(StableHash<String> hash, StableHash<String> newHash, boolean keyed, int threads, int chunkSize) {
+        this.hash = hash;
+        this.newHash = newHash;
+        this.keyed = keyed;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param keys      Key file
+     * @param format    Format of key file
+     * @param out       Channel receiving per key output or null to count keys only
+     * @return          Per node counts
+     */
+    public RoutingSummary route(Path keys, KeyFormat format, WritableByteChannel out) throws IOException {
+        Map<String, Long> before = initialCounts(hash);
+        Map<String, Long> after = newHash == null ? null : initialCounts(newHash);
+        long total = 0;
+        long moved = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (KeyFile file = new KeyFile(keys, format)) {
+            Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+            for (KeyFile.Chunk chunk : file.split(chunkSize)) {
+                inFlight.add(executor.submit(() -> routeChunk(file, chunk, out != null)));
+                if (inFlight.size() >= threads * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                    ChunkResult result = complete(inFlight.poll(), out);
+                    total += result.keys;
+                    moved += result.moved;
+                    merge(before, result.before);
+                    merge(after, result.after);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                ChunkResult result = complete(inFlight.poll(), out);
+                total += result.keys;
+                moved += result.moved;
+                merge(before, result.before);
+                merge(after, result.after);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new RoutingSummary(total, moved, before, after);
+    }
+
+    private ChunkResult routeChunk(KeyFile file, KeyFile.Chunk chunk, boolean withOutput) throws IOException {
+        Lookup lookup = lookup(hash);
+        Lookup newLookup = newHash == null ? null : lookup(newHash);
+        ChunkResult result = new ChunkResult(withOutput ? chunk.length + chunk.length / 2 : 0);
+        ByteKey key = new ByteKey();
+
+        file.forEachKey(file.map(chunk), (buffer, offset, length) -> {
+            key.set(buffer, offset, length);
+            String node = lookup.nodeOf(key);
+            result.keys++;
+            result.before.merge(node, 1L, Long::sum);
+            if (newLookup == null) {
+                if (withOutput) {
+                    result.write(key, node, null);
+                }
+            } else {
+                String newNode = newLookup.nodeOf(key);
+                result.after.merge(newNode, 1L, Long::sum);
+                if (!node.equals(newNode)) {
+                    result.moved++;
+                    if (withOutput) {
+                        result.write(key, node, newNode);
+                    }
+                }
+            }
+        });
+        result.output.flip();
+        return result;
+    }
+
+    private Lookup lookup(StableHash<String> stableHash) {
+        if (keyed) {
+            KeyedStableHash<CharSequence, String> keyedHash = StableHashStaticFactory.keyed(stableHash, KeyHasher.ofString());
+            return key -> keyedHash.getNode(key).orElse(NO_NODE);
+        }
+        return key -> stableHash.getNode(key.toString()).orElse(NO_NODE);
+    }
+
+    private static ChunkResult complete(Future<ChunkResult> future, WritableByteChannel out) throws IOException {
+        ChunkResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while routing keys", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Routing of keys failed", e.getCause());
+        }
+        if (out != null) {
+            while (result.output.hasRemaining()) {
+                out.write(result.output);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Long> initialCounts(StableHash<String> stableHash) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        stableHash.stats().getOwnership().keySet().forEach(node -> counts.put(node, 0L));
+        return counts;
+    }
+
+    private static void merge(Map<String, Long> counts, Map<String, Long> chunkCounts) {
+        if (counts != null) {
+            chunkCounts.forEach((node, count) -> counts.merge(node, count, Long::sum));
+        }
+    }
+
+    private interface Lookup {
+
+        String nodeOf(ByteKey key);
+
+    }
+
+    private static final class ChunkResult {
+
+        private final Map<String, Long> before = new HashMap<>();
+        private final Map<String, Long> after = new HashMap<>();
+        private final Map<String, byte[]> nodeBytes = new HashMap<>();
+        private ByteBuffer output;
+        private long keys;
+        private long moved;
+
+        private ChunkResult(int outputCapacity) {
+            output = ByteBuffer.allocate(outputCapacity);
+        }
+
+        private void write(ByteKey key, String node, String newNode) {
+            byte[] nodeName = bytes(node);
+            byte[] newNodeName = newNode == null ? null : bytes(newNode);
+            ensureCapacity(key.length() + nodeName.length + (newNodeName == null ? 0 : newNodeName.length + 1) + 2);
+            key.copyTo(output);
+            output.put((byte) '\t').put(nodeName);
+            if (newNodeName != null) {
+                output.put((byte) '\t').put(newNodeName);
+            }
+            output.put((byte) '\n');
+        }
+
+        private byte[] bytes(String node) {
+            return nodeBytes.computeIfAbsent(node, name -> name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void ensureCapacity(int needed) {
+            if (output.remaining() < needed) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + needed));
+                output.flip();
+                bigger.put(output);
+                output = bigger;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Number of keys routed to every node and, when comparing two topologies, number of keys which move.
+ */
+public final class RoutingSummary {
+
+    private final long keys;
+    private final long moved;
+    private final Map<String, Long> before;
+    private final Map<String, Long> after;
+
+    RoutingSummary(long keys, long moved, Map<String, Long> before, Map<String, Long> after) {
+        this.keys = keys;
+        this.moved = moved;
+        this.before = Collections.unmodifiableMap(new LinkedHashMap<>(before));
+        this.after = after == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(after));
+    }
+
+    public long getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return number of keys assigned to different node by the new topology; 0 if there is no new topology
+     */
+    public long getMoved() {
+        return moved;
+    }
+
+    /**
+     * @return number of keys per node
+     */
+    public Map<String, Long> getCounts() {
+        return before;
+    }
+
+    /**
+     * @return number of keys per node in the new topology or null if there is no new topology
+     */
+    public Map<String, Long> getNewCounts() {
+        return after;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (after == null) {
+            sb.append("node\tkeys\n");
+            before.forEach((node, count) -> sb.append(node).append('\t').append(count).append('\n'));
+        } else {
+            sb.append("node\tkeys\tnewKeys\n");
+            Map<String, Long> nodes = new LinkedHashMap<>(before);
+            after.keySet().forEach(node -> nodes.putIfAbsent(node, 0L));
+            nodes.forEach((node, count) -> sb.append(node).append('\t').append(count)
+                    .append('\t').append(after.getOrDefault(node, 0L)).append('\n'));
+        }
+        sb.append("total\t").append(keys).append('\n');
+        if (after != null) {
+            sb.append(String.format("moved\t%d\t%.4f%n", moved, keys == 0 ? 0.0d : moved / (double) keys));
+        }
+        return sb.toString();
+    }
+
+}
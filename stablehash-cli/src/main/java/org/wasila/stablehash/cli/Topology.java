@@ -0,0 +1,84 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+import org.wasila.stablehash.StableHash;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Topology definition: one node per line as {@code name [weight]}; weight defaults to 1, lines starting
+ * with {@code #} and empty lines are skipped.
+ */
+final class Topology {
+
+    private Topology() {
+    }
+
+    static Map<String, Integer> read(Path path) throws IOException {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length > 2) {
+                throw new IllegalArgumentException(path + ":" + (i + 1) + ": expected 'name [weight]', got: " + line);
+            }
+            int weight = 1;
+            if (fields.length == 2) {
+                try {
+                    weight = Integer.parseInt(fields[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(path + ":" + (i + 1) + ": invalid weight: " + fields[1]);
+                }
+            }
+            weights.put(fields[0], weight);
+        }
+        return weights;
+    }
+
+    /**
+     * Applies difference between two topologies to given hash, the same way running system would
+     * (remove, add and update nodes), so that algorithms with history (eg. partitioned) move keys as they would.
+     */
+    static StableHash<String> derive(StableHash<String> hash, Map<String, Integer> from, Map<String, Integer> to) {
+        StableHash<String> result = hash;
+        for (String node : from.keySet()) {
+            if (!to.containsKey(node)) {
+                result = result.removeNode(node);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : to.entrySet()) {
+            Integer weight = from.get(entry.getKey());
+            if (weight == null) {
+                result = result.addWeightedNode(entry.getKey(), entry.getValue());
+            } else if (!weight.equals(entry.getValue())) {
+                result = result.updateWeightedNode(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.cli;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wasila.stablehash.KeyHasher;
+import org.wasila.stablehash.KeyedStableHash;
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CliMainTest {
+
+    private static final int KEYS = 20_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path topology;
+    private Path newTopology;
+    private Path lines;
+    private Path lengthPrefixed;
+    private final List<String> keys = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        topology = folder.newFile("topology.txt").toPath();
+        Files.write(topology, Arrays.asList("# test cluster", "a", "b 2", "", "c"));
+        newTopology = folder.newFile("new-topology.txt").toPath();
+        Files.write(newTopology, Arrays.asList("a", "b 2", "c", "d 3"));
+
+        StringBuilder text = new StringBuilder();
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(binary);
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user:" + i;
+            keys.add(key);
+            text.append(key).append(i % 2 == 0 ? "\n" : "\r\n");
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+        lines = folder.newFile("keys.txt").toPath();
+        Files.write(lines, text.toString().getBytes(StandardCharsets.UTF_8));
+        lengthPrefixed = folder.newFile("keys.bin").toPath();
+        Files.write(lengthPrefixed, binary.toByteArray());
+    }
+
+    private String run(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int code = CliMain.run(args, new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+        Assert.assertEquals(0, code);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private Map<String, Integer> weights(String... nodes) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String node : nodes) {
+            String[] fields = node.split(" ");
+            weights.put(fields[0], fields.length > 1 ? Integer.parseInt(fields[1]) : 1);
+        }
+        return weights;
+    }
+
+    @Test
+    public void assignmentsMatchLibraryInBothFormats() throws IOException {
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(weights("a", "b 2", "c"));
+        for (Path keyFile : Arrays.asList(lines, lengthPrefixed)) {
+            Path out = folder.newFile().toPath();
+            String summary = run("--topology", topology.toString(), "--keys", keyFile.toString(),
+                    "--format", keyFile == lines ? "lines" : "length-prefixed",
+                    "--threads", "3", "--chunk-size", "4096", "--out", out.toString());
+
+            List<String> assignments = Files.readAllLines(out, StandardCharsets.UTF_8);
+            Assert.assertEquals(KEYS, assignments.size());
+            long countA = 0;
+            for (int i = 0; i < KEYS; i++) {
+                String node = hash.getNode(keys.get(i)).get();
+                Assert.assertEquals(keys.get(i) + "\t" + node, assignments.get(i));
+                if (node.equals("a")) {
+                    countA++;
+                }
+            }
+            Assert.assertTrue(summary, summary.contains("a\t" + countA + "\n"));
+            Assert.assertTrue(summary, summary.contains("total\t" + KEYS + "\n"));
+        }
+    }
+
+    @Test
+    public void keyedModeMatchesKeyedHash() throws IOException {
+        KeyedStableHash<CharSequence, String> keyed = StableHashStaticFactory.keyed(
+                StableHashStaticFactory.newRendezvousHash(weights("a", "b 2", "c")), KeyHasher.ofString());
+        Path out = folder.newFile().toPath();
+        run("--topology", topology.toString(), "--keys", lines.toString(), "--algorithm", "rendezvous",
+                "--keyed", "--chunk-size", "1000", "--out", out.toString());
+
+        List<String> assignments = Files.readAllLines(out, StandardCharsets.UTF_8);
+        for (int i = 0; i < KEYS; i++) {
+            Assert.assertEquals(keys.get(i) + "\t" + keyed.getNode(keys.get(i)).get(), assignments.get(i));
+        }
+    }
+
+    @Test
+    public void diffWritesOnlyMovedKeys() throws IOException {
+        StableHash<String> before = StableHashStaticFactory.newPartitionedHash(weights("a", "b 2", "c"), 1024);
+        StableHash<String> after = before.addWeightedNode("d", 3);
+        Path out = folder.newFile().toPath();
+        String summary = run("--topology", topology.toString(), "--new-topology", newTopology.toString(),
+                "--keys", lengthPrefixed.toString(), "--format", "length-prefixed", "--algorithm", "partitioned",
+                "--partitions", "1024", "--chunk-size", "10000", "--out", out.toString());
+
+        List<String> expected = new ArrayList<>();
+        for (String key : keys) {
+            String oldNode = before.getNode(key).get();
+            String newNode = after.getNode(key).get();
+            if (!oldNode.equals(newNode)) {
+                Assert.assertEquals("d", newNode);
+                expected.add(key + "\t" + oldNode + "\t" + newNode);
+            }
+        }
+        Assert.assertEquals(expected, Files.readAllLines(out, StandardCharsets.UTF_8));
+        Assert.assertTrue(summary, summary.contains("moved\t" + expected.size() + "\t"));
+    }
+
+    @Test
+    public void invalidArgumentsAreReported() {
+        OutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(2, CliMain.run(new String[] {"--keys"}, new PrintStream(new ByteArrayOutputStream()), new PrintStream(err)));
+        Assert.assertTrue(err.toString().contains("Usage"));
+        Assert.assertEquals(2, CliMain.run(new String[] {"--topology", topology.toString()}, new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(new ByteArrayOutputStream())));
+    }
+
+}
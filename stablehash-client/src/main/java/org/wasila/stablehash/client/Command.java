@@ -0,0 +1,93 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single request of memcached text protocol together with incremental parser of its response.
+ * Responses arrive in order of requests on a connection, so connection feeds its read buffer to the
+ * oldest command until it reports complete response.
+ *
+ * @param <T> Type of result
+ */
+abstract class Command<T> {
+
+    private static final int MAX_KEY_LENGTH = 250;
+
+    final CompletableFuture<T> future = new CompletableFuture<>();
+
+    // System.nanoTime() after which command fails with timeout; set before command is queued
+    long deadline;
+
+    /**
+     * @return request bytes ready to be written
+     */
+    abstract ByteBuffer encode();
+
+    /**
+     * Consumes as much of response from buffer as available.
+     *
+     * @param buffer    Buffer in read mode
+     * @return          true if response is complete and future is completed
+     * @throws IOException if response is malformed or reports error
+     */
+    abstract boolean parse(ByteBuffer buffer) throws IOException;
+
+    static void validateKey(String key) {
+        if (key == null) {
+            throw new NullPointerException("key must not be null");
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid key length: " + key.length() + "; should be in range [1," + MAX_KEY_LENGTH + "].");
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c <= ' ' || c >= 0x7F) {
+                throw new IllegalArgumentException("Invalid key: '" + key + "'; should not contain whitespace or control characters.");
+            }
+        }
+    }
+
+    static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads line terminated by CRLF.
+     *
+     * @return line without terminator or null if buffer does not contain whole line yet
+     */
+    static String readLine(ByteBuffer buffer) {
+        for (int i = buffer.position(); i + 1 < buffer.limit(); i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                byte[] line = new byte[i - buffer.position()];
+                buffer.get(line);
+                buffer.position(i + 2);
+                return new String(line, StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    static IOException unexpected(String line) {
+        return new IOException("Unexpected response: " + line);
+    }
+
+}
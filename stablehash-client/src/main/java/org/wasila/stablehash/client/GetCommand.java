@@ -0,0 +1,102 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Multi-key {@code get} of all keys of one node in a single command.
+ */
+final class GetCommand extends Command<Map<String, byte[]>> {
+
+    // memcached items are 1MiB by default and at most 1GiB when server is configured so
+    private static final int MAX_VALUE_LENGTH = 1 << 30;
+
+    private final Collection<String> keys;
+    private final Map<String, byte[]> values = new HashMap<>();
+
+    // key and length of value whose header line was already consumed
+    private String pendingKey;
+    private int pendingLength;
+
+    GetCommand(Collection<String> keys) {
+        this.keys = keys;
+    }
+
+    @Override
+    ByteBuffer encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + keys.size() * 16);
+        out.write('g');
+        out.write('e');
+        out.write('t');
+        for (String key : keys) {
+            out.write(' ');
+            byte[] bytes = ascii(key);
+            out.write(bytes, 0, bytes.length);
+        }
+        out.write('\r');
+        out.write('\n');
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    @Override
+    boolean parse(ByteBuffer buffer) throws IOException {
+        while (true) {
+            if (pendingKey != null) {
+                if (buffer.remaining() - 2 < pendingLength) {
+                    return false;
+                }
+                byte[] value = new byte[pendingLength];
+                buffer.get(value);
+                if (buffer.get() != '\r' || buffer.get() != '\n') {
+                    throw new IOException("Value of " + pendingKey + " is not terminated with CRLF");
+                }
+                values.put(pendingKey, value);
+                pendingKey = null;
+            }
+            String line = readLine(buffer);
+            if (line == null) {
+                return false;
+            }
+            if (line.equals("END")) {
+                future.complete(values);
+                return true;
+            }
+            // VALUE <key> <flags> <bytes> [<cas unique>]
+            String[] header = line.split(" ");
+            if (header.length < 4 || !header[0].equals("VALUE")) {
+                throw unexpected(line);
+            }
+            int length;
+            try {
+                length = Integer.parseInt(header[3]);
+            } catch (NumberFormatException e) {
+                throw unexpected(line);
+            }
+            if (length < 0 || length > MAX_VALUE_LENGTH) {
+                throw new IOException("Invalid value length: " + length + "; should be in range [0," + MAX_VALUE_LENGTH + "].");
+            }
+            pendingKey = header[1];
+            pendingLength = length;
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single selector thread serving all connections of a client. Connections with new commands are
+ * scheduled from any thread; all socket operations and all state of connections except their queue
+ * of outgoing commands are touched by the loop thread only. Loop also fails connections whose oldest
+ * command exceeds request timeout.
+ */
+final class IoLoop implements Runnable, Closeable {
+
+    private final Selector selector;
+    private final Queue<NodeConnection> scheduled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final long requestTimeoutNanos;
+    private final long expiryCheckMillis;
+
+    private volatile boolean closed;
+
+    IoLoop(String name, long requestTimeoutNanos) throws IOException {
+        this.requestTimeoutNanos = requestTimeoutNanos;
+        // timeouts are checked a few times per timeout period, so they fire at most about a quarter late
+        this.expiryCheckMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(requestTimeoutNanos / 4));
+        selector = Selector.open();
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void schedule(NodeConnection connection) {
+        scheduled.add(connection);
+        if (closed) {
+            // loop thread may be gone; only commands not taken by it yet can be failed from this thread
+            NodeConnection unscheduled;
+            while ((unscheduled = scheduled.poll()) != null) {
+                unscheduled.failOutgoing(new IOException("Client closed"));
+            }
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            long nextExpiryCheck = System.nanoTime();
+            while (!closed) {
+                selector.select(expiryCheckMillis);
+                NodeConnection connection;
+                while ((connection = scheduled.poll()) != null) {
+                    connection.onScheduled(selector);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((NodeConnection) key.attachment()).onReady(key);
+                }
+                long now = System.nanoTime();
+                if (now - nextExpiryCheck >= 0) {
+                    for (SelectionKey key : selector.keys()) {
+                        ((NodeConnection) key.attachment()).expire(now);
+                    }
+                    nextExpiryCheck = now + TimeUnit.MILLISECONDS.toNanos(expiryCheckMillis);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // connections failing on their own are handled by them; this is failure of the selector itself
+        } finally {
+            closed = true;
+            for (SelectionKey key : selector.keys()) {
+                ((NodeConnection) key.attachment()).fail(new IOException("Client closed"));
+            }
+            failScheduled();
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // nothing more can be done
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    long getRequestTimeoutNanos() {
+        return requestTimeoutNanos;
+    }
+
+    private void failScheduled() {
+        NodeConnection connection;
+        while ((connection = scheduled.poll()) != null) {
+            connection.fail(new IOException("Client closed"));
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import org.wasila.stablehash.StableHash;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The {@code MemcachedClient} class is an asynchronous client of memcached text protocol routing keys
+ * with {@link StableHash}. Multi-key request is grouped by node and every node gets its keys in a single
+ * {@code get} command, so the request costs one round trip per node instead of one per key; responses
+ * of all nodes are merged when they arrive.
+ *
+ * Every node has a small pool of non-blocking connections served by one selector thread. Commands queued
+ * on a connection while previous ones are being written are pipelined in the next write. Request which gets
+ * no response within request timeout fails with {@link java.net.SocketTimeoutException} together with
+ * all other requests pending on the same connection.
+ *
+ * @param <N> Node type
+ */
+public final class MemcachedClient<N> implements AutoCloseable {
+
+    private static final int DEFAULT_CONNECTIONS_PER_NODE = 2;
+    private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 5000;
+
+    private final Function<? super N, InetSocketAddress> addressOf;
+    private final int connectionsPerNode;
+    private final IoLoop loop;
+    private final ConcurrentMap<N, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private volatile StableHash<N> hash;
+
+    /**
+     * Creates client with default pool size of {@value #DEFAULT_CONNECTIONS_PER_NODE} connections per node
+     * and default request timeout of {@value #DEFAULT_REQUEST_TIMEOUT_MILLIS} ms.
+     *
+     * @param hash      Hash routing keys to nodes
+     * @param addressOf Returns address of given node
+     * @throws IOException if selector could not be opened
+     */
+    public MemcachedClient(StableHash<N> hash, Function<? super N, InetSocketAddress> addressOf) throws IOException {
+        this(hash, addressOf, DEFAULT_CONNECTIONS_PER_NODE);
+    }
+
+    /**
+     * Creates client with default request timeout of {@value #DEFAULT_REQUEST_TIMEOUT_MILLIS} ms.
+     *
+     * @param hash                  Hash routing keys to nodes
+     * @param addressOf             Returns address of given node
+     * @param connectionsPerNode    Number of connections opened to every node
+     * @throws IOException if selector could not be opened
+     * @throws IllegalArgumentException if connectionsPerNode is 0 or less
+     */
+    public MemcachedClient(StableHash<N> hash, Function<? super N, InetSocketAddress> addressOf,
+                           int connectionsPerNode) throws IOException {
+        this(hash, addressOf, connectionsPerNode, DEFAULT_REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates client.
+     *
+     * @param hash                  Hash routing keys to nodes
+     * @param addressOf             Returns address of given node
+     * @param connectionsPerNode    Number of connections opened to every node
+     * @param requestTimeout        Time after which request without response fails
+     * @param unit                  Unit of requestTimeout
+     * @throws IOException if selector could not be opened
+     * @throws IllegalArgumentException if connectionsPerNode or requestTimeout is 0 or less
+     */
+    public MemcachedClient(StableHash<N> hash, Function<? super N, InetSocketAddress> addressOf,
+                           int connectionsPerNode, long requestTimeout, TimeUnit unit) throws IOException {
+        if (hash == null || addressOf == null || unit == null) {
+            throw new NullPointerException("hash, addressOf and unit must not be null");
+        }
+        if (connectionsPerNode < 1) {
+            throw new IllegalArgumentException("Invalid number of connections per node: " + connectionsPerNode + "; should be > 0.");
+        }
+        if (requestTimeout <= 0) {
+            throw new IllegalArgumentException("Invalid request timeout: " + requestTimeout + "; should be > 0.");
+        }
+        this.hash = hash;
+        this.addressOf = addressOf;
+        this.connectionsPerNode = connectionsPerNode;
+        this.loop = new IoLoop("stablehash-memcached-io", unit.toNanos(requestTimeout));
+    }
+
+    /**
+     * Replaces hash used for routing, eg. after membership change. Requests already sent are not affected.
+     *
+     * @param hash  New hash
+     */
+    public void setHash(StableHash<N> hash) {
+        if (hash == null) {
+            throw new NullPointerException("hash must not be null");
+        }
+        this.hash = hash;
+    }
+
+    /**
+     * Gets values of given keys with one {@code get} command per node.
+     *
+     * @param keys  Keys; must be valid memcached keys
+     * @return      Future of values found; keys which are missing (or for which there is no node) are not present
+     * @throws NullPointerException     if any key is null
+     * @throws IllegalArgumentException if any key is not a valid memcached key
+     */
+    public CompletableFuture<Map<String, byte[]>> get(Collection<String> keys) {
+        StableHash<N> current = hash;
+        Map<N, List<String>> keysByNode = new HashMap<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            Command.validateKey(key);
+            Optional<N> node = current.getNode(key);
+            if (node.isPresent()) {
+                keysByNode.computeIfAbsent(node.get(), n -> new ArrayList<>()).add(key);
+            }
+        }
+        if (keysByNode.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+
+        List<CompletableFuture<Map<String, byte[]>>> responses = new ArrayList<>(keysByNode.size());
+        for (Map.Entry<N, List<String>> entry : keysByNode.entrySet()) {
+            responses.add(send(entry.getKey(), new GetCommand(entry.getValue())));
+        }
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[responses.size()]))
+                .thenApply(ignored -> {
+                    Map<String, byte[]> values = new HashMap<>();
+                    for (CompletableFuture<Map<String, byte[]>> response : responses) {
+                        values.putAll(response.join());
+                    }
+                    return values;
+                });
+    }
+
+    /**
+     * Gets value of given key.
+     *
+     * @param key   Valid memcached key
+     * @return      Future of value or empty if key is missing
+     */
+    public CompletableFuture<Optional<byte[]>> get(String key) {
+        return get(Collections.singleton(key)).thenApply(values -> Optional.ofNullable(values.get(key)));
+    }
+
+    /**
+     * Stores value of given key without expiration.
+     *
+     * @param key   Valid memcached key
+     * @param value Value
+     * @return      Future of true if value was stored
+     * @throws IllegalStateException if there are no nodes
+     */
+    public CompletableFuture<Boolean> set(String key, byte[] value) {
+        return set(key, value, 0);
+    }
+
+    /**
+     * Stores value of given key.
+     *
+     * @param key           Valid memcached key
+     * @param value         Value
+     * @param expiration    Expiration time as defined by memcached protocol; 0 means never
+     * @return              Future of true if value was stored
+     * @throws IllegalStateException if there are no nodes
+     */
+    public CompletableFuture<Boolean> set(String key, byte[] value, int expiration) {
+        Command.validateKey(key);
+        if (value == null) {
+            throw new NullPointerException("value must not be null");
+        }
+        N node = hash.getNode(key).orElseThrow(() -> new IllegalStateException("No node for key: " + key));
+        return send(node, new SetCommand(key, value, expiration));
+    }
+
+    /**
+     * Closes all connections; pending requests complete exceptionally.
+     */
+    @Override
+    public void close() throws IOException {
+        loop.close();
+    }
+
+    private <T> CompletableFuture<T> send(N node, Command<T> command) {
+        if (loop.isClosed()) {
+            command.future.completeExceptionally(new IOException("Client closed"));
+        } else {
+            pools.computeIfAbsent(node, n -> new ConnectionPool(addressOf.apply(n))).next().send(command);
+        }
+        return command.future;
+    }
+
+    private final class ConnectionPool {
+
+        private final NodeConnection[] connections = new NodeConnection[connectionsPerNode];
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private ConnectionPool(InetSocketAddress address) {
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = new NodeConnection(address, loop);
+            }
+        }
+
+        private NodeConnection next() {
+            return connections[(counter.getAndIncrement() & Integer.MAX_VALUE) % connections.length];
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking connection to one node. Commands queued since the last write are sent together with one
+ * gathering write and their responses are parsed in order as they arrive. Connection is opened lazily and
+ * reopened by the next command after failure; failure completes all pending commands exceptionally.
+ * Responses are matched to commands by order only, so a command which times out or a malformed response
+ * fails the whole connection.
+ */
+final class NodeConnection {
+
+    private static final int INITIAL_READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_READ_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    private final InetSocketAddress address;
+    private final IoLoop loop;
+    private final Queue<Command<?>> outgoing = new ConcurrentLinkedQueue<>();
+
+    // accessed only by loop thread
+    private final Deque<Command<?>> inFlight = new ArrayDeque<>();
+    private final List<ByteBuffer> writes = new ArrayList<>();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    private SocketChannel channel;
+    private SelectionKey key;
+
+    NodeConnection(InetSocketAddress address, IoLoop loop) {
+        this.address = address;
+        this.loop = loop;
+    }
+
+    void send(Command<?> command) {
+        command.deadline = System.nanoTime() + loop.getRequestTimeoutNanos();
+        outgoing.add(command);
+        loop.schedule(this);
+    }
+
+    void onScheduled(Selector selector) {
+        if (channel == null) {
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                boolean connected = channel.connect(address);
+                key = channel.register(selector, connected ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, this);
+            } catch (IOException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                // eg. unresolved address
+                fail(new IOException("Failed to connect to " + address, e));
+            }
+        } else if (key.isValid() && (key.interestOps() & SelectionKey.OP_CONNECT) == 0) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    void onReady(SelectionKey readyKey) {
+        try {
+            if (readyKey.isConnectable()) {
+                if (channel.finishConnect()) {
+                    readyKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+                return;
+            }
+            if (readyKey.isReadable()) {
+                read();
+            }
+            if (readyKey.isValid() && readyKey.isWritable()) {
+                write();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException("Failed to handle response from " + address, e));
+        }
+    }
+
+    /**
+     * Fails connection if its oldest command waits longer than request timeout.
+     */
+    void expire(long now) {
+        Command<?> oldest = inFlight.isEmpty() ? outgoing.peek() : inFlight.peek();
+        if (oldest != null && now - oldest.deadline >= 0) {
+            fail(new SocketTimeoutException("Request to " + address + " timed out"));
+        }
+    }
+
+    /**
+     * Fails commands not yet taken by loop thread; unlike {@link #fail(IOException)} can be called from any thread.
+     */
+    void failOutgoing(IOException cause) {
+        Command<?> command;
+        while ((command = outgoing.poll()) != null) {
+            command.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Closes connection and fails all its commands; called on loop thread only.
+     */
+    void fail(IOException cause) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+        }
+        channel = null;
+        key = null;
+        writes.clear();
+        readBuffer.clear();
+        Command<?> command;
+        while ((command = inFlight.poll()) != null) {
+            command.future.completeExceptionally(cause);
+        }
+        failOutgoing(cause);
+    }
+
+    private void write() throws IOException {
+        Command<?> command;
+        while ((command = outgoing.poll()) != null) {
+            writes.add(command.encode());
+            inFlight.add(command);
+        }
+        channel.write(writes.toArray(new ByteBuffer[writes.size()]));
+        writes.removeIf(buffer -> !buffer.hasRemaining());
+        if (writes.isEmpty()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            throw new EOFException("Connection closed by " + address);
+        }
+        readBuffer.flip();
+        while (!inFlight.isEmpty() && inFlight.peek().parse(readBuffer)) {
+            inFlight.poll();
+        }
+        if (inFlight.isEmpty() && readBuffer.hasRemaining()) {
+            throw new IOException("Unexpected response from " + address);
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            // incomplete response bigger than buffer, eg. large value
+            if (readBuffer.capacity() == MAX_READ_BUFFER_SIZE) {
+                throw new IOException("Response from " + address + " too large");
+            }
+            ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(readBuffer.capacity() * 2L, MAX_READ_BUFFER_SIZE));
+            readBuffer.flip();
+            bigger.put(readBuffer);
+            readBuffer = bigger;
+        }
+    }
+
+}
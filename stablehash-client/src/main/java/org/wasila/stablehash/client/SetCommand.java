@@ -0,0 +1,61 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Single {@code set} command; completes with true if value was stored.
+ */
+final class SetCommand extends Command<Boolean> {
+
+    private final String key;
+    private final byte[] value;
+    private final int expiration;
+
+    SetCommand(String key, byte[] value, int expiration) {
+        this.key = key;
+        this.value = value;
+        this.expiration = expiration;
+    }
+
+    @Override
+    ByteBuffer encode() {
+        byte[] header = ascii("set " + key + " 0 " + expiration + " " + value.length + "\r\n");
+        ByteBuffer buffer = ByteBuffer.allocate(header.length + value.length + 2);
+        buffer.put(header).put(value).put((byte) '\r').put((byte) '\n');
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    boolean parse(ByteBuffer buffer) throws IOException {
+        String line = readLine(buffer);
+        if (line == null) {
+            return false;
+        }
+        if (line.equals("STORED")) {
+            future.complete(true);
+        } else if (line.equals("NOT_STORED")) {
+            future.complete(false);
+        } else {
+            throw unexpected(line);
+        }
+        return true;
+    }
+
+}
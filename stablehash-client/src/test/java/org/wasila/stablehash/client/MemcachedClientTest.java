@@ -0,0 +1,171 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class MemcachedClientTest {
+
+    private final List<MemcachedStandIn> servers = new ArrayList<>();
+    private MemcachedClient<Integer> client;
+    private StableHash<Integer> hash;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            servers.add(new MemcachedStandIn());
+        }
+        hash = StableHashStaticFactory.newConsistentHash(Arrays.asList(0, 1, 2));
+        client = new MemcachedClient<>(hash, node -> servers.get(node).getAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        for (MemcachedStandIn server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void multiGetCostsOneCommandPerNode() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String key = "user:" + i;
+            keys.add(key);
+            servers.get(hash.getNode(key).get()).getStore().put(key, ("value-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        keys.add("missing");
+
+        Map<String, byte[]> values = client.get(keys).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(300, values.size());
+        Assert.assertEquals("value-42", new String(values.get("user:42"), StandardCharsets.UTF_8));
+        for (MemcachedStandIn server : servers) {
+            Assert.assertEquals(1, server.getGetCommands());
+        }
+    }
+
+    @Test
+    public void valuesAreStoredOnOwningNode() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(client.set("k" + i, new byte[] {(byte) i}).get(5, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < 50; i++) {
+            String key = "k" + i;
+            Assert.assertArrayEquals(new byte[] {(byte) i}, servers.get(hash.getNode(key).get()).getStore().get(key));
+            Assert.assertArrayEquals(new byte[] {(byte) i}, client.get(key).get(5, TimeUnit.SECONDS).get());
+        }
+    }
+
+    @Test
+    public void largeValueSpanningManyReads() throws Exception {
+        byte[] value = new byte[1 << 20];
+        Arrays.fill(value, (byte) 'x');
+        client.set("large", value).get(5, TimeUnit.SECONDS);
+        Assert.assertArrayEquals(value, client.get("large").get(5, TimeUnit.SECONDS).get());
+    }
+
+    @Test
+    public void failedNodeFailsOnlyItsRequests() throws Exception {
+        String key = "user:1";
+        int node = hash.getNode(key).get();
+        servers.get(node).close();
+        try {
+            client.get(key).get(5, TimeUnit.SECONDS);
+            Assert.fail("expected failure of closed node");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        String otherKey = null;
+        for (int i = 0; otherKey == null; i++) {
+            if (hash.getNode("user:" + i).get() != node) {
+                otherKey = "user:" + i;
+            }
+        }
+        Assert.assertFalse(client.get(otherKey).get(5, TimeUnit.SECONDS).isPresent());
+    }
+
+    @Test
+    public void malformedValueLengthFailsConnectionAndKeepsLoopRunning() throws Exception {
+        String key = "user:1";
+        MemcachedStandIn server = servers.get(hash.getNode(key).get());
+        for (String response : Arrays.asList("VALUE user:1 0 -5\r\n", "VALUE user:1 0 99999999999\r\n")) {
+            server.setGetResponse(response);
+            try {
+                client.get(key).get(5, TimeUnit.SECONDS);
+                Assert.fail("expected protocol error for " + response);
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        server.setGetResponse(null);
+        server.getStore().put(key, new byte[] {1});
+        Assert.assertArrayEquals(new byte[] {1}, client.get(key).get(5, TimeUnit.SECONDS).get());
+    }
+
+    @Test
+    public void requestWithoutResponseTimesOut() throws Exception {
+        try (MemcachedClient<Integer> timingOut = new MemcachedClient<>(hash, node -> servers.get(node).getAddress(),
+                1, 100, TimeUnit.MILLISECONDS)) {
+            String key = "user:1";
+            servers.get(hash.getNode(key).get()).setGetResponse("");
+            try {
+                timingOut.get(key).get(5, TimeUnit.SECONDS);
+                Assert.fail("expected timeout");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+        }
+    }
+
+    @Test
+    public void requestAfterCloseFails() throws Exception {
+        client.close();
+        try {
+            client.get("user:1").get(5, TimeUnit.SECONDS);
+            Assert.fail("expected failure of closed client");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveRequestTimeoutIsRejected() throws IOException {
+        new MemcachedClient<>(hash, node -> servers.get(node).getAddress(), 1, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyWithWhitespaceIsRejected() {
+        client.get("bad key");
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.client;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in of memcached server supporting {@code get} and {@code set} of text protocol.
+ */
+class MemcachedStandIn implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, byte[]> store = new ConcurrentHashMap<>();
+    private final AtomicInteger getCommands = new AtomicInteger();
+    private volatile String getResponse;
+
+    MemcachedStandIn() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "memcached-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    InetSocketAddress getAddress() {
+        return new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+    }
+
+    Map<String, byte[]> getStore() {
+        return store;
+    }
+
+    int getGetCommands() {
+        return getCommands.get();
+    }
+
+    /**
+     * Makes every {@code get} answered with given raw response instead of stored values; empty response
+     * means no answer at all. Null restores normal behaviour.
+     */
+    void setGetResponse(String getResponse) {
+        this.getResponse = getResponse;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> serve(socket), "memcached-stand-in-connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            String line;
+            while ((line = readLine(in)) != null) {
+                String[] parts = line.split(" ");
+                if (parts[0].equals("get")) {
+                    getCommands.incrementAndGet();
+                    String raw = getResponse;
+                    if (raw != null) {
+                        out.write(raw.getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                        continue;
+                    }
+                    ByteArrayOutputStream response = new ByteArrayOutputStream();
+                    for (int i = 1; i < parts.length; i++) {
+                        byte[] value = store.get(parts[i]);
+                        if (value != null) {
+                            response.write(("VALUE " + parts[i] + " 0 " + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                            response.write(value);
+                            response.write(new byte[] {'\r', '\n'});
+                        }
+                    }
+                    response.write("END\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.write(response.toByteArray());
+                } else if (parts[0].equals("set")) {
+                    byte[] value = new byte[Integer.parseInt(parts[4])];
+                    int read = 0;
+                    while (read < value.length) {
+                        read += in.read(value, read, value.length - read);
+                    }
+                    readLine(in);
+                    store.put(parts[1], value);
+                    out.write("STORED\r\n".getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    out.write("ERROR\r\n".getBytes(StandardCharsets.US_ASCII));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int previous = -1;
+        int current;
+        while ((current = in.read()) >= 0) {
+            if (previous == '\r' && current == '\n') {
+                byte[] bytes = line.toByteArray();
+                return new String(bytes, 0, bytes.length - 1, StandardCharsets.US_ASCII);
+            }
+            line.write(current);
+            previous = current;
+        }
+        return null;
+    }
+
+}
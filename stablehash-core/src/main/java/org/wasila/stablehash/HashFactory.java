@@ -16,9 +16,51 @@
 package org.wasila.stablehash;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 public interface HashFactory {
 
     Iterator<AuxHashKey> iterator(String key);
 
+    /**
+     * Returns auxiliary hashes with 64-bit values, used by consistent hashing with 64-bit points. Default
+     * implementation joins every two consecutive 32-bit hashes of {@link #iterator(String)} into one value.
+     *
+     * @param key   Any string value
+     * @return      Iterator of 64-bit auxiliary hashes
+     */
+    default Iterator<AuxHashKey> iterator64(String key) {
+        Iterator<AuxHashKey> narrow = iterator(key);
+        return new Iterator<AuxHashKey>() {
+
+            private AuxHashKey first = narrow.hasNext() ? narrow.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return first != null && narrow.hasNext();
+            }
+
+            @Override
+            public AuxHashKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long value = first.getHash() << 32 | (narrow.next().getHash() & 0xFFFFFFFFL);
+                first = narrow.hasNext() ? narrow.next() : null;
+                return new AuxHashKey() {
+                    @Override
+                    public long getHash() {
+                        return value;
+                    }
+
+                    @Override
+                    public int compareTo(AuxHashKey other) {
+                        return Long.compareUnsigned(value, other.getHash());
+                    }
+                };
+            }
+
+        };
+    }
+
 }
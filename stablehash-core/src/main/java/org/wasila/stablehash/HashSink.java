@@ -0,0 +1,41 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+/**
+ * Receives fields of a key fed by {@link KeyHasher}. Fields are mixed into a 64-bit hash state
+ * without building any intermediate string or byte array.
+ */
+public interface HashSink {
+
+    HashSink putLong(long value);
+
+    HashSink putInt(int value);
+
+    /**
+     * Feeds characters of given value (and its length, so that {@code "ab","c"} and {@code "a","bc"} differ).
+     */
+    HashSink putString(CharSequence value);
+
+    /**
+     * Feeds characters of given range of value exactly as {@link #putString(CharSequence)} would feed
+     * the subsequence, without creating it.
+     */
+    HashSink putString(CharSequence value, int start, int end);
+
+    HashSink putBytes(byte[] value, int offset, int length);
+
+}
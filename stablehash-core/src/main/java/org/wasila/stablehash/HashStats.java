@@ -0,0 +1,136 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code HashStats} class describes how evenly a {@link StableHash} instance spreads keys over its nodes.
+ *
+ * Ownership of a node is the fraction of the key space assigned to it; all fractions sum up to 1
+ * (or to 0 when there are no nodes at all). Depending on algorithm ownership is either computed
+ * exactly or estimated by sampling, see {@link #isSampled()}.
+ *
+ * @param <N> Node type
+ */
+public final class HashStats<N> {
+
+    private final Map<N, Double> ownership;
+    private final int pointCount;
+    private final long estimatedHeapBytes;
+    private final boolean sampled;
+    private final double peakToMean;
+    private final double standardDeviation;
+
+    /**
+     * Creates statistics from per node ownership.
+     *
+     * @param ownership          fraction of key space owned by each node
+     * @param pointCount         number of points used internally to place nodes (eg. ring points)
+     * @param estimatedHeapBytes rough estimation of heap used by the hash structure
+     * @param sampled            true if ownership was estimated by sampling keys instead of computed exactly
+     */
+    public HashStats(Map<N, Double> ownership, int pointCount, long estimatedHeapBytes, boolean sampled) {
+        this.ownership = Collections.unmodifiableMap(new LinkedHashMap<>(ownership));
+        this.pointCount = pointCount;
+        this.estimatedHeapBytes = estimatedHeapBytes;
+        this.sampled = sampled;
+
+        int count = ownership.size();
+        if (count == 0) {
+            peakToMean = 0.0d;
+            standardDeviation = 0.0d;
+        } else {
+            double sum = 0.0d;
+            double peak = 0.0d;
+            for (double share : ownership.values()) {
+                sum += share;
+                peak = Math.max(peak, share);
+            }
+            double mean = sum / count;
+            double variance = 0.0d;
+            for (double share : ownership.values()) {
+                variance += (share - mean) * (share - mean);
+            }
+            peakToMean = mean > 0.0d ? peak / mean : 0.0d;
+            standardDeviation = Math.sqrt(variance / count);
+        }
+    }
+
+    /**
+     * @return fraction of key space owned by each node
+     */
+    public Map<N, Double> getOwnership() {
+        return ownership;
+    }
+
+    /**
+     * @return fraction of key space owned by given node or 0 if node is unknown
+     */
+    public double getOwnership(N node) {
+        return ownership.getOrDefault(node, 0.0d);
+    }
+
+    /**
+     * @return ratio of the biggest ownership to the mean ownership; 1.0 means perfect balance
+     */
+    public double getPeakToMean() {
+        return peakToMean;
+    }
+
+    /**
+     * @return standard deviation of ownership fractions
+     */
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * @return number of points used internally to place nodes; 0 if algorithm does not use any
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return rough estimation of heap (in bytes) used by the hash structure
+     */
+    public long getEstimatedHeapBytes() {
+        return estimatedHeapBytes;
+    }
+
+    /**
+     * @return true if ownership is an estimation based on sampled keys
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    @Override
+    public String toString() {
+        return "HashStats{" +
+                "nodes=" + ownership.size() +
+                ", pointCount=" + pointCount +
+                ", peakToMean=" + peakToMean +
+                ", standardDeviation=" + standardDeviation +
+                ", estimatedHeapBytes=" + estimatedHeapBytes +
+                ", sampled=" + sampled +
+                '}';
+    }
+
+}
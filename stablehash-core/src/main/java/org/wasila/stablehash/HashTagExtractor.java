@@ -0,0 +1,61 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.wasila.stablehash.internal.DelimitedHashTag;
+
+/**
+ * Selects part of a key (hash tag) which is hashed instead of the whole key, so that related keys,
+ * eg. {@code user:{42}:profile} and {@code user:{42}:cart}, are assigned to the same node.
+ * Extractor only returns boundaries of the tag and must not allocate.
+ */
+public interface HashTagExtractor {
+
+    /**
+     * @param key   Key
+     * @return      Index of the first character of hashed part of the key; 0 if key has no tag
+     */
+    int tagStart(CharSequence key);
+
+    /**
+     * @param key       Key
+     * @param tagStart  Value returned by {@link #tagStart(CharSequence)} for the same key
+     * @return          Index after the last character of hashed part of the key; length of key if key has no tag
+     */
+    int tagEnd(CharSequence key, int tagStart);
+
+    /**
+     * Redis Cluster convention: if key contains {@code '{'} followed by {@code '}'} with at least one character
+     * between them, only characters between the first {@code '{'} and the first {@code '}'} after it are hashed.
+     *
+     * @return  Extractor of tags in curly braces
+     */
+    static HashTagExtractor redis() {
+        return delimited('{', '}');
+    }
+
+    /**
+     * Same as {@link #redis()} but with custom delimiters.
+     *
+     * @param open  Character opening the tag
+     * @param close Character closing the tag
+     * @return      Extractor of tags between given delimiters
+     */
+    static HashTagExtractor delimited(char open, char close) {
+        return new DelimitedHashTag(open, close);
+    }
+
+}
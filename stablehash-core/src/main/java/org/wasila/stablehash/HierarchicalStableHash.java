@@ -0,0 +1,62 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@code StableHash} aware of failure domains (eg. datacenters and racks) nodes are located in.
+ * Replica sets returned by {@link #getNodes(String, int)} span distinct failure domains whenever possible.
+ *
+ * @param <N> Node type
+ */
+public interface HierarchicalStableHash<N> extends StableHash<N> {
+
+    /**
+     * Returns array of nodes for given key, ordered so that nodes located in preferred location come first.
+     * Set of returned nodes is the same as returned by {@link #getNodes(String, int)}.
+     *
+     * @param key               Any string value
+     * @param size              Specifies how many nodes are expected to be returned
+     * @param preferredLocation Location prefix, eg. {@code ["dc1"]} or {@code ["dc1", "rack2"]}
+     * @return                  Nodes assigned to the key given as an argument
+     * @throws NullPointerException     if key or preferredLocation is null
+     * @throws IllegalArgumentException if size is 0 or less or greater than total number of nodes
+     */
+    Set<N> getNodes(String key, int size, List<String> preferredLocation);
+
+    /**
+     * Returns location of given node, from the top level domain (eg. datacenter) down to the lowest one (eg. rack).
+     *
+     * @param node  Node
+     * @return      Location of the node or empty list if node is unknown
+     */
+    List<String> getLocation(N node);
+
+    @Override
+    HierarchicalStableHash<N> addNode(N node);
+
+    @Override
+    HierarchicalStableHash<N> addWeightedNode(N node, int weight);
+
+    @Override
+    HierarchicalStableHash<N> updateWeightedNode(N node, int weight);
+
+    @Override
+    HierarchicalStableHash<N> removeNode(N node);
+
+}
@@ -0,0 +1,57 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Strategy of hashing keys of arbitrary type. Implementation feeds all fields identifying the key into
+ * given {@link HashSink}, eg. {@code (order, sink) -> sink.putLong(order.getUserId()).putInt(order.getShard())}.
+ *
+ * @param <K> Key type
+ */
+@FunctionalInterface
+public interface KeyHasher<K> {
+
+    void hash(K key, HashSink sink);
+
+    /**
+     * @param extractor Returns numeric identity of the key
+     * @return          Hasher feeding single long value
+     */
+    static <K> KeyHasher<K> ofLong(ToLongFunction<K> extractor) {
+        return (key, sink) -> sink.putLong(extractor.applyAsLong(key));
+    }
+
+    /**
+     * @return Hasher of string keys feeding their characters
+     */
+    static KeyHasher<CharSequence> ofString() {
+        return (key, sink) -> sink.putString(key);
+    }
+
+    /**
+     * @param extractor Extractor of hash tags
+     * @return          Hasher of string keys feeding characters of their hash tag only (or whole key if it has no tag)
+     */
+    static KeyHasher<CharSequence> ofString(HashTagExtractor extractor) {
+        return (key, sink) -> {
+            int start = extractor.tagStart(key);
+            sink.putString(key, start, extractor.tagEnd(key, start));
+        };
+    }
+
+}
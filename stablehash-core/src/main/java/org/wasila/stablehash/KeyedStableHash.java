@@ -0,0 +1,87 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Variant of {@link StableHash} routing keys of arbitrary type. Keys are hashed by {@link KeyHasher}
+ * straight into a 64-bit value, so numeric and composite keys need no string building or encoding.
+ *
+ * Note that keys are hashed differently than by {@code StableHash<N>} so the same key rendered as string
+ * may be routed to a different node.
+ *
+ * @param <K> Key type
+ * @param <N> Node type
+ */
+public interface KeyedStableHash<K, N> {
+
+    /**
+     * Returns node for given key.
+     *
+     * @param key Any key
+     * @return          Node assigned to the key given as an argument
+     * @throws NullPointerException     if key value is null
+     */
+    Optional<N> getNode(K key);
+
+    /**
+     * Returns array of nodes for given key.
+     *
+     * @param key Any key
+     * @param size      Specifies how many nodes are expected to be returned
+     * @return          Nodes assigned to the key given as an argument; empty if fewer than {@code size} nodes
+     *                  can be returned, eg. when nodes are marked down with {@link NodeFailover}
+     * @throws NullPointerException     if key value is null
+     * @throws IllegalArgumentException if size is 0 or less or greater than total number of nodes
+     */
+    Set<N> getNodes(K key, int size);
+
+    /**
+     * Returns nodes of batch of keys; node of {@code keys.get(i)} is stored at index {@code i} of given array,
+     * null if there is no node available.
+     *
+     * @param keys      Keys to be routed
+     * @param nodes     Array receiving nodes
+     * @throws NullPointerException     if any key is null
+     * @throws IllegalArgumentException if array is shorter than list of keys
+     */
+    default void routeAll(List<? extends K> keys, N[] nodes) {
+        if (nodes.length < keys.size()) {
+            throw new IllegalArgumentException("Invalid output length: " + nodes.length + "; should be >= " + keys.size() + ".");
+        }
+        int i = 0;
+        for (K key : keys) {
+            nodes[i++] = getNode(key).orElse(null);
+        }
+    }
+
+    KeyedStableHash<K, N> addNode(N node);
+
+    KeyedStableHash<K, N> addWeightedNode(N node, int weight);
+
+    KeyedStableHash<K, N> updateWeightedNode(N node, int weight);
+
+    KeyedStableHash<K, N> removeNode(N node);
+
+    /**
+     * @return underlying {@code StableHash} instance
+     */
+    StableHash<N> getStableHash();
+
+}
@@ -0,0 +1,73 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.Objects;
+
+/**
+ * The {@code MigrationRoute} class holds owners of one key in the old and in the new topology, as routed by
+ * {@link MigrationView}. Instances are mutable so one of them can be reused for many lookups on a single thread.
+ *
+ * @param <N> Node type
+ */
+public final class MigrationRoute<N> {
+
+    private N oldNode;
+    private N newNode;
+
+    /**
+     * Sets both owners.
+     *
+     * @param oldNode   owner in the old topology, null if there is none
+     * @param newNode   owner in the new topology, null if there is none
+     * @return          this instance
+     */
+    public MigrationRoute<N> set(N oldNode, N newNode) {
+        this.oldNode = oldNode;
+        this.newNode = newNode;
+        return this;
+    }
+
+    /**
+     * @return owner of the key in the old topology (the one to read from), null if there is none
+     */
+    public N getOldNode() {
+        return oldNode;
+    }
+
+    /**
+     * @return owner of the key in the new topology, null if there is none
+     */
+    public N getNewNode() {
+        return newNode;
+    }
+
+    /**
+     * @return true if owners in the old and new topology differ, ie. key has to be copied
+     */
+    public boolean isMoved() {
+        return !Objects.equals(oldNode, newNode);
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationRoute{" +
+                "oldNode=" + oldNode +
+                ", newNode=" + newNode +
+                '}';
+    }
+
+}
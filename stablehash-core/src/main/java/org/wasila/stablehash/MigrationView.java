@@ -0,0 +1,81 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.List;
+
+/**
+ * Routes keys of arbitrary type in two versions of topology at once, eg. during live migration which reads
+ * from the old owner and writes to both. Every key is hashed once by {@link KeyHasher} and the hash is looked
+ * up in both instances, so routing costs about the same as a single {@link KeyedStableHash} lookup.
+ *
+ * Keys are hashed the same way as by {@link KeyedStableHash}, so owners match the ones returned by
+ * {@link #getOld()} and {@link #getNew()}. Owner is null if there is no node available in given topology.
+ *
+ * @param <K> Key type
+ * @param <N> Node type
+ */
+public interface MigrationView<K, N> {
+
+    /**
+     * Returns owners of given key in both topologies.
+     *
+     * @param key Any key
+     * @return          New route holding both owners
+     * @throws NullPointerException     if key value is null
+     */
+    MigrationRoute<N> route(K key);
+
+    /**
+     * Stores owners of given key in both topologies into given route; does not allocate results.
+     *
+     * @param key Any key
+     * @param route     Route to be filled, eg. reused by the calling thread
+     * @return          Given route
+     * @throws NullPointerException     if key or route is null
+     */
+    MigrationRoute<N> route(K key, MigrationRoute<N> route);
+
+    /**
+     * @param key Any key
+     * @return          true if owner of given key in the new topology differs from the old one
+     * @throws NullPointerException     if key value is null
+     */
+    boolean isMoved(K key);
+
+    /**
+     * Routes batch of keys; owners of {@code keys.get(i)} are stored at index {@code i} of given arrays.
+     *
+     * @param keys      Keys to be routed
+     * @param oldNodes  Array receiving owners in the old topology
+     * @param newNodes  Array receiving owners in the new topology
+     * @return          Number of moved keys
+     * @throws NullPointerException     if any key is null
+     * @throws IllegalArgumentException if any of arrays is shorter than list of keys
+     */
+    int routeAll(List<? extends K> keys, N[] oldNodes, N[] newNodes);
+
+    /**
+     * @return view of the old topology
+     */
+    KeyedStableHash<K, N> getOld();
+
+    /**
+     * @return view of the new topology
+     */
+    KeyedStableHash<K, N> getNew();
+
+}
@@ -0,0 +1,58 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+/**
+ * Fast failover of nodes without rebuilding {@link StableHash} instance. Node marked down keeps its place
+ * (ring points or score) and lookups skip it: consistent hash continues clockwise ring walk to the next node
+ * which is up, rendezvous hash takes the next best score. Marking node up again restores exactly the previous
+ * ownership. Marks are visible to all threads immediately and are carried over to instances derived with
+ * {@code addNode}, {@code removeNode} etc.
+ *
+ * Size of replica sets is still validated against all nodes, down ones included; {@code getNodes} returns
+ * an empty set when fewer than requested nodes are up, the same as when there are not enough nodes at all.
+ *
+ * @param <N> Node type
+ */
+public interface NodeFailover<N> {
+
+    /**
+     * Marks node down.
+     *
+     * @param node  Node of this instance
+     * @return      true if node was up before
+     * @throws NullPointerException     if {@code node} is null
+     * @throws IllegalArgumentException if {@code node} is not a node of this instance
+     */
+    boolean markDown(N node);
+
+    /**
+     * Marks node up.
+     *
+     * @param node  Node of this instance
+     * @return      true if node was down before
+     * @throws NullPointerException     if {@code node} is null
+     * @throws IllegalArgumentException if {@code node} is not a node of this instance
+     */
+    boolean markUp(N node);
+
+    /**
+     * @param node  Any node
+     * @return      true if node is a node of this instance and is marked down
+     */
+    boolean isDown(N node);
+
+}
@@ -0,0 +1,137 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The {@code PartitionMap} class is an immutable assignment of fixed partitions to nodes, as used by
+ * {@link PartitionedStableHash}. It can be persisted (nodes and owner indices) and restored later
+ * with {@code StableHashStaticFactory.newPartitionedHash(PartitionMap, Map)}.
+ *
+ * Owner of partition {@code p} is {@code getNodes().get(getOwners()[p])}; owner index is -1 only if there are no nodes.
+ *
+ * @param <N> Node type
+ */
+public final class PartitionMap<N> {
+
+    private final List<N> nodes;
+    private final int[] owners;
+
+    /**
+     * Creates partition map.
+     *
+     * @param nodes     Distinct nodes
+     * @param owners    Index of owning node for every partition; number of partitions must be a power of two
+     * @throws NullPointerException     if nodes or owners is null
+     * @throws IllegalArgumentException if number of partitions is not a power of two, nodes are not distinct
+     *                                  or any owner index is out of range
+     */
+    public PartitionMap(List<N> nodes, int[] owners) {
+        if (nodes == null || owners == null) {
+            throw new NullPointerException("nodes and owners must not be null");
+        }
+        if (owners.length == 0 || Integer.bitCount(owners.length) != 1) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + owners.length + "; should be a power of two.");
+        }
+        if (new HashSet<>(nodes).size() != nodes.size()) {
+            throw new IllegalArgumentException("nodes must be distinct");
+        }
+        int minOwner = nodes.isEmpty() ? -1 : 0;
+        for (int owner : owners) {
+            if (owner < minOwner || owner >= nodes.size()) {
+                throw new IllegalArgumentException("Owner index outside of expected range [" + minOwner + "," + nodes.size() + "): " + owner);
+            }
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.owners = owners.clone();
+    }
+
+    /**
+     * @return number of partitions
+     */
+    public int getPartitionCount() {
+        return owners.length;
+    }
+
+    /**
+     * @return nodes referenced by owner indices
+     */
+    public List<N> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return copy of owner indices, one per partition
+     */
+    public int[] getOwners() {
+        return owners.clone();
+    }
+
+    /**
+     * @return owner of given partition or empty if there are no nodes
+     * @throws IndexOutOfBoundsException if partition is out of range
+     */
+    public Optional<N> getOwner(int partition) {
+        int owner = owners[partition];
+        return owner < 0 ? Optional.empty() : Optional.of(nodes.get(owner));
+    }
+
+    /**
+     * @return number of partitions owned by given node; 0 if node is unknown
+     */
+    public int getPartitionCount(N node) {
+        int index = nodes.indexOf(node);
+        int count = 0;
+        for (int owner : owners) {
+            if (owner == index && index >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PartitionMap<?> that = (PartitionMap<?>) o;
+        return nodes.equals(that.nodes) && Arrays.equals(owners, that.owners);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * nodes.hashCode() + Arrays.hashCode(owners);
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionMap{" +
+                "nodes=" + nodes +
+                ", partitions=" + owners.length +
+                '}';
+    }
+
+}
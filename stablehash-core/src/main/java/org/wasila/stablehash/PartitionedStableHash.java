@@ -0,0 +1,56 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+/**
+ * {@code StableHash} with fixed number of partitions (in the spirit of Dynamo and Cassandra vnodes).
+ * Key is hashed into one of the partitions and every partition is owned by exactly one node, so lookup
+ * is a single hash and an array read. Membership and weight changes move the minimal number of partitions
+ * needed to give every node its share proportional to weight.
+ *
+ * @param <N> Node type
+ */
+public interface PartitionedStableHash<N> extends StableHash<N> {
+
+    /**
+     * Returns partition of given key.
+     *
+     * @param key   Any string value
+     * @return      Partition number in range [0, partition count)
+     * @throws NullPointerException     if key value is null
+     */
+    int getPartition(String key);
+
+    /**
+     * Returns current assignment of partitions to nodes, eg. to persist it.
+     *
+     * @return      Partition map
+     */
+    PartitionMap<N> getPartitionMap();
+
+    @Override
+    PartitionedStableHash<N> addNode(N node);
+
+    @Override
+    PartitionedStableHash<N> addWeightedNode(N node, int weight);
+
+    @Override
+    PartitionedStableHash<N> updateWeightedNode(N node, int weight);
+
+    @Override
+    PartitionedStableHash<N> removeNode(N node);
+
+}
@@ -0,0 +1,48 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+/**
+ * Memory layout of the structure searched on every consistent hash lookup.
+ */
+public enum SearchLayout {
+
+    /**
+     * Plain binary search over sorted points.
+     */
+    BINARY,
+
+    /**
+     * Points copied in Eytzinger (breadth first) order; the top levels of implicit tree share few cache lines
+     * and the next levels to visit are adjacent in memory. Uses twice as much memory for points.
+     */
+    EYTZINGER,
+
+    /**
+     * Points copied into static 16-ary B-tree where every node is a block of 16 consecutive points, so every
+     * step of the search touches at most two cache lines. Uses twice as much memory for points.
+     */
+    BTREE,
+
+    /**
+     * Plain sorted points plus auxiliary table of buckets keyed by the top bits of 32-bit hash, each bucket
+     * holding range of ring positions it spans. Lookup reads one bucket and searches only inside it.
+     * Number of buckets follows number of points (at most 2^22), costing 4 bytes per bucket.
+     * Can be combined with off-heap ring; the bucket table itself is kept on heap.
+     */
+    RADIX_BUCKETS
+
+}
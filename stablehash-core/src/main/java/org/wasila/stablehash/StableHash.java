@@ -18,7 +18,7 @@ package org.wasila.stablehash;
 import java.util.Optional;
 import java.util.Set;
 
-public interface StableHash<N> {
+public interface StableHash<N> extends AutoCloseable {
 
     /**
      * Returns node for given key.
@@ -34,7 +34,8 @@ public interface StableHash<N> {
      *
      * @param key Any string value
      * @param size      Specifies how many nodes are expected to be returned
-     * @return          Nodes assigned to the key given as an argument
+     * @return          Nodes assigned to the key given as an argument; empty if fewer than {@code size} nodes
+     *                  can be returned, eg. when nodes are marked down with {@link NodeFailover}
      * @throws NullPointerException     if key value is null
      * @throws IllegalArgumentException if size is 0 or less or greater than total number of nodes
      */
@@ -81,4 +82,25 @@ public interface StableHash<N> {
      */
     StableHash<N> removeNode(N node);
 
+    /**
+     * Returns statistics of how evenly keys are spread over nodes of this instance. All implementations created
+     * by {@code StableHashStaticFactory} support it; by default it is not supported, so implementations written
+     * before it was added keep compiling.
+     *
+     * @return          Ownership and balance statistics
+     * @throws UnsupportedOperationException if implementation does not provide statistics
+     */
+    default HashStats<N> stats() {
+        throw new UnsupportedOperationException("Statistics are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Releases resources held by this instance, eg. off-heap ring of consistent hash created with
+     * {@link StableHashOptions#withOffHeap(boolean)}. Lookups started afterwards throw {@link IllegalStateException};
+     * lookups in progress finish normally. Instances holding nothing to release, which is the default, ignore it.
+     */
+    @Override
+    default void close() {
+    }
+
 }
@@ -0,0 +1,38 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+/**
+ * {@link StableHash} which decorates another one, changing how lookups by string key are served or observed
+ * but not the nodes and weights. Instances derived from a decorator (eg. by {@code addNode}) decorate the instance
+ * derived from its delegate.
+ *
+ * {@link StableHashStaticFactory#failover(StableHash)} and {@link StableHashStaticFactory#topology(StableHash)}
+ * of a decorator are the ones of its delegate, so decorated hashes can be failed over, ramped and updated with
+ * {@link TopologyDelta}. Lookups by key hash ({@link StableHashStaticFactory#keyed(StableHash, KeyHasher)} and
+ * {@link StableHashStaticFactory#migration(StableHash, StableHash, KeyHasher)}) are rejected, as they would
+ * bypass the decorator; create them from the delegate if that is intended.
+ *
+ * @param <N> Node type
+ */
+public interface StableHashDecorator<N> extends StableHash<N> {
+
+    /**
+     * @return decorated instance
+     */
+    StableHash<N> getDelegate();
+
+}
@@ -0,0 +1,188 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+/**
+ * The {@code StableHashOptions} class holds optional tuning of {@link StableHash} implementations.
+ * Instances are immutable; every {@code with...} method returns a modified copy.
+ *
+ * Options not applicable to given algorithm are ignored by it.
+ */
+public final class StableHashOptions {
+
+    private static final StableHashOptions DEFAULTS = new StableHashOptions(false, SearchLayout.BINARY, null, 0, 32, 0);
+
+    private final boolean offHeap;
+    private final SearchLayout searchLayout;
+    private final HashTagExtractor hashTagExtractor;
+    private final int precomputedReplicas;
+    private final int pointBits;
+    private final int vnodesPerWeight;
+
+    private StableHashOptions(boolean offHeap, SearchLayout searchLayout, HashTagExtractor hashTagExtractor,
+                              int precomputedReplicas, int pointBits, int vnodesPerWeight) {
+        this.offHeap = offHeap;
+        this.searchLayout = searchLayout;
+        this.hashTagExtractor = hashTagExtractor;
+        this.precomputedReplicas = precomputedReplicas;
+        this.pointBits = pointBits;
+        this.vnodesPerWeight = vnodesPerWeight;
+    }
+
+    /**
+     * @return options matching behaviour of instances created without options
+     */
+    public static StableHashOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Consistent hashing only. When enabled, sorted ring points and their owners are kept in direct
+     * (off-heap) memory instead of heap arrays. Memory is returned by cleaner of the buffer once instance becomes
+     * unreachable; {@link StableHash#close()} drops the ring eagerly, so it is not kept alive by a forgotten reference.
+     * Off-heap ring supports {@link SearchLayout#BINARY} and {@link SearchLayout#RADIX_BUCKETS} search layouts only.
+     *
+     * @param offHeap   true to keep ring off-heap
+     * @return          Modified options
+     */
+    public StableHashOptions withOffHeap(boolean offHeap) {
+        return new StableHashOptions(offHeap, searchLayout, hashTagExtractor, precomputedReplicas, pointBits, vnodesPerWeight);
+    }
+
+    /**
+     * Consistent hashing only. Selects memory layout of points searched on lookup. All layouts
+     * return exactly the same nodes.
+     *
+     * @param searchLayout  Layout of searched points
+     * @return              Modified options
+     * @throws NullPointerException if {@code searchLayout} is null
+     */
+    public StableHashOptions withSearchLayout(SearchLayout searchLayout) {
+        if (searchLayout == null) {
+            throw new NullPointerException("searchLayout must not be null");
+        }
+        return new StableHashOptions(offHeap, searchLayout, hashTagExtractor, precomputedReplicas, pointBits, vnodesPerWeight);
+    }
+
+    /**
+     * All algorithms. When set, string keys are hashed by their hash tag only, eg. with {@link HashTagExtractor#redis()}
+     * keys {@code user:{42}:profile} and {@code user:{42}:cart} are assigned to the same node. Lookups by {@link KeyedStableHash} use {@link KeyHasher#ofString(HashTagExtractor)} instead.
+     *
+     * @param hashTagExtractor  Extractor of hash tags or null to hash whole keys
+     * @return                  Modified options
+     */
+    public StableHashOptions withHashTagExtractor(HashTagExtractor hashTagExtractor) {
+        return new StableHashOptions(offHeap, searchLayout, hashTagExtractor, precomputedReplicas, pointBits, vnodesPerWeight);
+    }
+
+    /**
+     * Consistent hashing only. When greater than 0, for every ring point the first {@code replicas} distinct
+     * nodes found walking clockwise from it are computed when instance is built, so {@code getNodes} asking
+     * for up to that many nodes is a single search plus array reads instead of a ring walk. Table costs
+     * {@code 4 * replicas} bytes of heap per ring point.
+     *
+     * @param replicas  Number of distinct nodes precomputed for every ring point; 0 disables the table
+     * @return          Modified options
+     * @throws IllegalArgumentException if {@code replicas} is negative
+     */
+    public StableHashOptions withPrecomputedReplicas(int replicas) {
+        if (replicas < 0) {
+            throw new IllegalArgumentException("Invalid number of precomputed replicas: " + replicas + "; should be >= 0.");
+        }
+        return new StableHashOptions(offHeap, searchLayout, hashTagExtractor, replicas, pointBits, vnodesPerWeight);
+    }
+
+    /**
+     * Consistent hashing only. Selects size of ring points. Default 32-bit points are compatible with original
+     * implementation but collide on large rings. 64-bit points take 8 bytes of auxiliary hash each (two points
+     * per virtual node instead of three), practically never collide and points which do collide are resolved
+     * by node identity instead of node order. 64-bit points are not supported by {@link SearchLayout#RADIX_BUCKETS}.
+     *
+     * @param pointBits 32 or 64
+     * @return          Modified options
+     * @throws IllegalArgumentException if {@code pointBits} is neither 32 nor 64
+     */
+    public StableHashOptions withPointBits(int pointBits) {
+        if (pointBits != 32 && pointBits != 64) {
+            throw new IllegalArgumentException("Invalid point bits: " + pointBits + "; should be 32 or 64.");
+        }
+        return new StableHashOptions(offHeap, searchLayout, hashTagExtractor, precomputedReplicas, pointBits, vnodesPerWeight);
+    }
+
+    /**
+     * Consistent hashing only. By default weights are relative: node gets {@code 40 * nodes * weight / totalWeight}
+     * virtual nodes, so adding a node or changing any weight changes number of virtual nodes of all nodes and moves
+     * keys between unrelated nodes. With absolute weights node gets {@code weight * vnodesPerWeight} virtual nodes
+     * (always a prefix of the same sequence), so a change of membership or weight adds or removes points of the
+     * changed node only and moves only keys from or to that node. Instances derived with {@code addNode},
+     * {@code removeNode} or {@code updateWeightedNode} then also merge the changed node's points into the previous
+     * ring instead of building it from scratch.
+     *
+     * @param vnodesPerWeight   Number of virtual nodes per unit of weight, eg. 40; 0 restores relative weights
+     * @return                  Modified options
+     * @throws IllegalArgumentException if {@code vnodesPerWeight} is negative
+     */
+    public StableHashOptions withAbsoluteWeights(int vnodesPerWeight) {
+        if (vnodesPerWeight < 0) {
+            throw new IllegalArgumentException("Invalid number of virtual nodes per weight: " + vnodesPerWeight + "; should be >= 0.");
+        }
+        return new StableHashOptions(offHeap, searchLayout, hashTagExtractor, precomputedReplicas, pointBits, vnodesPerWeight);
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public SearchLayout getSearchLayout() {
+        return searchLayout;
+    }
+
+    public HashTagExtractor getHashTagExtractor() {
+        return hashTagExtractor;
+    }
+
+    public int getPrecomputedReplicas() {
+        return precomputedReplicas;
+    }
+
+    public int getPointBits() {
+        return pointBits;
+    }
+
+    /**
+     * @return number of virtual nodes per unit of weight or 0 if weights are relative
+     */
+    public int getVnodesPerWeight() {
+        return vnodesPerWeight;
+    }
+
+    public boolean isAbsoluteWeights() {
+        return vnodesPerWeight > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "StableHashOptions{" +
+                "offHeap=" + offHeap +
+                ", searchLayout=" + searchLayout +
+                ", hashTagExtractor=" + hashTagExtractor +
+                ", precomputedReplicas=" + precomputedReplicas +
+                ", pointBits=" + pointBits +
+                ", vnodesPerWeight=" + vnodesPerWeight +
+                '}';
+    }
+
+}
@@ -16,10 +16,16 @@
 package org.wasila.stablehash;
 
 import org.wasila.stablehash.internal.ConsistentHash;
+import org.wasila.stablehash.internal.HierarchicalHash;
+import org.wasila.stablehash.internal.KeyedHash;
+import org.wasila.stablehash.internal.KeyedMigration;
+import org.wasila.stablehash.internal.PartitionedHash;
 import org.wasila.stablehash.internal.RendezvousHash;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 public class StableHashStaticFactory {
 
@@ -39,6 +45,32 @@ public class StableHashStaticFactory {
         return new ConsistentHash<>(weightedNodes);
     }
 
+    public static <N> StableHash<N> newConsistentHash(HashFactory hashFactory, Collection<N> nodes, StableHashOptions options) {
+        return new ConsistentHash<>(hashFactory, nodes, options);
+    }
+
+    public static <N> StableHash<N> newConsistentHash(HashFactory hashFactory, Map<N, Integer> weightedNodes, StableHashOptions options) {
+        return new ConsistentHash<>(hashFactory, weightedNodes, options);
+    }
+
+    public static <N> StableHash<N> newConsistentHash(Collection<N> nodes, StableHashOptions options) {
+        return new ConsistentHash<>(nodes, options);
+    }
+
+    public static <N> StableHash<N> newConsistentHash(Map<N, Integer> weightedNodes, StableHashOptions options) {
+        return new ConsistentHash<>(weightedNodes, options);
+    }
+
+    public static <N> StableHash<N> newConsistentHash(HashFactory hashFactory, Map<N, Integer> weightedNodes, StableHashOptions options,
+                                                      Function<? super N, String> nodeIdentity) {
+        return new ConsistentHash<>(hashFactory, weightedNodes, options, nodeIdentity);
+    }
+
+    public static <N> StableHash<N> newConsistentHash(Map<N, Integer> weightedNodes, StableHashOptions options,
+                                                      Function<? super N, String> nodeIdentity) {
+        return new ConsistentHash<>(weightedNodes, options, nodeIdentity);
+    }
+
     public static <N> StableHash<N> newRendezvousHash(HashFactory hashFactory, Collection<N> nodes) {
         return new RendezvousHash<>(hashFactory, nodes);
     }
@@ -55,4 +87,133 @@ public class StableHashStaticFactory {
         return new RendezvousHash<>(weightedNodes);
     }
 
+    public static <N> StableHash<N> newRendezvousHash(HashFactory hashFactory, Map<N, Integer> weightedNodes,
+                                                      Function<? super N, String> nodeIdentity) {
+        return new RendezvousHash<>(hashFactory, weightedNodes, nodeIdentity);
+    }
+
+    public static <N> StableHash<N> newRendezvousHash(Map<N, Integer> weightedNodes, Function<? super N, String> nodeIdentity) {
+        return new RendezvousHash<>(weightedNodes, nodeIdentity);
+    }
+
+    public static <N> StableHash<N> newRendezvousHash(HashFactory hashFactory, Map<N, Integer> weightedNodes, StableHashOptions options) {
+        return new RendezvousHash<>(hashFactory, weightedNodes, options);
+    }
+
+    public static <N> StableHash<N> newRendezvousHash(Map<N, Integer> weightedNodes, StableHashOptions options) {
+        return new RendezvousHash<>(weightedNodes, options);
+    }
+
+    public static <N> HierarchicalStableHash<N> newHierarchicalHash(HashFactory hashFactory, Map<N, Integer> weightedNodes,
+                                                                    Function<N, List<String>> locator, int failureDomainLevel) {
+        return new HierarchicalHash<>(hashFactory, weightedNodes, locator, failureDomainLevel);
+    }
+
+    public static <N> HierarchicalStableHash<N> newHierarchicalHash(Map<N, Integer> weightedNodes,
+                                                                    Function<N, List<String>> locator, int failureDomainLevel) {
+        return new HierarchicalHash<>(weightedNodes, locator, failureDomainLevel);
+    }
+
+    public static <N> HierarchicalStableHash<N> newHierarchicalHash(HashFactory hashFactory, Map<N, Integer> weightedNodes,
+                                                                    Function<N, List<String>> locator, int failureDomainLevel,
+                                                                    StableHashOptions options) {
+        return new HierarchicalHash<>(hashFactory, weightedNodes, locator, failureDomainLevel, options);
+    }
+
+    public static <N> HierarchicalStableHash<N> newHierarchicalHash(Map<N, Integer> weightedNodes,
+                                                                    Function<N, List<String>> locator, int failureDomainLevel,
+                                                                    StableHashOptions options) {
+        return new HierarchicalHash<>(weightedNodes, locator, failureDomainLevel, options);
+    }
+
+    public static <N> PartitionedStableHash<N> newPartitionedHash(Collection<N> nodes, int partitionCount) {
+        return new PartitionedHash<>(nodes, partitionCount);
+    }
+
+    public static <N> PartitionedStableHash<N> newPartitionedHash(Map<N, Integer> weightedNodes, int partitionCount) {
+        return new PartitionedHash<>(weightedNodes, partitionCount);
+    }
+
+    public static <N> PartitionedStableHash<N> newPartitionedHash(Map<N, Integer> weightedNodes, int partitionCount,
+                                                                  StableHashOptions options) {
+        return new PartitionedHash<>(weightedNodes, partitionCount, options);
+    }
+
+    /**
+     * Restores partitioned hash from persisted partition map; partitions are rebalanced only if
+     * given nodes or weights differ from the ones the map was created for.
+     */
+    public static <N> PartitionedStableHash<N> newPartitionedHash(PartitionMap<N> partitionMap, Map<N, Integer> weightedNodes) {
+        return new PartitionedHash<>(partitionMap, weightedNodes);
+    }
+
+    /**
+     * Restores partitioned hash from persisted partition map with given options, eg. the hash tag extractor
+     * the map was used with; partitions are rebalanced only if given nodes or weights differ from the ones
+     * the map was created for.
+     */
+    public static <N> PartitionedStableHash<N> newPartitionedHash(PartitionMap<N> partitionMap, Map<N, Integer> weightedNodes,
+                                                                  StableHashOptions options) {
+        return new PartitionedHash<>(partitionMap, weightedNodes, options);
+    }
+
+    /**
+     * Returns failover control of given hash; marking nodes down or up affects lookups of the hash itself.
+     * Failover of a {@link StableHashDecorator} is the one of its delegate.
+     *
+     * @throws IllegalArgumentException if hash does not support failover
+     */
+    @SuppressWarnings("unchecked")
+    public static <N> NodeFailover<N> failover(StableHash<N> hash) {
+        StableHash<N> undecorated = undecorated(hash);
+        if (!(undecorated instanceof NodeFailover)) {
+            throw new IllegalArgumentException("Failover is not supported by " + undecorated.getClass().getName());
+        }
+        return (NodeFailover<N>) undecorated;
+    }
+
+    /**
+     * Returns nodes, weights and fingerprint of given hash, eg. to compute {@link TopologyDelta} against it.
+     * Topology of a {@link StableHashDecorator} is the one of its delegate.
+     *
+     * @throws IllegalArgumentException if hash does not support topology versioning
+     */
+    @SuppressWarnings("unchecked")
+    public static <N> VersionedTopology<N> topology(StableHash<N> hash) {
+        StableHash<N> undecorated = undecorated(hash);
+        if (!(undecorated instanceof VersionedTopology)) {
+            throw new IllegalArgumentException("Topology versioning is not supported by " + undecorated.getClass().getName());
+        }
+        return (VersionedTopology<N>) undecorated;
+    }
+
+    /**
+     * Returns view of given hash routing keys of arbitrary type hashed with given strategy.
+     *
+     * @throws IllegalArgumentException if hash does not support lookups by key hash, eg. it is
+     *                                  a {@link StableHashDecorator}
+     */
+    public static <K, N> KeyedStableHash<K, N> keyed(StableHash<N> hash, KeyHasher<K> keyHasher) {
+        return new KeyedHash<>(hash, keyHasher);
+    }
+
+    /**
+     * Returns view routing keys of arbitrary type in both given hashes at once, eg. while migrating data
+     * from one topology to another; every key is hashed only once.
+     *
+     * @throws IllegalArgumentException if any of hashes does not support lookups by key hash, eg. it is
+     *                                  a {@link StableHashDecorator}
+     */
+    public static <K, N> MigrationView<K, N> migration(StableHash<N> oldHash, StableHash<N> newHash, KeyHasher<K> keyHasher) {
+        return new KeyedMigration<>(oldHash, newHash, keyHasher);
+    }
+
+    private static <N> StableHash<N> undecorated(StableHash<N> hash) {
+        StableHash<N> undecorated = hash;
+        while (undecorated instanceof StableHashDecorator) {
+            undecorated = ((StableHashDecorator<N>) undecorated).getDelegate();
+        }
+        return undecorated;
+    }
+
 }
@@ -0,0 +1,302 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The {@code TopologyDelta} class is an immutable set of changes (additions, removals and weight updates of nodes)
+ * turning one version of topology into another. Versions are identified by {@link VersionedTopology#getFingerprint()
+ * fingerprints}, so a delta applies only to the instance it was computed from and applying it again is a no-op.
+ *
+ * Deltas have compact binary form: one byte of format version, base and target fingerprints, number of changes and
+ * for every change its type, node name as length prefixed UTF-8 and weight (lengths, counts and weights are varints).
+ *
+ * @param <N> Node type
+ */
+public final class TopologyDelta<N> {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Type of change of a single node.
+     */
+    public enum Type {
+        ADD, REMOVE, REWEIGHT
+    }
+
+    /**
+     * Change of a single node; weight is 0 for removals.
+     *
+     * @param <N> Node type
+     */
+    public static final class Change<N> {
+
+        private final Type type;
+        private final N node;
+        private final int weight;
+
+        private Change(Type type, N node, int weight) {
+            this.type = type;
+            this.node = node;
+            this.weight = weight;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public N getNode() {
+            return node;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return type == Type.REMOVE ? type + " " + node : type + " " + node + "=" + weight;
+        }
+
+    }
+
+    private final long baseFingerprint;
+    private final long targetFingerprint;
+    private final List<Change<N>> changes;
+
+    private TopologyDelta(long baseFingerprint, long targetFingerprint, List<Change<N>> changes) {
+        this.baseFingerprint = baseFingerprint;
+        this.targetFingerprint = targetFingerprint;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Computes delta between two versions of topology. Removals come first, then weight updates, then additions
+     * in iteration order of target's nodes.
+     *
+     * @param base      Topology to be updated
+     * @param target    Topology to be reached
+     * @return          Delta turning base into target
+     * @throws NullPointerException     if base or target is null
+     */
+    public static <N> TopologyDelta<N> between(VersionedTopology<N> base, VersionedTopology<N> target) {
+        if (base == null || target == null) {
+            throw new NullPointerException("base and target must not be null");
+        }
+        Map<N, Integer> baseWeights = base.getWeights();
+        Map<N, Integer> targetWeights = target.getWeights();
+        List<Change<N>> removals = new ArrayList<>();
+        List<Change<N>> updates = new ArrayList<>();
+        List<Change<N>> additions = new ArrayList<>();
+        for (Map.Entry<N, Integer> entry : baseWeights.entrySet()) {
+            Integer weight = targetWeights.get(entry.getKey());
+            if (weight == null) {
+                removals.add(new Change<>(Type.REMOVE, entry.getKey(), 0));
+            } else if (!weight.equals(entry.getValue())) {
+                updates.add(new Change<>(Type.REWEIGHT, entry.getKey(), weight));
+            }
+        }
+        for (Map.Entry<N, Integer> entry : targetWeights.entrySet()) {
+            if (!baseWeights.containsKey(entry.getKey())) {
+                additions.add(new Change<>(Type.ADD, entry.getKey(), entry.getValue()));
+            }
+        }
+        removals.addAll(updates);
+        removals.addAll(additions);
+        return new TopologyDelta<>(base.getFingerprint(), target.getFingerprint(), removals);
+    }
+
+    /**
+     * @return  fingerprint of topology this delta applies to
+     */
+    public long getBaseFingerprint() {
+        return baseFingerprint;
+    }
+
+    /**
+     * @return  fingerprint of topology after this delta is applied
+     */
+    public long getTargetFingerprint() {
+        return targetFingerprint;
+    }
+
+    /**
+     * @return  unmodifiable list of changes in order they are applied
+     */
+    public List<Change<N>> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return  true if delta has no changes
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Applies this delta to given instance with {@code addWeightedNode}, {@code removeNode} and
+     * {@code updateWeightedNode}, so cached node hashes and failover marks of the instance are carried over.
+     * If the instance already has target fingerprint it is returned unchanged.
+     *
+     * @param hash  Instance with base or target fingerprint
+     * @return      Instance with target fingerprint
+     * @throws IllegalArgumentException if hash does not support topology versioning or its fingerprint is neither
+     *                                  base nor target fingerprint of this delta
+     * @throws IllegalStateException    if result of applying changes does not have target fingerprint, which means
+     *                                  node identities of the instance differ from the ones delta was computed with
+     */
+    public StableHash<N> applyTo(StableHash<N> hash) {
+        long fingerprint = StableHashStaticFactory.topology(hash).getFingerprint();
+        if (fingerprint == targetFingerprint) {
+            return hash;
+        }
+        if (fingerprint != baseFingerprint) {
+            throw new IllegalArgumentException("Invalid fingerprint: " + Long.toHexString(fingerprint)
+                    + "; should be " + Long.toHexString(baseFingerprint) + ".");
+        }
+        StableHash<N> result = hash;
+        for (Change<N> change : changes) {
+            switch (change.type) {
+                case ADD:
+                    result = result.addWeightedNode(change.node, change.weight);
+                    break;
+                case REMOVE:
+                    result = result.removeNode(change.node);
+                    break;
+                default:
+                    result = result.updateWeightedNode(change.node, change.weight);
+            }
+        }
+        long resultFingerprint = StableHashStaticFactory.topology(result).getFingerprint();
+        if (resultFingerprint != targetFingerprint) {
+            throw new IllegalStateException("Fingerprint after applying delta: " + Long.toHexString(resultFingerprint)
+                    + " differs from target: " + Long.toHexString(targetFingerprint));
+        }
+        return result;
+    }
+
+    /**
+     * Encodes delta to its binary form.
+     *
+     * @param nodeName  Returns name of node; it has to be parseable back by {@link #decode(byte[], Function)}
+     * @return          Encoded delta
+     */
+    public byte[] encode(Function<? super N, String> nodeName) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(17 + changes.size() * 16);
+        out.write(FORMAT_VERSION);
+        writeLong(out, baseFingerprint);
+        writeLong(out, targetFingerprint);
+        writeVarInt(out, changes.size());
+        for (Change<N> change : changes) {
+            byte[] name = nodeName.apply(change.node).getBytes(StandardCharsets.UTF_8);
+            out.write(change.type.ordinal());
+            writeVarInt(out, name.length);
+            out.write(name, 0, name.length);
+            if (change.type != Type.REMOVE) {
+                writeVarInt(out, change.weight);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes delta from its binary form.
+     *
+     * @param bytes     Encoded delta
+     * @param nodeParser Returns node of given name
+     * @return          Decoded delta
+     * @throws IllegalArgumentException if bytes are not a valid encoded delta
+     */
+    public static <N> TopologyDelta<N> decode(byte[] bytes, Function<String, ? extends N> nodeParser) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            byte version = in.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Invalid delta format version: " + version + "; should be " + FORMAT_VERSION + ".");
+            }
+            long base = in.getLong();
+            long target = in.getLong();
+            int count = readVarInt(in);
+            List<Change<N>> changes = new ArrayList<>(Math.min(count, in.remaining()));
+            for (int i = 0; i < count; i++) {
+                int ordinal = in.get();
+                if (ordinal < 0 || ordinal >= Type.values().length) {
+                    throw new IllegalArgumentException("Invalid change type: " + ordinal);
+                }
+                Type type = Type.values()[ordinal];
+                byte[] name = new byte[readVarInt(in)];
+                in.get(name);
+                int weight = type == Type.REMOVE ? 0 : readVarInt(in);
+                if (type != Type.REMOVE && weight <= 0) {
+                    throw new IllegalArgumentException("Invalid weight value: " + weight + "; should be > 0.");
+                }
+                changes.add(new Change<>(type, nodeParser.apply(new String(name, StandardCharsets.UTF_8)), weight));
+            }
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing bytes after delta: " + in.remaining());
+            }
+            return new TopologyDelta<>(base, target, changes);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated delta", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TopologyDelta{" +
+                "base=" + Long.toHexString(baseFingerprint) +
+                ", target=" + Long.toHexString(targetFingerprint) +
+                ", changes=" + changes +
+                '}';
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+}
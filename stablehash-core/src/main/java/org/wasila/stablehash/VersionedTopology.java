@@ -0,0 +1,43 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.util.Map;
+
+/**
+ * Nodes and weights of a {@link StableHash} instance together with their 64-bit fingerprint. Instances built
+ * from equal nodes (by node identity) and equal weights have equal fingerprints regardless of how they were built,
+ * so a client can skip a topology update it already has by comparing fingerprints, and a {@link TopologyDelta}
+ * can tell which version it applies to.
+ *
+ * @param <N> Node type
+ */
+public interface VersionedTopology<N> {
+
+    /**
+     * @return  unmodifiable map of nodes of this instance and their weights
+     */
+    Map<N, Integer> getWeights();
+
+    /**
+     * Returns fingerprint of nodes and weights of this instance. Ring layout options and failover marks
+     * are not part of the fingerprint.
+     *
+     * @return  64-bit fingerprint
+     */
+    long getFingerprint();
+
+}
@@ -0,0 +1,119 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent Count-Min sketch of fixed size. Counters are updated with atomic increments so many threads
+ * can feed it without locking; estimates never undercount and overcount by at most
+ * {@code total * e / width} with high probability.
+ */
+public final class CountMinSketch {
+
+    /**
+     * Maximum number of rows.
+     */
+    public static final int MAX_DEPTH = 8;
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param depth Number of rows (independent hash functions), between 1 and 8
+     * @param width Number of counters per row; rounded up to power of two
+     * @throws IllegalArgumentException if depth or width is out of range
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Invalid depth: " + depth + "; should be in range [1," + MAX_DEPTH + "].");
+        }
+        if (width < 1 || width > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid width: " + width + "; should be in range [1,2^30].");
+        }
+        int roundedWidth = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.mask = roundedWidth - 1;
+        this.counters = new AtomicLongArray(depth * roundedWidth);
+    }
+
+    /**
+     * Adds one occurrence of item with given hash.
+     *
+     * @param hash  Hash of the item
+     * @return      Estimated number of occurrences including this one
+     */
+    public long add(long hash) {
+        return add(hash, 1);
+    }
+
+    /**
+     * Adds given number of occurrences of item with given hash.
+     *
+     * @param hash  Hash of the item
+     * @param count Number of occurrences
+     * @return      Estimated number of occurrences including these
+     */
+    public long add(long hash, long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(row, hash), count));
+        }
+        return estimate;
+    }
+
+    /**
+     * @param hash  Hash of the item
+     * @return      Estimated number of occurrences
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves all counters so that old occurrences fade away. Concurrent updates may be partially lost.
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value = counters.get(i);
+            counters.compareAndSet(i, value, value >>> 1);
+        }
+    }
+
+    /**
+     * @return number of bytes held by counters
+     */
+    public long sizeInBytes() {
+        return 8L * counters.length();
+    }
+
+    private int index(int row, long hash) {
+        long mixed = (hash ^ SEEDS[row]) * 0xBF58476D1CE4E5B9L;
+        mixed ^= mixed >>> 31;
+        return row * (mask + 1) + (int) (mixed & mask);
+    }
+
+}
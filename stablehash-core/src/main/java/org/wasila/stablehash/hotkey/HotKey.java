@@ -0,0 +1,50 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.hotkey;
+
+/**
+ * Key reported as heavy hitter together with its estimated number of lookups since last decay.
+ */
+public final class HotKey {
+
+    private final String key;
+    private final long hash;
+    private final long estimate;
+
+    HotKey(String key, long hash, long estimate) {
+        this.key = key;
+        this.hash = hash;
+        this.estimate = estimate;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    public long getEstimate() {
+        return estimate;
+    }
+
+    @Override
+    public String toString() {
+        return "HotKey{" + key + '=' + estimate + '}';
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.hotkey;
+
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashDecorator;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code HotKeyAwareStableHash} class decorates any {@link StableHash} with adaptive replication of reads.
+ * Every {@link #getNode(String)} is fed to a {@link HotKeyDetector}; for cold keys it returns the single owner,
+ * for hot keys it returns randomly one of the first {@link HotKeyOptions#getSpread()} nodes of key's preference
+ * list (as returned by {@code getNodes}). Use it for routing reads only: writes must go to every replica.
+ *
+ * Failover and topology are the ones of the delegate (see {@link StableHashDecorator}); lookups by key hash are
+ * not supported, as keys would not be recorded by the detector.
+ *
+ * Detector is shared by all instances derived from the same decorated hash (eg. by {@code addNode}).
+ *
+ * @param <N> Node type
+ */
+public final class HotKeyAwareStableHash<N> implements StableHashDecorator<N> {
+
+    private final StableHash<N> delegate;
+    private final HotKeyDetector detector;
+    // spreading failed as there were fewer nodes than spread; it is retried after this time (nanos) if not 0
+    private volatile long spreadRetryAt;
+
+    private HotKeyAwareStableHash(StableHash<N> delegate, HotKeyDetector detector) {
+        this.delegate = delegate;
+        this.detector = detector;
+    }
+
+    /**
+     * Returns hot key aware view of given hash.
+     *
+     * @param hash      Hash to be decorated
+     * @param detector  Detector of hot keys
+     * @return          Decorated {@code StableHash} instance
+     * @throws NullPointerException     if {@code hash} or {@code detector} is null
+     */
+    public static <N> HotKeyAwareStableHash<N> wrap(StableHash<N> hash, HotKeyDetector detector) {
+        if (hash == null || detector == null) {
+            throw new NullPointerException("hash and detector must not be null");
+        }
+        return new HotKeyAwareStableHash<>(hash, detector);
+    }
+
+    public HotKeyDetector getDetector() {
+        return detector;
+    }
+
+    @Override
+    public StableHash<N> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Optional<N> getNode(String key) {
+        boolean hot = detector.record(key);
+        int spread = detector.getOptions().getSpread();
+        if (!hot || spread == 1 || isSpreadUnavailable()) {
+            return delegate.getNode(key);
+        }
+
+        Set<N> preferenceList;
+        try {
+            preferenceList = delegate.getNodes(key, spread);
+        } catch (IllegalArgumentException ex) {
+            // fewer nodes than spread; remember it for a while so hot path does not throw on every lookup
+            long retryNanos = detector.getOptions().getSpreadRetryNanos();
+            if (retryNanos > 0) {
+                spreadRetryAt = System.nanoTime() + retryNanos;
+            }
+            return delegate.getNode(key);
+        }
+        if (spreadRetryAt != 0) {
+            spreadRetryAt = 0;
+        }
+        if (preferenceList.isEmpty()) {
+            return delegate.getNode(key);
+        }
+
+        int chosen = ThreadLocalRandom.current().nextInt(preferenceList.size());
+        Iterator<N> it = preferenceList.iterator();
+        for (int i = 0; i < chosen; i++) {
+            it.next();
+        }
+        return Optional.of(it.next());
+    }
+
+    @Override
+    public Set<N> getNodes(String key, int size) {
+        return delegate.getNodes(key, size);
+    }
+
+    @Override
+    public HotKeyAwareStableHash<N> addNode(N node) {
+        return derive(delegate.addNode(node));
+    }
+
+    @Override
+    public HotKeyAwareStableHash<N> addWeightedNode(N node, int weight) {
+        return derive(delegate.addWeightedNode(node, weight));
+    }
+
+    @Override
+    public HotKeyAwareStableHash<N> updateWeightedNode(N node, int weight) {
+        return derive(delegate.updateWeightedNode(node, weight));
+    }
+
+    @Override
+    public HotKeyAwareStableHash<N> removeNode(N node) {
+        return derive(delegate.removeNode(node));
+    }
+
+    @Override
+    public HashStats<N> stats() {
+        return delegate.stats();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private boolean isSpreadUnavailable() {
+        long retryAt = spreadRetryAt;
+        return retryAt != 0 && System.nanoTime() - retryAt < 0;
+    }
+
+    private HotKeyAwareStableHash<N> derive(StableHash<N> newDelegate) {
+        if (newDelegate == delegate) {
+            return this;
+        }
+        return new HotKeyAwareStableHash<>(newDelegate, detector);
+    }
+
+}
@@ -0,0 +1,177 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.hotkey;
+
+import org.wasila.stablehash.internal.StreamingHash;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code HotKeyDetector} class finds keys looked up far more often than others. It uses fixed amount
+ * of memory: Count-Min sketch of lookup frequencies and short list of heavy hitters.
+ *
+ * Lookup totals are aggregated lazily (at random lookups, on average every
+ * {@link HotKeyOptions#getRefreshInterval()} lookups) so recording a lookup
+ * costs a few atomic increments on striped counters and no allocation. Lookups of keys which are already hot
+ * are sampled (one in 16 is added to the sketch with weight 16), so threads hammering a hot key do not contend
+ * on its counters. All frequencies are halved every {@link HotKeyOptions#getDecayInterval()} lookups so keys which
+ * cooled down stop being hot.
+ *
+ * Keys are hashed with 64-bit hash seeded randomly for every detector, so colliding keys cannot be prepared
+ * in advance to make cold keys look hot.
+ */
+public final class HotKeyDetector {
+
+    private static final int HOT_SAMPLE_MASK = 15;
+
+    private final HotKeyOptions options;
+    private final int refreshMask;
+    private final CountMinSketch sketch;
+    private final AtomicReferenceArray<HotKey> heavyHitters;
+    private final LongAdder lookups = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicLong nextDecay;
+    private volatile long windowLookups;
+    private final long seed = new SecureRandom().nextLong();
+
+    public HotKeyDetector(HotKeyOptions options) {
+        this.options = options;
+        this.refreshMask = options.getRefreshInterval() - 1;
+        this.sketch = new CountMinSketch(options.getSketchDepth(), options.getSketchWidth());
+        this.heavyHitters = new AtomicReferenceArray<>(options.getTrackedKeys());
+        this.nextDecay = new AtomicLong(options.getDecayInterval());
+    }
+
+    public HotKeyDetector() {
+        this(HotKeyOptions.defaults());
+    }
+
+    /**
+     * Records lookup of given key.
+     *
+     * @param key   Looked up key
+     * @return      true if key is currently hot
+     */
+    public boolean record(String key) {
+        long hash = hash(key);
+        int random = ThreadLocalRandom.current().nextInt();
+        long window = windowLookups;
+        long estimate = sketch.estimate(hash);
+        if (!isHot(estimate, window)) {
+            estimate = sketch.add(hash);
+        } else if ((random & HOT_SAMPLE_MASK) == 0) {
+            estimate = sketch.add(hash, HOT_SAMPLE_MASK + 1);
+        }
+        lookups.increment();
+        if ((random >>> 16 & refreshMask) == 0) {
+            refresh();
+            window = windowLookups;
+        }
+
+        if (!isHot(estimate, window)) {
+            return false;
+        }
+        offer(key, hash, estimate);
+        return true;
+    }
+
+    /**
+     * @param key   Key
+     * @return      true if key is currently hot; does not record a lookup
+     */
+    public boolean isHot(String key) {
+        return isHot(sketch.estimate(hash(key)), windowLookups);
+    }
+
+    /**
+     * @return currently tracked heavy hitters, most frequent first
+     */
+    public List<HotKey> getHotKeys() {
+        List<HotKey> result = new ArrayList<>();
+        for (int i = 0; i < heavyHitters.length(); i++) {
+            HotKey hotKey = heavyHitters.get(i);
+            if (hotKey != null) {
+                result.add(hotKey);
+            }
+        }
+        result.sort(Comparator.comparingLong(HotKey::getEstimate).reversed());
+        return result;
+    }
+
+    public HotKeyOptions getOptions() {
+        return options;
+    }
+
+    private void refresh() {
+        long total = lookups.sum();
+        long decayAt = nextDecay.get();
+        if (total >= decayAt && nextDecay.compareAndSet(decayAt, total + options.getDecayInterval())) {
+            sketch.decay();
+            long start = windowStart.get();
+            windowStart.set(total - (total - start) / 2);
+            for (int i = 0; i < heavyHitters.length(); i++) {
+                HotKey hotKey = heavyHitters.get(i);
+                if (hotKey != null) {
+                    long estimate = sketch.estimate(hotKey.getHash());
+                    heavyHitters.compareAndSet(i, hotKey, estimate == 0 ? null : new HotKey(hotKey.getKey(), hotKey.getHash(), estimate));
+                }
+            }
+        }
+        windowLookups = total - windowStart.get();
+    }
+
+    private void offer(String key, long hash, long estimate) {
+        int weakest = -1;
+        long weakestEstimate = Long.MAX_VALUE;
+        for (int i = 0; i < heavyHitters.length(); i++) {
+            HotKey hotKey = heavyHitters.get(i);
+            if (hotKey == null) {
+                weakest = i;
+                weakestEstimate = -1;
+            } else if (hotKey.getHash() == hash && hotKey.getKey().equals(key)) {
+                if (estimate > hotKey.getEstimate()) {
+                    heavyHitters.compareAndSet(i, hotKey, new HotKey(key, hash, estimate));
+                }
+                return;
+            } else if (hotKey.getEstimate() < weakestEstimate) {
+                weakest = i;
+                weakestEstimate = hotKey.getEstimate();
+            }
+        }
+        if (weakestEstimate < estimate) {
+            HotKey replaced = heavyHitters.get(weakest);
+            if (replaced == null || replaced.getEstimate() == weakestEstimate) {
+                heavyHitters.compareAndSet(weakest, replaced, new HotKey(key, hash, estimate));
+            }
+        }
+    }
+
+    private boolean isHot(long estimate, long window) {
+        return window >= options.getMinLookups() && estimate >= options.getHotFraction() * window;
+    }
+
+    private long hash(String key) {
+        return StreamingHash.hash(seed, key);
+    }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.hotkey;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning of hot key detection. Instances are immutable; every {@code with...} method returns a modified copy.
+ */
+public final class HotKeyOptions {
+
+    private static final HotKeyOptions DEFAULTS = new HotKeyOptions(4, 1 << 14, 32, 0.01d, 1000, 1 << 20, 3,
+            1024, TimeUnit.SECONDS.toNanos(1));
+
+    private final int sketchDepth;
+    private final int sketchWidth;
+    private final int trackedKeys;
+    private final double hotFraction;
+    private final long minLookups;
+    private final long decayInterval;
+    private final int spread;
+    private final int refreshInterval;
+    private final long spreadRetryNanos;
+
+    private HotKeyOptions(int sketchDepth, int sketchWidth, int trackedKeys, double hotFraction,
+                          long minLookups, long decayInterval, int spread, int refreshInterval, long spreadRetryNanos) {
+        this.sketchDepth = sketchDepth;
+        this.sketchWidth = sketchWidth;
+        this.trackedKeys = trackedKeys;
+        this.hotFraction = hotFraction;
+        this.minLookups = minLookups;
+        this.decayInterval = decayInterval;
+        this.spread = spread;
+        this.refreshInterval = refreshInterval;
+        this.spreadRetryNanos = spreadRetryNanos;
+    }
+
+    /**
+     * @return 4 x 16384 sketch (512KiB), 32 tracked keys, key is hot above 1% of lookups (after at least
+     *         1000 lookups), counters halved every 2^20 lookups, hot keys spread over 3 nodes, lookup totals
+     *         refreshed on average every 1024 lookups, spreading retried 1 second after it failed
+     */
+    public static HotKeyOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param depth Number of Count-Min sketch rows, between 1 and 8
+     * @param width Number of counters in every row, between 1 and 2^30; rounded up to power of two
+     * @return      Modified options
+     */
+    public HotKeyOptions withSketch(int depth, int width) {
+        if (depth < 1 || depth > CountMinSketch.MAX_DEPTH) {
+            throw new IllegalArgumentException("Invalid sketch depth: " + depth + "; should be in range [1," + CountMinSketch.MAX_DEPTH + "].");
+        }
+        if (width < 1 || width > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid sketch width: " + width + "; should be in range [1,2^30].");
+        }
+        return new HotKeyOptions(depth, width, trackedKeys, hotFraction, minLookups, decayInterval, spread, refreshInterval, spreadRetryNanos);
+    }
+
+    /**
+     * @param trackedKeys Size of heavy hitters list
+     * @return            Modified options
+     */
+    public HotKeyOptions withTrackedKeys(int trackedKeys) {
+        if (trackedKeys < 1) {
+            throw new IllegalArgumentException("Invalid number of tracked keys: " + trackedKeys + "; should be > 0.");
+        }
+        return new HotKeyOptions(sketchDepth, sketchWidth, trackedKeys, hotFraction, minLookups, decayInterval, spread, refreshInterval, spreadRetryNanos);
+    }
+
+    /**
+     * @param hotFraction Fraction of all lookups (since last decay) above which key is considered hot
+     * @param minLookups  Number of lookups needed before any key is considered hot
+     * @return            Modified options
+     */
+    public HotKeyOptions withHotThreshold(double hotFraction, long minLookups) {
+        if (hotFraction <= 0.0d || hotFraction > 1.0d) {
+            throw new IllegalArgumentException("Invalid hot fraction: " + hotFraction + "; should be in range (0,1].");
+        }
+        if (minLookups < 0) {
+            throw new IllegalArgumentException("Invalid minimum number of lookups: " + minLookups + "; should be >= 0.");
+        }
+        return new HotKeyOptions(sketchDepth, sketchWidth, trackedKeys, hotFraction, minLookups, decayInterval, spread, refreshInterval, spreadRetryNanos);
+    }
+
+    /**
+     * @param decayInterval Number of lookups after which all counters are halved
+     * @return              Modified options
+     */
+    public HotKeyOptions withDecayInterval(long decayInterval) {
+        if (decayInterval < 1) {
+            throw new IllegalArgumentException("Invalid decay interval: " + decayInterval + "; should be > 0.");
+        }
+        return new HotKeyOptions(sketchDepth, sketchWidth, trackedKeys, hotFraction, minLookups, decayInterval, spread, refreshInterval, spreadRetryNanos);
+    }
+
+    /**
+     * @param spread Number of nodes from preference list reads of hot key are spread over
+     * @return       Modified options
+     */
+    public HotKeyOptions withSpread(int spread) {
+        if (spread < 1) {
+            throw new IllegalArgumentException("Invalid spread: " + spread + "; should be > 0.");
+        }
+        return new HotKeyOptions(sketchDepth, sketchWidth, trackedKeys, hotFraction, minLookups, decayInterval, spread, refreshInterval, spreadRetryNanos);
+    }
+
+    /**
+     * @param refreshInterval Average number of lookups between refreshes of lookup totals, chosen randomly per
+     *                        lookup; power of two between 1 and 2^16; 1 refreshes on every lookup, which makes
+     *                        detection deterministic at the cost of summing striped counters per lookup
+     * @return                Modified options
+     */
+    public HotKeyOptions withRefreshInterval(int refreshInterval) {
+        if (refreshInterval < 1 || refreshInterval > (1 << 16) || Integer.bitCount(refreshInterval) != 1) {
+            throw new IllegalArgumentException("Invalid refresh interval: " + refreshInterval + "; should be power of two in range [1,2^16].");
+        }
+        return new HotKeyOptions(sketchDepth, sketchWidth, trackedKeys, hotFraction, minLookups, decayInterval, spread, refreshInterval, spreadRetryNanos);
+    }
+
+    /**
+     * @param delay Time after which spreading of hot key reads is retried when there were fewer nodes than spread;
+     *              0 retries on every lookup
+     * @param unit  Unit of {@code delay}
+     * @return      Modified options
+     */
+    public HotKeyOptions withSpreadRetry(long delay, TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Invalid spread retry delay: " + delay + "; should be >= 0.");
+        }
+        return new HotKeyOptions(sketchDepth, sketchWidth, trackedKeys, hotFraction, minLookups, decayInterval, spread, refreshInterval, unit.toNanos(delay));
+    }
+
+    public int getSketchDepth() {
+        return sketchDepth;
+    }
+
+    public int getSketchWidth() {
+        return sketchWidth;
+    }
+
+    public int getTrackedKeys() {
+        return trackedKeys;
+    }
+
+    public double getHotFraction() {
+        return hotFraction;
+    }
+
+    public long getMinLookups() {
+        return minLookups;
+    }
+
+    public long getDecayInterval() {
+        return decayInterval;
+    }
+
+    public int getSpread() {
+        return spread;
+    }
+
+    public int getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public long getSpreadRetryNanos() {
+        return spreadRetryNanos;
+    }
+
+}
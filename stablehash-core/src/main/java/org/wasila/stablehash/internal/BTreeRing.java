@@ -0,0 +1,87 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+/**
+ * Heap ring searched through a copy of points laid out as static B-tree of 16 points per node
+ * (S-tree). Children of node {@code k} are nodes {@code k * 17 + i + 1} for {@code i} in [0,16];
+ * the search counts points smaller than key in each visited node without branching on them.
+ */
+final class BTreeRing extends HeapRing {
+
+    private static final int B = 16;
+
+    private final int size;
+    private final int blocks;
+    private final long[] layout;
+    private final int[] positions;
+    private int filled;
+
+    BTreeRing(long[] points, int[] owners) {
+        super(points, owners);
+        size = points.length;
+        blocks = (size + B - 1) / B;
+        layout = new long[blocks * B];
+        positions = new int[blocks * B];
+        fill(points, 0);
+    }
+
+    private void fill(long[] points, int k) {
+        if (k < blocks) {
+            for (int i = 0; i < B; i++) {
+                fill(points, child(k, i));
+                int slot = k * B + i;
+                if (filled < size) {
+                    layout[slot] = points[filled];
+                    positions[slot] = filled;
+                    filled++;
+                } else {
+                    layout[slot] = Long.MAX_VALUE;
+                    positions[slot] = size;
+                }
+            }
+            fill(points, child(k, B));
+        }
+    }
+
+    private static int child(int k, int i) {
+        return k * (B + 1) + i + 1;
+    }
+
+    @Override
+    public int successor(long hash) {
+        int result = size;
+        int k = 0;
+        while (k < blocks) {
+            int base = k * B;
+            int i = 0;
+            for (int j = 0; j < B; j++) {
+                i += layout[base + j] < hash ? 1 : 0;
+            }
+            if (i < B) {
+                result = positions[base + i];
+            }
+            k = child(k, i);
+        }
+        return result == size ? 0 : result;
+    }
+
+    @Override
+    public long heapBytes() {
+        return super.heapBytes() + 12L * layout.length;
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+/**
+ * Ring decorated with radix bucket index. Key space of 32-bit hashes is split into {@code 2^k} buckets
+ * by top {@code k} bits; for every bucket the table keeps position of the first point not smaller than
+ * the beginning of that bucket. Successor of a hash lies between positions of its bucket and the next one
+ * so only that short range is searched.
+ */
+final class BucketedRing implements Ring {
+
+    private static final int MIN_BITS = 1;
+    private static final int MAX_BITS = 22;
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    private final Ring ring;
+    private final int shift;
+    private final int[] starts;
+
+    private BucketedRing(Ring ring, int bits) {
+        this.ring = ring;
+        this.shift = 32 - bits;
+        int buckets = 1 << bits;
+        this.starts = new int[buckets + 1];
+
+        int size = ring.size();
+        int pos = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            long bucketStart = (long) bucket << shift;
+            while (pos < size && ring.pointAt(pos) < bucketStart) {
+                pos++;
+            }
+            starts[bucket] = pos;
+        }
+        starts[buckets] = size;
+    }
+
+    /**
+     * Decorates given ring with bucket index sized to its number of points. Rings with points outside
+     * of 32-bit unsigned range (possible with custom hash factories) are returned undecorated.
+     */
+    static Ring of(Ring ring) {
+        int size = ring.size();
+        if (size == 0 || ring.pointAt(0) < 0 || ring.pointAt(size - 1) > 0xFFFFFFFFL) {
+            return ring;
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(size);
+        bits = Math.max(MIN_BITS, Math.min(MAX_BITS, bits));
+        return new BucketedRing(ring, bits);
+    }
+
+    @Override
+    public int size() {
+        return ring.size();
+    }
+
+    @Override
+    public long pointAt(int pos) {
+        return ring.pointAt(pos);
+    }
+
+    @Override
+    public int ownerAt(int pos) {
+        return ring.ownerAt(pos);
+    }
+
+    @Override
+    public int successor(long hash) {
+        if (hash < 0 || hash > 0xFFFFFFFFL) {
+            return ring.successor(hash);
+        }
+        int bucket = (int) (hash >>> shift);
+        int low = starts[bucket];
+        int high = starts[bucket + 1];
+
+        if (high - low <= LINEAR_SEARCH_LIMIT) {
+            while (low < high && ring.pointAt(low) < hash) {
+                low++;
+            }
+        } else {
+            high--;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (ring.pointAt(mid) < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+        }
+        return low == ring.size() ? 0 : low;
+    }
+
+    @Override
+    public long heapBytes() {
+        return ring.heapBytes() + 16L + 4L * starts.length;
+    }
+
+}
@@ -17,43 +17,63 @@ package org.wasila.stablehash.internal;
 
 import org.wasila.stablehash.AuxHashKey;
 import org.wasila.stablehash.HashFactory;
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.NodeFailover;
 import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashOptions;
+import org.wasila.stablehash.VersionedTopology;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * The {@code ConsistentHash} class implements consistent hashing algorithm.
  *
  * Implementation is based and compatible with serialx/hashring project: {@url https://github.com/serialx/hashring}
  *
+ * Ring points are ordered by value of {@link AuxHashKey#getHash()}. Instances created with off-heap option
+ * keep the ring in direct memory which can be released eagerly by {@link #close()}.
  */
-public class ConsistentHash<N> implements StableHash<N> {
+public class ConsistentHash<N> implements StableHash<N>, HashedLookup<N>, NodeFailover<N>, VersionedTopology<N> {
+
+    private static final double KEY_SPACE = (double)(1L << 32);
 
     private InputValidator<N> validator;
 
     private final HashFactory hashFactory;
-    private final Map<AuxHashKey,N> ring;
-    private final List<AuxHashKey> sortedKeys;
+    private final StableHashOptions options;
     private final List<N> nodes;
     private final Map<N,Integer> weights;
-
-    private ConsistentHash(HashFactory hashFactory) {
-        this.hashFactory = hashFactory;
+    private final List<N> nodeIndex;
+    private final NodeIdentities<N> identities;
+    // null once closed; every lookup reads it once, so it keeps using the same ring even if closed meanwhile
+    private volatile Ring ring;
+    private DownNodes down;
+    private ReplicaTable replicas;
+    // owners of points which collided with points of other owners
+    private BitSet collidingOwners;
+
+    private ConsistentHash(HashFactory hashFactory, StableHashOptions options, NodeIdentities<N> identities) {
         validator = new InputValidator<>();
-        ring = new HashMap<>();
-        sortedKeys = new ArrayList<>();
+        validator.validateOptions(options);
+        this.hashFactory = hashFactory;
+        this.options = options;
+        this.identities = identities;
         nodes = new ArrayList<>();
         weights = new HashMap<>();
+        nodeIndex = new ArrayList<>();
     }
 
     /**
@@ -76,6 +96,40 @@ public class ConsistentHash<N> implements StableHash<N> {
         this(new HashUtil(), weights);
     }
 
+    /**
+     * Constructs instance with given nodes list and options. All nodes have default weight of 1.
+     * Uses default auxiliary hash which is currently MD5 based hash.
+     *
+     * @param nodes Collection of nodes
+     * @param options Tuning options
+     */
+    public ConsistentHash(Collection<N> nodes, StableHashOptions options) {
+        this(new HashUtil(), nodes, options);
+    }
+
+    /**
+     * Constructs instance with given nodes list and options. All nodes can have arbitrary weight assigned to it.
+     * Uses default auxiliary hash which is currently MD5 based hash.
+     *
+     * @param weights map where nodes are assigned to keys and weights to the corresponding values.
+     * @param options Tuning options
+     */
+    public ConsistentHash(Map<N,Integer> weights, StableHashOptions options) {
+        this(new HashUtil(), weights, options);
+    }
+
+    /**
+     * Constructs instance with given nodes list, options and node identity. All nodes can have arbitrary weight
+     * assigned to it. Uses default auxiliary hash which is currently MD5 based hash.
+     *
+     * @param weights map where nodes are assigned to keys and weights to the corresponding values.
+     * @param options Tuning options
+     * @param nodeIdentity Returns stable identity of node used to place it on the ring; computed once per node
+     */
+    public ConsistentHash(Map<N,Integer> weights, StableHashOptions options, Function<? super N, String> nodeIdentity) {
+        this(new HashUtil(), weights, options, nodeIdentity);
+    }
+
     /**
      * Constructs instance with given nodes list. All nodes have default weight of 1.
      *
@@ -83,7 +137,31 @@ public class ConsistentHash<N> implements StableHash<N> {
      * @param nodes Collection of nodes
      */
     public ConsistentHash(HashFactory hashFactory, Collection<N> nodes) {
-        this(hashFactory);
+        this(hashFactory, nodes, StableHashOptions.defaults());
+    }
+
+    /**
+     * Constructs instance with given nodes list and options. All nodes have default weight of 1.
+     *
+     * @param hashFactory Factory of auxiliary hashes
+     * @param nodes Collection of nodes
+     * @param options Tuning options
+     */
+    public ConsistentHash(HashFactory hashFactory, Collection<N> nodes, StableHashOptions options) {
+        this(hashFactory, nodes, options, Object::toString);
+    }
+
+    /**
+     * Constructs instance with given nodes list, options and node identity. All nodes have default weight of 1.
+     *
+     * @param hashFactory Factory of auxiliary hashes
+     * @param nodes Collection of nodes
+     * @param options Tuning options
+     * @param nodeIdentity Returns stable identity of node used to place it on the ring; computed once per node
+     */
+    public ConsistentHash(HashFactory hashFactory, Collection<N> nodes, StableHashOptions options,
+                          Function<? super N, String> nodeIdentity) {
+        this(hashFactory, options, new NodeIdentities<>(nodeIdentity));
         this.nodes.addAll(nodes);
         generateCircle();
     }
@@ -95,17 +173,43 @@ public class ConsistentHash<N> implements StableHash<N> {
      * @param weights map where nodes are assigned to keys and weights to the corresponding values.
      */
     public ConsistentHash(HashFactory hashFactory, Map<N,Integer> weights) {
-        this(hashFactory);
+        this(hashFactory, weights, StableHashOptions.defaults());
+    }
+
+    /**
+     * Constructs instance with given nodes list and options. All nodes can have arbitrary weight assigned to it.
+     *
+     * @param hashFactory Factory of auxiliary hashes
+     * @param weights map where nodes are assigned to keys and weights to the corresponding values.
+     * @param options Tuning options
+     */
+    public ConsistentHash(HashFactory hashFactory, Map<N,Integer> weights, StableHashOptions options) {
+        this(hashFactory, weights, options, Object::toString);
+    }
+
+    /**
+     * Constructs instance with given nodes list, options and node identity. All nodes can have arbitrary weight
+     * assigned to it.
+     *
+     * @param hashFactory Factory of auxiliary hashes
+     * @param weights map where nodes are assigned to keys and weights to the corresponding values.
+     * @param options Tuning options
+     * @param nodeIdentity Returns stable identity of node used to place it on the ring; computed once per node
+     */
+    public ConsistentHash(HashFactory hashFactory, Map<N,Integer> weights, StableHashOptions options,
+                          Function<? super N, String> nodeIdentity) {
+        this(hashFactory, options, new NodeIdentities<>(nodeIdentity));
         this.nodes.addAll(weights.keySet());
         this.weights.putAll(weights);
         generateCircle();
     }
 
-    private ConsistentHash(HashFactory hashFactory, List<N> nodes, Map<N,Integer> weights) {
-        this(hashFactory);
+    private ConsistentHash(ConsistentHash<N> previous, List<N> nodes, Map<N,Integer> weights) {
+        this(previous.hashFactory, previous.options, previous.identities.retain(nodes));
         this.nodes.addAll(nodes);
         this.weights.putAll(weights);
-        generateCircle();
+        generateCircle(previous);
+        down = DownNodes.carry(previous.down, previous.nodeIndex, nodeIndex);
     }
 
     /**
@@ -132,7 +236,7 @@ public class ConsistentHash<N> implements StableHash<N> {
         }
 
         if (nodesChgFlg) {
-            hring = new ConsistentHash<N>(this.hashFactory, newWeights);
+            hring = new ConsistentHash<N>(this, new ArrayList<>(newWeights.keySet()), newWeights);
         }
 
         return hring;
@@ -141,39 +245,49 @@ public class ConsistentHash<N> implements StableHash<N> {
     @Override
     public Optional<N> getNode(String key) {
         validator.validateGetNode(key);
-        Optional<Integer> nodePosition = getNodePos(key);
-        return nodePosition.map((position) -> ring.get(sortedKeys.get(position)));
+        Ring current = ring();
+        Optional<Integer> nodePosition = getNodePos(current, key);
+        if (!nodePosition.isPresent()) {
+            return Optional.empty();
+        }
+        int owner = upOwnerFrom(current, nodePosition.get());
+        return owner < 0 ? Optional.empty() : Optional.of(nodeIndex.get(owner));
     }
 
     @Override
     public Set<N> getNodes(String key, int size) {
         validator.validateGetNodes(key, size, nodes.size());
 
-        Optional<Integer> pos = getNodePos(key);
+        Ring current = ring();
+        Optional<Integer> pos = getNodePos(current, key);
         if (!pos.isPresent()) {
             return Collections.emptySet();
         }
 
-        Set<N> returnedValues = new HashSet<>();
-        Set<N> resultSlice = new LinkedHashSet<>();
-        for (int i = pos.get(); i < pos.get() + sortedKeys.size(); i++) {
-            AuxHashKey hashKey = sortedKeys.get(i % sortedKeys.size());
-            N val = ring.get(hashKey);
+        return collectNodes(current, pos.get(), size);
+    }
 
-            if (!returnedValues.contains(val)) {
-                returnedValues.add(val);
-                resultSlice.add(val);
-            }
-            if (resultSlice.size() == size) {
-                break;
-            }
+    /**
+     * Returns node owning given 64-bit key hash (null if none is up); the top 32 bits select position on the ring.
+     */
+    @Override
+    public N nodeForHash(long keyHash) {
+        Ring current = ring();
+        if (current.size() == 0) {
+            return null;
         }
+        int owner = upOwnerFrom(current, current.successor(ringKey(keyHash)));
+        return owner < 0 ? null : nodeIndex.get(owner);
+    }
 
-        if (resultSlice.size() == size) {
-            return resultSlice;
-        } else {
+    @Override
+    public Set<N> getNodesForHash(long keyHash, int size) {
+        validator.validateSize(size, nodes.size());
+        Ring current = ring();
+        if (current.size() == 0) {
             return Collections.emptySet();
         }
+        return collectNodes(current, current.successor(ringKey(keyHash)), size);
     }
 
     @Override
@@ -196,7 +310,7 @@ public class ConsistentHash<N> implements StableHash<N> {
         newWeights.put(node, weight);
         newNodes.add(node);
 
-        return new ConsistentHash<N>(this.hashFactory, newNodes, newWeights);
+        return new ConsistentHash<N>(this, newNodes, newWeights);
     }
 
     @Override
@@ -211,7 +325,7 @@ public class ConsistentHash<N> implements StableHash<N> {
 
         newWeights.put(node, weight);
 
-        ConsistentHash<N> newhash = new ConsistentHash<N>(this.hashFactory, nodes, newWeights);
+        ConsistentHash<N> newhash = new ConsistentHash<N>(this, nodes, newWeights);
         return newhash;
     }
 
@@ -229,51 +343,296 @@ public class ConsistentHash<N> implements StableHash<N> {
         Map<N,Integer> newWeights = new HashMap<>(weights);
         newWeights.remove(node);
 
-        return new ConsistentHash<N>(this.hashFactory, newNodes, newWeights);
+        return new ConsistentHash<N>(this, newNodes, newWeights);
+    }
+
+    @Override
+    public boolean markDown(N node) {
+        int index = nodeIndex.indexOf(node);
+        validator.validateFailoverNode(node, index);
+        return down.set(index);
+    }
+
+    @Override
+    public boolean markUp(N node) {
+        int index = nodeIndex.indexOf(node);
+        validator.validateFailoverNode(node, index);
+        return down.clear(index);
+    }
+
+    @Override
+    public boolean isDown(N node) {
+        int index = nodeIndex.indexOf(node);
+        return index >= 0 && down.get(index);
+    }
+
+    @Override
+    public Map<N, Integer> getWeights() {
+        return Collections.unmodifiableMap(weights);
+    }
+
+    /**
+     * Computes fingerprint of nodes and weights; node identities are the ones hashed into ring points.
+     */
+    @Override
+    public long getFingerprint() {
+        return TopologyFingerprint.of(weights, identities::seed);
+    }
+
+    /**
+     * Computes exact ownership of every node. Each ring point owns the arc between previous point (exclusive)
+     * and itself (inclusive); the first point also owns the arc wrapping around the end of 32-bit key space.
+     *
+     * @return          Ownership and balance statistics
+     */
+    @Override
+    public HashStats<N> stats() {
+        Map<N,Double> ownership = new LinkedHashMap<>();
+        for (N node : nodeIndex) {
+            ownership.put(node, 0.0d);
+        }
+
+        Ring points = ring();
+        int size = points.size();
+        boolean wide = options.getPointBits() == 64;
+        for (int i = 0; i < size; i++) {
+            long current = points.pointAt(i);
+            N owner = nodeIndex.get(points.ownerAt(i));
+            double arc;
+            if (wide) {
+                // unsigned difference modulo 2^64; the only point of a ring owns all of it
+                arc = size == 1 ? 1.0d : Ring64.toDouble(current - points.pointAt(i == 0 ? size - 1 : i - 1)) / Ring64.KEY_SPACE;
+            } else {
+                long previous = (i == 0) ? points.pointAt(size - 1) - (1L << 32) : points.pointAt(i - 1);
+                arc = (current - previous) / KEY_SPACE;
+            }
+            ownership.merge(owner, arc, Double::sum);
+        }
+
+        return new HashStats<>(ownership, size, points.heapBytes() + replicas.heapBytes(), false);
+    }
+
+    /**
+     * Releases off-heap ring of this instance. Lookups started afterwards (including derivation of new instances)
+     * throw {@link IllegalStateException}; lookups in progress finish normally on the ring they already hold and
+     * its memory is returned by the buffer's cleaner once the last of them drops it. It is a no-op for instances
+     * kept on heap.
+     */
+    @Override
+    public void close() {
+        if (options.isOffHeap()) {
+            ring = null;
+        }
+    }
+
+    private Ring ring() {
+        Ring current = ring;
+        if (current == null) {
+            throw new IllegalStateException("hash was already closed");
+        }
+        return current;
+    }
+
+    private Set<N> collectNodes(Ring ring, int pos, int size) {
+        boolean allUp = down.isEmpty();
+        if (allUp && size <= replicas.width()) {
+            Set<N> resultSlice = new LinkedHashSet<>(size * 2);
+            for (int r = 0; r < size; r++) {
+                resultSlice.add(nodeIndex.get(replicas.ownerAt(pos, r)));
+            }
+            return resultSlice;
+        }
+
+        int ringSize = ring.size();
+        Set<N> resultSlice = new LinkedHashSet<>();
+        for (int i = pos; i < pos + ringSize; i++) {
+            int owner = ring.ownerAt(i % ringSize);
+            if (allUp || !down.get(owner)) {
+                resultSlice.add(nodeIndex.get(owner));
+            }
+            if (resultSlice.size() == size) {
+                break;
+            }
+        }
+
+        // not enough distinct owners on the ring or not enough of them up
+        return resultSlice.size() == size ? resultSlice : Collections.emptySet();
+    }
+
+    /**
+     * Returns owner of given ring position or, if it is down, of the first position clockwise owned by node
+     * which is up; -1 if all nodes are down.
+     */
+    private int upOwnerFrom(Ring ring, int pos) {
+        int owner = ring.ownerAt(pos);
+        if (down.isEmpty() || !down.get(owner)) {
+            return owner;
+        }
+        int ringSize = ring.size();
+        for (int i = 1; i < ringSize; i++) {
+            owner = ring.ownerAt((pos + i) % ringSize);
+            if (!down.get(owner)) {
+                return owner;
+            }
+        }
+        return -1;
     }
 
     private void generateCircle() {
+        generateCircle(null);
+    }
+
+    /**
+     * Builds the ring. With absolute weights, instance derived from another one reuses points of unchanged nodes
+     * as they are and merges in points of changed nodes only, unless changed nodes have colliding points.
+     */
+    private void generateCircle(ConsistentHash<N> previous) {
         int totalWeight = nodes.stream().mapToInt(value -> weights.getOrDefault(value, 1)).sum();
 
         int totalNodes = nodes.size();
+        boolean wide = options.getPointBits() == 64;
+
+        Map<N,Integer> indices = new HashMap<>();
+        int[] factors = new int[totalNodes];
+        int[] owners = new int[totalNodes];
+        long totalVnodes = 0;
+        for (int i = 0; i < totalNodes; i++) {
+            N node = nodes.get(i);
+            factors[i] = vnodeCount(weights.getOrDefault(node, 1), totalNodes, totalWeight);
+            totalVnodes += factors[i];
+
+            Integer owner = indices.get(node);
+            if (owner == null) {
+                owner = nodeIndex.size();
+                indices.put(node, owner);
+                nodeIndex.add(node);
+            }
+            owners[i] = owner;
+        }
+        int perVnode = wide ? VnodePoints.WIDE_POINTS_PER_VNODE : VnodePoints.POINTS_PER_VNODE;
+
+        RingBuilder builder = previous == null ? null : mergedBuilder(previous, indices, factors, wide);
+        if (builder != null) {
+            ring = builder.build(options, wide ? identityRanks() : null);
+            if (builder.collidingOwners().isEmpty()) {
+                // collisions among unchanged nodes were resolved in the previous ring the same way
+                collidingOwners = new BitSet();
+                previous.collidingOwners.stream().forEach(owner -> collidingOwners.set(indices.get(previous.nodeIndex.get(owner))));
+            } else {
+                // new points collide; who wins depends on generation order, so build from scratch
+                builder = null;
+            }
+        }
+        if (builder == null) {
+            builder = new RingBuilder((int) Math.min(totalVnodes * perVnode, Integer.MAX_VALUE - 8));
+            for (int i = 0; i < totalNodes; i++) {
+                identities.addPoints(nodes.get(i), factors[i], hashFactory, builder, owners[i], wide);
+            }
+            ring = builder.build(options, wide ? identityRanks() : null);
+            collidingOwners = builder.collidingOwners();
+        }
+        replicas = ReplicaTable.build(ring, options.getPrecomputedReplicas());
+        down = new DownNodes(nodeIndex.size());
+    }
 
-        for (N node : nodes) {
-            int weight = weights.getOrDefault(node, 1);
-            int factor = (int)(Math.floor((40.0d * totalNodes * weight) / totalWeight));
+    private int vnodeCount(int weight, int totalNodes, int totalWeight) {
+        if (options.isAbsoluteWeights()) {
+            long vnodes = (long) weight * options.getVnodesPerWeight();
+            validator.validateVnodes(weight, vnodes);
+            return (int) vnodes;
+        }
+        return (int)(Math.floor((40.0d * totalNodes * weight) / totalWeight));
+    }
 
-            for (int j=0; j<factor; j++) {
-                String nodeKey = node.toString() + "-" + j;
+    /**
+     * Returns builder with points of nodes whose number of virtual nodes did not change taken from the previous
+     * ring (as one sorted run) and points of added or reweighted nodes; null if previous ring cannot be reused
+     * because some of its points collided with points of removed or changed nodes.
+     */
+    private RingBuilder mergedBuilder(ConsistentHash<N> previous, Map<N,Integer> indices, int[] factors, boolean wide) {
+        if (!options.isAbsoluteWeights() || nodeIndex.size() != nodes.size() || previous.nodeIndex.size() != previous.nodes.size()) {
+            return null;
+        }
+        boolean[] changed = new boolean[nodeIndex.size()];
+        Arrays.fill(changed, true);
+        int[] ownerMap = new int[previous.nodeIndex.size()];
+        for (int owner = 0; owner < ownerMap.length; owner++) {
+            N node = previous.nodeIndex.get(owner);
+            Integer newOwner = indices.get(node);
+            ownerMap[owner] = newOwner == null ? -1 : newOwner;
+            if (newOwner != null) {
+                int previousFactor = vnodeCount(previous.weights.getOrDefault(node, 1), 0, 0);
+                changed[newOwner] = previousFactor != factors[newOwner];
+            }
+        }
+        for (int owner = previous.collidingOwners.nextSetBit(0); owner >= 0; owner = previous.collidingOwners.nextSetBit(owner + 1)) {
+            if (ownerMap[owner] < 0 || changed[ownerMap[owner]]) {
+                return null;
+            }
+        }
 
-                Iterator<AuxHashKey> it = hashFactory.iterator(nodeKey);
-                int i =0;
+        Ring previousRing = previous.ring();
+        int size = previousRing.size();
+        long[] kept = new long[size];
+        int[] keptOwners = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int owner = ownerMap[previousRing.ownerAt(i)];
+            if (owner >= 0 && !changed[owner]) {
+                kept[count] = previousRing.pointAt(i);
+                keptOwners[count++] = owner;
+            }
+        }
 
-                // bizzarly, original implementation took only 3 of 4 possible hash keys (md5 has 16 bytes)
-                while (it.hasNext() && (i++ < 3)) {
-                    AuxHashKey key = it.next();
-                    ring.put(key, node);
-                    sortedKeys.add(key);
-                }
+        RingBuilder builder = new RingBuilder(size);
+        builder.addRun(kept, keptOwners, count);
+        for (int owner = 0; owner < changed.length; owner++) {
+            if (changed[owner]) {
+                identities.addPoints(nodeIndex.get(owner), factors[owner], hashFactory, builder, owner, wide);
             }
         }
-        Collections.sort(sortedKeys);
+        return builder;
     }
 
-    private Optional<Integer> getNodePos(String key) {
+    /**
+     * Ranks owners by identity of their nodes, so that colliding 64-bit points are owned by the same node
+     * no matter in which order nodes were added.
+     */
+    private int[] identityRanks() {
+        Integer[] owners = new Integer[nodeIndex.size()];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = i;
+        }
+        Arrays.sort(owners, Comparator.comparing(owner -> identities.identity(nodeIndex.get(owner))));
+        int[] ranks = new int[owners.length];
+        for (int rank = 0; rank < owners.length; rank++) {
+            ranks[owners[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * Returns position on the ring of given 64-bit key hash: its top 32 bits with 32-bit points,
+     * the whole hash (in sortable form) with 64-bit points.
+     */
+    private long ringKey(long keyHash) {
+        return options.getPointBits() == 64 ? Ring64.sortable(keyHash) : keyHash >>> 32;
+    }
+
+    private Optional<Integer> getNodePos(Ring ring, String key) {
         if (key == null) {
             throw new NullPointerException("specified key must not be null");
         }
-        if (ring.isEmpty()) {
+        if (ring.size() == 0) {
             return Optional.empty();
         }
 
-        AuxHashKey hashKey = hashFactory.iterator(key).next();
+        String hashedPart = DelimitedHashTag.hashedPart(options.getHashTagExtractor(), key);
+        long hash = options.getPointBits() == 64
+                ? Ring64.sortable(hashFactory.iterator64(hashedPart).next().getHash())
+                : hashFactory.iterator(hashedPart).next().getHash();
 
-        int pos = Collections.binarySearch(sortedKeys, hashKey);
-        pos = (pos>=0) ? pos : -(pos+1);
-        pos = pos % sortedKeys.size();
-
-        return Optional.of(pos);
+        return Optional.of(ring.successor(hash));
     }
 
 }
-
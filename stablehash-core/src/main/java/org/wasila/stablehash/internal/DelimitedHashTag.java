@@ -0,0 +1,72 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.HashTagExtractor;
+
+/**
+ * Hash tag between the first opening delimiter and the first closing delimiter after it; empty tags are ignored.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+public final class DelimitedHashTag implements HashTagExtractor {
+
+    private final char open;
+    private final char close;
+
+    public DelimitedHashTag(char open, char close) {
+        this.open = open;
+        this.close = close;
+    }
+
+    @Override
+    public int tagStart(CharSequence key) {
+        int length = key.length();
+        int start = indexOf(key, open, 0) + 1;
+        if (start == 0 || start >= length) {
+            return 0;
+        }
+        int end = indexOf(key, close, start);
+        return end > start ? start : 0;
+    }
+
+    @Override
+    public int tagEnd(CharSequence key, int tagStart) {
+        return tagStart == 0 ? key.length() : indexOf(key, close, tagStart);
+    }
+
+    /**
+     * Returns part of key selected by given extractor; the key itself if there is no tag.
+     */
+    static String hashedPart(HashTagExtractor extractor, String key) {
+        if (extractor == null) {
+            return key;
+        }
+        int start = extractor.tagStart(key);
+        int end = extractor.tagEnd(key, start);
+        return start == 0 && end == key.length() ? key : key.substring(start, end);
+    }
+
+    private static int indexOf(CharSequence key, char c, int from) {
+        for (int i = from; i < key.length(); i++) {
+            if (key.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
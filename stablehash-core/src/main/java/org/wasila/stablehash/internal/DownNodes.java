@@ -0,0 +1,129 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Atomic bitset of nodes marked down, indexed by dense node index. Count of down nodes is kept
+ * separately so lookups can skip all checks while every node is up.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+final class DownNodes {
+
+    private final AtomicLongArray words;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DownNodes(int size) {
+        words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /**
+     * Returns bitset for nodes of derived instance with the same nodes marked down as in previous instance.
+     * Derived instances keep relative order of nodes, so down nodes are searched from position where
+     * the previous one was found and all of them are carried in one pass over nodes; a node missing in
+     * derived instance costs one full pass.
+     */
+    static <N> DownNodes carry(DownNodes previous, List<N> previousNodes, List<N> nodes) {
+        DownNodes down = new DownNodes(nodes.size());
+        int size = nodes.size();
+        int position = 0;
+        for (int previousIndex = previous.nextSetBit(0, previousNodes.size()); previousIndex >= 0;
+             previousIndex = previous.nextSetBit(previousIndex + 1, previousNodes.size())) {
+            N node = previousNodes.get(previousIndex);
+            for (int scanned = 0; scanned < size; scanned++) {
+                int index = position + scanned < size ? position + scanned : position + scanned - size;
+                if (nodes.get(index).equals(node)) {
+                    down.set(index);
+                    position = index + 1 < size ? index + 1 : 0;
+                    break;
+                }
+            }
+        }
+        return down;
+    }
+
+    /**
+     * @return index of first node marked down in range [from, to), or -1 if there is none
+     */
+    int nextSetBit(int from, int to) {
+        if (isEmpty()) {
+            return -1;
+        }
+        int word = from >>> 6;
+        int wordCount = (to + 63) >>> 6;
+        if (word >= wordCount) {
+            return -1;
+        }
+        long bits = words.get(word) & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return index < to ? index : -1;
+            }
+            if (++word == wordCount) {
+                return -1;
+            }
+            bits = words.get(word);
+        }
+    }
+
+    boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    boolean get(int index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * @return true if bit was not set before
+     */
+    boolean set(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+        count.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return true if bit was set before
+     */
+    boolean clear(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current & ~mask));
+        count.decrementAndGet();
+        return true;
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+/**
+ * Heap ring searched through a copy of points laid out in Eytzinger (breadth first) order.
+ * Node {@code k} of the implicit tree has children {@code 2k} and {@code 2k+1}, so consecutive
+ * steps of the search access memory close to each other and the loop has no unpredictable branches.
+ */
+final class EytzingerRing extends HeapRing {
+
+    private final long[] layout;
+    private final int[] positions;
+    private int filled;
+
+    EytzingerRing(long[] points, int[] owners) {
+        super(points, owners);
+        layout = new long[points.length + 1];
+        positions = new int[points.length + 1];
+        fill(points, 1);
+    }
+
+    private void fill(long[] points, int k) {
+        if (k <= points.length) {
+            fill(points, 2 * k);
+            layout[k] = points[filled];
+            positions[k] = filled;
+            filled++;
+            fill(points, 2 * k + 1);
+        }
+    }
+
+    @Override
+    public int successor(long hash) {
+        int n = layout.length - 1;
+        int k = 1;
+        while (k <= n) {
+            k = (k << 1) + (layout[k] < hash ? 1 : 0);
+        }
+        // drop trailing "went right" steps and the last "went left" step to get the lower bound
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? 0 : positions[k];
+    }
+
+    @Override
+    public long heapBytes() {
+        return super.heapBytes() + 12L * layout.length;
+    }
+
+}
@@ -19,16 +19,19 @@ import org.wasila.stablehash.AuxHashKey;
 
 /**
  * The {@code HashKey} class holds hash value of given key. As md5 algorithm is used to generate key
- * only four bytes are taken into account to calculate the hash value.
+ * only four bytes are taken into account to calculate the hash value, or eight bytes in case of 64-bit
+ * values created with {@link #hashVal64(byte[], int)}. 64-bit values are compared as unsigned.
  *
  * This class is used only internally meaning it is not part of the API.
  */
 class HashKey implements AuxHashKey {
 
     private final long hashKey;
+    private final boolean wide;
 
-    private HashKey(long hashKey) {
+    private HashKey(long hashKey, boolean wide) {
         this.hashKey = hashKey;
+        this.wide = wide;
     }
 
     /**
@@ -46,7 +49,23 @@ class HashKey implements AuxHashKey {
         return new HashKey((Byte.toUnsignedLong(keyBytes[3+offset]) << 24L) |
                 ((Byte.toUnsignedLong(keyBytes[2+offset])) << 16L) |
                 ((Byte.toUnsignedLong(keyBytes[1+offset])) << 8L) |
-                (Byte.toUnsignedLong(keyBytes[offset])));
+                (Byte.toUnsignedLong(keyBytes[offset])), false);
+    }
+
+    /**
+     * Create new 64-bit HashKey instance using eight bytes of given byte array starting at offset (little endian).
+     *
+     * @param keyBytes                        array of bytes
+     * @param offset                          index of the first byte
+     * @return                                HashKey instance
+     * @throws ArrayIndexOutOfBoundsException If provided array has less than offset + 8 elements
+     */
+    public static HashKey hashVal64(byte[] keyBytes, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = value << 8 | Byte.toUnsignedLong(keyBytes[offset + i]);
+        }
+        return new HashKey(value, true);
     }
 
     @Override
@@ -56,7 +75,7 @@ class HashKey implements AuxHashKey {
 
     @Override
     public int compareTo(AuxHashKey comparedKey) {
-        return Long.compare(this.getHash(), comparedKey.getHash());
+        return wide ? Long.compareUnsigned(this.getHash(), comparedKey.getHash()) : Long.compare(this.getHash(), comparedKey.getHash());
     }
 
     @Override
@@ -66,17 +85,17 @@ class HashKey implements AuxHashKey {
 
         HashKey hashKey1 = (HashKey) o;
 
-        return hashKey == hashKey1.hashKey;
+        return hashKey == hashKey1.hashKey && wide == hashKey1.wide;
     }
 
     @Override
     public int hashCode() {
-        return (int) (hashKey ^ (hashKey >>> 32));
+        return 31 * (int) (hashKey ^ (hashKey >>> 32)) + (wide ? 1 : 0);
     }
 
     @Override
     public String toString() {
-        return "HashKey{" + hashKey + '}';
+        return "HashKey{" + hashKey + (wide ? ", wide" : "") + '}';
     }
 
 }
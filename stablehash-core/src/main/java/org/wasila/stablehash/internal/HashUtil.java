@@ -42,6 +42,36 @@ class HashUtil implements HashFactory {
         };
     }
 
+    @Override
+    public Iterator<AuxHashKey> iterator64(String key) {
+        return new Iterator<AuxHashKey>() {
+            private byte[] hash = hashDigest(key);
+            private int idx = 0;
+
+            @Override
+            public boolean hasNext() {
+                return idx+8 <= hash.length;
+            }
+
+            @Override
+            public HashKey next() {
+                idx += 8;
+                return HashKey.hashVal64(hash, idx-8);
+            }
+        };
+    }
+
+    // stateless, so all instances are interchangeable, eg. as keys of VnodePointCache
+    @Override
+    public boolean equals(Object o) {
+        return o != null && o.getClass() == HashUtil.class;
+    }
+
+    @Override
+    public int hashCode() {
+        return HashUtil.class.hashCode();
+    }
+
     private byte[] hashDigest(String key) {
         try {
             MessageDigest md5 = MessageDigest.getInstance("MD5");
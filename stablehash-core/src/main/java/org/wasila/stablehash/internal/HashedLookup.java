@@ -0,0 +1,41 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Lookup by precomputed, well mixed 64-bit hash of key. Implemented by algorithms which can route
+ * a key without hashing its string representation.
+ *
+ * This interface is used only internally meaning it is not part of the API.
+ */
+interface HashedLookup<N> {
+
+    /**
+     * Returns node owning given key hash, or null if there is no node available; unlike
+     * {@link #getNodeForHash(long)} does not allocate.
+     */
+    N nodeForHash(long keyHash);
+
+    default Optional<N> getNodeForHash(long keyHash) {
+        return Optional.ofNullable(nodeForHash(keyHash));
+    }
+
+    Set<N> getNodesForHash(long keyHash, int size);
+
+}
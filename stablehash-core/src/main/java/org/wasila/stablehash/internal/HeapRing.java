@@ -0,0 +1,69 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+/**
+ * Ring kept in two primitive heap arrays, searched with plain binary search.
+ */
+class HeapRing implements Ring {
+
+    private final long[] points;
+    private final int[] owners;
+
+    HeapRing(long[] points, int[] owners) {
+        this.points = points;
+        this.owners = owners;
+    }
+
+    @Override
+    public int size() {
+        return points.length;
+    }
+
+    @Override
+    public long pointAt(int pos) {
+        return points[pos];
+    }
+
+    @Override
+    public int ownerAt(int pos) {
+        return owners[pos];
+    }
+
+    @Override
+    public int successor(long hash) {
+        int low = 0;
+        int high = points.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long point = points[mid];
+            if (point < hash) {
+                low = mid + 1;
+            } else if (point > hash) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low == points.length ? 0 : low;
+    }
+
+    @Override
+    public long heapBytes() {
+        return 16L + 12L * points.length;
+    }
+
+}
@@ -0,0 +1,362 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.HashFactory;
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.HashTagExtractor;
+import org.wasila.stablehash.HierarchicalStableHash;
+import org.wasila.stablehash.StableHashOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Failure domain aware placement in the spirit of CRUSH. Nodes are leaves of a tree of domains
+ * (eg. datacenter, rack) built from location of every node; weight of a domain is the sum of weights
+ * of nodes below it. On every level child is selected with straw2 draw: {@code ln(u) / weight},
+ * where {@code u} is a uniform hash of key, full path of child and replica number; the child with the highest
+ * draw wins. Path is hashed instead of name, so equally named domains under different parents draw independently.
+ * Changing weight of one child only moves keys from or to that child.
+ *
+ * Replica {@code r} repeats the descent with different replica number until it reaches failure domain
+ * not used by previous replicas. If there are not enough distinct failure domains, remaining replicas are
+ * taken from the best ranked nodes not selected yet.
+ *
+ * @param <N> Node type
+ */
+public class HierarchicalHash<N> implements HierarchicalStableHash<N> {
+
+    private static final int MAX_TRIES_PER_REPLICA = 50;
+
+    // rough per node cost: weight and location map entries plus tree node
+    private static final long BYTES_PER_NODE = 32 + 32 + 64;
+
+    private final InputValidator<N> validator;
+
+    private final HashFactory hashFactory;
+    private final Function<N, List<String>> locator;
+    private final int failureDomainLevel;
+    private final Map<N, Integer> weights;
+    private final Map<N, List<String>> locations;
+    private final Domain<N> root;
+    private final int depth;
+
+    // null to hash whole keys
+    private final HashTagExtractor hashTagExtractor;
+
+    /**
+     * Constructs instance with given nodes and weights.
+     * Uses default auxiliary hash which is currently MD5 based hash.
+     *
+     * @param weights               map where nodes are assigned to keys and weights to the corresponding values
+     * @param locator               Returns location of node, eg. {@code ["dc1", "rack3"]}; all locations must have the same length
+     * @param failureDomainLevel    Index of location element which replicas must differ in, eg. 1 for racks
+     * @throws IllegalArgumentException if locations have different lengths or failure domain level is out of range
+     */
+    public HierarchicalHash(Map<N, Integer> weights, Function<N, List<String>> locator, int failureDomainLevel) {
+        this(new HashUtil(), weights, locator, failureDomainLevel);
+    }
+
+    /**
+     * Constructs instance with given nodes, weights and options.
+     * Uses default auxiliary hash which is currently MD5 based hash.
+     *
+     * @param weights               map where nodes are assigned to keys and weights to the corresponding values
+     * @param locator               Returns location of node, eg. {@code ["dc1", "rack3"]}; all locations must have the same length
+     * @param failureDomainLevel    Index of location element which replicas must differ in, eg. 1 for racks
+     * @param options               Options; see {@link StableHashOptions#withHashTagExtractor(HashTagExtractor)}
+     * @throws IllegalArgumentException if locations have different lengths or failure domain level is out of range
+     */
+    public HierarchicalHash(Map<N, Integer> weights, Function<N, List<String>> locator, int failureDomainLevel,
+                            StableHashOptions options) {
+        this(new HashUtil(), weights, locator, failureDomainLevel, options);
+    }
+
+    /**
+     * Constructs instance with given nodes and weights.
+     *
+     * @param hashFactory           Factory of auxiliary hashes
+     * @param weights               map where nodes are assigned to keys and weights to the corresponding values
+     * @param locator               Returns location of node, eg. {@code ["dc1", "rack3"]}; all locations must have the same length
+     * @param failureDomainLevel    Index of location element which replicas must differ in, eg. 1 for racks
+     * @throws IllegalArgumentException if locations have different lengths or failure domain level is out of range
+     */
+    public HierarchicalHash(HashFactory hashFactory, Map<N, Integer> weights, Function<N, List<String>> locator, int failureDomainLevel) {
+        this(hashFactory, weights, locator, failureDomainLevel, StableHashOptions.defaults());
+    }
+
+    /**
+     * Constructs instance with given nodes, weights and options; only hash tag extractor applies to hierarchical hashing.
+     *
+     * @param hashFactory           Factory of auxiliary hashes
+     * @param weights               map where nodes are assigned to keys and weights to the corresponding values
+     * @param locator               Returns location of node, eg. {@code ["dc1", "rack3"]}; all locations must have the same length
+     * @param failureDomainLevel    Index of location element which replicas must differ in, eg. 1 for racks
+     * @param options               Options; see {@link StableHashOptions#withHashTagExtractor(HashTagExtractor)}
+     * @throws IllegalArgumentException if locations have different lengths or failure domain level is out of range
+     */
+    public HierarchicalHash(HashFactory hashFactory, Map<N, Integer> weights, Function<N, List<String>> locator, int failureDomainLevel,
+                            StableHashOptions options) {
+        this.validator = new InputValidator<>();
+        this.hashTagExtractor = options.getHashTagExtractor();
+        this.hashFactory = hashFactory;
+        this.locator = locator;
+        this.failureDomainLevel = failureDomainLevel;
+        this.weights = new LinkedHashMap<>(weights);
+        this.locations = new HashMap<>();
+        this.root = new Domain<>("", "", null);
+
+        int commonDepth = -1;
+        for (Map.Entry<N, Integer> entry : this.weights.entrySet()) {
+            N node = entry.getKey();
+            validator.validateAddWeightedNode(node, entry.getValue());
+            List<String> location = Collections.unmodifiableList(new ArrayList<>(locator.apply(node)));
+            if (commonDepth >= 0 && location.size() != commonDepth) {
+                throw new IllegalArgumentException("Location of node " + node + " has " + location.size() +
+                        " levels; expected " + commonDepth);
+            }
+            commonDepth = location.size();
+            locations.put(node, location);
+            root.add(location, 0, node, entry.getValue());
+        }
+        this.depth = Math.max(commonDepth, 0);
+        if (failureDomainLevel < 0 || (commonDepth >= 0 && failureDomainLevel >= commonDepth)) {
+            throw new IllegalArgumentException("Invalid failure domain level: " + failureDomainLevel +
+                    "; should be in range [0," + depth + ")");
+        }
+    }
+
+    @Override
+    public Optional<N> getNode(String key) {
+        validator.validateGetNode(key);
+        if (weights.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(descend(root, DelimitedHashTag.hashedPart(hashTagExtractor, key), 0).leaf);
+    }
+
+    @Override
+    public Set<N> getNodes(String key, int size) {
+        validator.validateGetNodes(key, size, weights.size());
+        String hashedPart = DelimitedHashTag.hashedPart(hashTagExtractor, key);
+
+        Set<N> result = new LinkedHashSet<>();
+        Set<Domain<N>> usedDomains = new HashSet<>();
+
+        int replica = 0;
+        for (int tries = 0; result.size() < size && tries < size * MAX_TRIES_PER_REPLICA; tries++) {
+            Domain<N> domain = root;
+            for (int level = 0; level <= failureDomainLevel; level++) {
+                domain = select(domain, hashedPart, replica);
+            }
+            replica++;
+            if (usedDomains.contains(domain)) {
+                continue;
+            }
+            usedDomains.add(domain);
+            result.add(descend(domain, hashedPart, replica - 1).leaf);
+        }
+
+        if (result.size() < size) {
+            List<N> ranked = rankLeaves(hashedPart);
+            for (N node : ranked) {
+                if (result.size() == size) {
+                    break;
+                }
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<N> getNodes(String key, int size, List<String> preferredLocation) {
+        if (preferredLocation == null) {
+            throw new NullPointerException("preferred location must not be null");
+        }
+        Set<N> nodes = getNodes(key, size);
+        Set<N> ordered = new LinkedHashSet<>();
+        for (N node : nodes) {
+            if (isLocatedIn(node, preferredLocation)) {
+                ordered.add(node);
+            }
+        }
+        ordered.addAll(nodes);
+        return ordered;
+    }
+
+    @Override
+    public List<String> getLocation(N node) {
+        return locations.getOrDefault(node, Collections.emptyList());
+    }
+
+    @Override
+    public HierarchicalHash<N> addNode(N node) {
+        validator.validateAddNode(node);
+        return addWeightedNode(node, 1);
+    }
+
+    @Override
+    public HierarchicalHash<N> addWeightedNode(N node, int weight) {
+        validator.validateAddWeightedNode(node, weight);
+        if (weights.containsKey(node)) {
+            return this;
+        }
+        Map<N, Integer> newWeights = new LinkedHashMap<>(weights);
+        newWeights.put(node, weight);
+        return derive(newWeights);
+    }
+
+    @Override
+    public HierarchicalHash<N> updateWeightedNode(N node, int weight) {
+        validator.validateUpdateWeightedNode(node, weight);
+        Integer oldWeight = weights.get(node);
+        if (oldWeight != null && oldWeight == weight) {
+            return this;
+        }
+        Map<N, Integer> newWeights = new LinkedHashMap<>(weights);
+        newWeights.put(node, weight);
+        return derive(newWeights);
+    }
+
+    @Override
+    public HierarchicalHash<N> removeNode(N node) {
+        validator.validateRemoveNode(node);
+        if (!weights.containsKey(node)) {
+            return this;
+        }
+        Map<N, Integer> newWeights = new LinkedHashMap<>(weights);
+        newWeights.remove(node);
+        return derive(newWeights);
+    }
+
+    @Override
+    public HashStats<N> stats() {
+        return SampledStats.sample(this, weights.keySet(), weights.size() * BYTES_PER_NODE);
+    }
+
+    private boolean isLocatedIn(N node, List<String> location) {
+        List<String> nodeLocation = locations.get(node);
+        return nodeLocation != null && nodeLocation.size() >= location.size()
+                && nodeLocation.subList(0, location.size()).equals(location);
+    }
+
+    private HierarchicalHash<N> derive(Map<N, Integer> newWeights) {
+        return new HierarchicalHash<>(hashFactory, newWeights, locator, failureDomainLevel,
+                StableHashOptions.defaults().withHashTagExtractor(hashTagExtractor));
+    }
+
+    private Domain<N> descend(Domain<N> from, String key, int replica) {
+        Domain<N> domain = from;
+        while (domain.leaf == null) {
+            domain = select(domain, key, replica);
+        }
+        return domain;
+    }
+
+    private Domain<N> select(Domain<N> parent, String key, int replica) {
+        Domain<N> winner = null;
+        double highest = Double.NEGATIVE_INFINITY;
+        for (Domain<N> child : parent.children) {
+            double draw = straw2(key, child, replica);
+            if (winner == null || draw > highest) {
+                winner = child;
+                highest = draw;
+            }
+        }
+        return winner;
+    }
+
+    private List<N> rankLeaves(String key) {
+        Map<N, Double> draws = new HashMap<>();
+        collectLeaves(root, key, draws);
+        return draws.entrySet().stream()
+                .sorted(Map.Entry.<N, Double>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private void collectLeaves(Domain<N> domain, String key, Map<N, Double> draws) {
+        for (Domain<N> child : domain.children) {
+            if (child.leaf != null) {
+                draws.put(child.leaf, straw2(key, child, 0));
+            } else {
+                collectLeaves(child, key, draws);
+            }
+        }
+    }
+
+    private double straw2(String key, Domain<N> child, int replica) {
+        long hash = hashFactory.iterator(key + child.path + "/" + replica).next().getHash() & 0xFFFFFFFFL;
+        double uniform = (hash + 1) / (double) (1L << 32);
+        return Math.log(uniform) / child.weight;
+    }
+
+    /**
+     * Node of domain tree: either a domain with children or a leaf holding a node.
+     */
+    private static final class Domain<N> {
+
+        private final String name;
+        // names of all domains from the root, each prefixed with "/"
+        private final String path;
+        private final N leaf;
+        private final List<Domain<N>> children = new ArrayList<>();
+        private long weight;
+
+        private Domain(String name, String path, N leaf) {
+            this.name = name;
+            this.path = path;
+            this.leaf = leaf;
+        }
+
+        private void add(List<String> location, int level, N node, int nodeWeight) {
+            weight += nodeWeight;
+            if (level == location.size()) {
+                Domain<N> leafDomain = new Domain<>(node.toString(), path + "/" + node, node);
+                leafDomain.weight = nodeWeight;
+                children.add(leafDomain);
+                return;
+            }
+            String childName = location.get(level);
+            Domain<N> child = null;
+            for (Domain<N> candidate : children) {
+                if (candidate.name.equals(childName)) {
+                    child = candidate;
+                    break;
+                }
+            }
+            if (child == null) {
+                child = new Domain<>(childName, path + "/" + childName, null);
+                children.add(child);
+            }
+            child.add(location, level + 1, node, nodeWeight);
+        }
+
+    }
+
+}
@@ -1,7 +1,13 @@
 package org.wasila.stablehash.internal;
 
+import org.wasila.stablehash.SearchLayout;
+import org.wasila.stablehash.StableHashOptions;
+
 public class InputValidator<N> {
 
+    // 2^24 virtual nodes are up to 48M ring points of a single node
+    private static final long MAX_VNODES = 1L << 24;
+
     public void validateGetNode(String stringKey) {
         validateKey(stringKey);
     }
@@ -29,6 +35,45 @@ public class InputValidator<N> {
         validateNode(nodeName);
     }
 
+    public void validateOptions(StableHashOptions options) {
+        if (options == null) {
+            throw new NullPointerException("options must not be null");
+        }
+        SearchLayout layout = options.getSearchLayout();
+        if (options.isOffHeap() && layout != SearchLayout.BINARY && layout != SearchLayout.RADIX_BUCKETS) {
+            throw new IllegalArgumentException("Off-heap ring supports only BINARY and RADIX_BUCKETS search layouts, got: " + layout);
+        }
+        if (options.getPointBits() == 64 && layout == SearchLayout.RADIX_BUCKETS) {
+            throw new IllegalArgumentException("RADIX_BUCKETS search layout supports only 32-bit points");
+        }
+    }
+
+    public void validateVnodes(int weight, long vnodes) {
+        if (vnodes > MAX_VNODES) {
+            throw new IllegalArgumentException("Invalid weight value: " + weight + "; gives " + vnodes
+                    + " virtual nodes, should give <= " + MAX_VNODES + ".");
+        }
+    }
+
+    public void validateFailoverNode(N node, int index) {
+        validateNode(node);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown node: " + node);
+        }
+    }
+
+    public void validatePartitionCount(int partitionCount) {
+        if (partitionCount < 1 || Integer.bitCount(partitionCount) != 1) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + partitionCount + "; should be a power of two.");
+        }
+    }
+
+    public void validateBatch(int keyCount, int outputLength) {
+        if (outputLength < keyCount) {
+            throw new IllegalArgumentException("Invalid output length: " + outputLength + "; should be >= " + keyCount + ".");
+        }
+    }
+
     private void validateNode(N node) {
         if (node == null) {
             throw new NullPointerException("node must not be null");
@@ -41,7 +86,7 @@ public class InputValidator<N> {
         }
     }
 
-    private void validateSize(int size, int nodesSetSize) {
+    public void validateSize(int size, int nodesSetSize) {
         if (size < 1 || size > nodesSetSize) {
             throw new IllegalArgumentException("size outside of expected range (0," + nodesSetSize +"): " + size);
         }
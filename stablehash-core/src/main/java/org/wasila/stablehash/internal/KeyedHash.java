@@ -0,0 +1,135 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.KeyHasher;
+import org.wasila.stablehash.KeyedStableHash;
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashDecorator;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@link KeyedStableHash} routing keys through {@link HashedLookup} of underlying hash.
+ *
+ * @param <K> Key type
+ * @param <N> Node type
+ */
+public class KeyedHash<K, N> implements KeyedStableHash<K, N> {
+
+    private static final long SEED = 0x5EED_0F_57AB1EL;
+
+    private final StableHash<N> hash;
+    private final HashedLookup<N> lookup;
+    private final KeyHasher<K> keyHasher;
+
+    private final InputValidator<N> validator = new InputValidator<>();
+
+    /**
+     * @param hash      Underlying hash; must be created by {@code StableHashStaticFactory}
+     * @param keyHasher Strategy of hashing keys
+     * @throws IllegalArgumentException if underlying hash does not support lookup by hash
+     */
+    @SuppressWarnings("unchecked")
+    public KeyedHash(StableHash<N> hash, KeyHasher<K> keyHasher) {
+        if (hash == null || keyHasher == null) {
+            throw new NullPointerException("hash and keyHasher must not be null");
+        }
+        if (hash instanceof StableHashDecorator) {
+            throw new IllegalArgumentException("Lookup by key hash would bypass decorator " + hash.getClass().getName()
+                    + "; create it from the delegate instead");
+        }
+        if (!(hash instanceof HashedLookup)) {
+            throw new IllegalArgumentException("Lookup by key hash is not supported by " + hash.getClass().getName());
+        }
+        this.hash = hash;
+        this.lookup = (HashedLookup<N>) hash;
+        this.keyHasher = keyHasher;
+    }
+
+    @Override
+    public Optional<N> getNode(K key) {
+        return lookup.getNodeForHash(hashOf(key));
+    }
+
+    @Override
+    public Set<N> getNodes(K key, int size) {
+        return lookup.getNodesForHash(hashOf(key), size);
+    }
+
+    /**
+     * Routes keys reusing one hash state, without allocating per key.
+     */
+    @Override
+    public void routeAll(List<? extends K> keys, N[] nodes) {
+        validator.validateBatch(keys.size(), nodes.length);
+        StreamingHash sink = new StreamingHash(SEED);
+        int i = 0;
+        for (K key : keys) {
+            nodes[i++] = lookup.nodeForHash(hashOf(keyHasher, key, sink));
+        }
+    }
+
+    @Override
+    public KeyedHash<K, N> addNode(N node) {
+        return derive(hash.addNode(node));
+    }
+
+    @Override
+    public KeyedHash<K, N> addWeightedNode(N node, int weight) {
+        return derive(hash.addWeightedNode(node, weight));
+    }
+
+    @Override
+    public KeyedHash<K, N> updateWeightedNode(N node, int weight) {
+        return derive(hash.updateWeightedNode(node, weight));
+    }
+
+    @Override
+    public KeyedHash<K, N> removeNode(N node) {
+        return derive(hash.removeNode(node));
+    }
+
+    @Override
+    public StableHash<N> getStableHash() {
+        return hash;
+    }
+
+    private long hashOf(K key) {
+        return hashOf(keyHasher, key, new StreamingHash(SEED));
+    }
+
+    /**
+     * Hashes key the same way as every {@code KeyedHash} does, reusing given sink.
+     */
+    static <K> long hashOf(KeyHasher<K> keyHasher, K key, StreamingHash sink) {
+        if (key == null) {
+            throw new NullPointerException("key must not be null");
+        }
+        keyHasher.hash(key, sink.reset(SEED));
+        return sink.finish();
+    }
+
+    private KeyedHash<K, N> derive(StableHash<N> newHash) {
+        if (newHash == hash) {
+            return this;
+        }
+        return new KeyedHash<>(newHash, keyHasher);
+    }
+
+}
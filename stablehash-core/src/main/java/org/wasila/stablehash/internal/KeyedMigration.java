@@ -0,0 +1,116 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.KeyHasher;
+import org.wasila.stablehash.KeyedStableHash;
+import org.wasila.stablehash.MigrationRoute;
+import org.wasila.stablehash.MigrationView;
+import org.wasila.stablehash.StableHash;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link MigrationView} hashing key once and looking it up through {@link HashedLookup} of both hashes.
+ * If both hashes are the same instance only one lookup is done.
+ *
+ * @param <K> Key type
+ * @param <N> Node type
+ */
+public class KeyedMigration<K, N> implements MigrationView<K, N> {
+
+    private final KeyedHash<K, N> oldHash;
+    private final KeyedHash<K, N> newHash;
+    private final HashedLookup<N> oldLookup;
+    private final HashedLookup<N> newLookup;
+    private final KeyHasher<K> keyHasher;
+
+    private final InputValidator<N> validator = new InputValidator<>();
+
+    /**
+     * @param oldHash   Hash of the old topology; must be created by {@code StableHashStaticFactory}
+     * @param newHash   Hash of the new topology; must be created by {@code StableHashStaticFactory}
+     * @param keyHasher Strategy of hashing keys
+     * @throws IllegalArgumentException if any of hashes does not support lookup by hash
+     */
+    @SuppressWarnings("unchecked")
+    public KeyedMigration(StableHash<N> oldHash, StableHash<N> newHash, KeyHasher<K> keyHasher) {
+        this.oldHash = new KeyedHash<>(oldHash, keyHasher);
+        this.newHash = new KeyedHash<>(newHash, keyHasher);
+        this.oldLookup = (HashedLookup<N>) oldHash;
+        this.newLookup = (HashedLookup<N>) newHash;
+        this.keyHasher = keyHasher;
+    }
+
+    @Override
+    public MigrationRoute<N> route(K key) {
+        return route(key, new MigrationRoute<>());
+    }
+
+    @Override
+    public MigrationRoute<N> route(K key, MigrationRoute<N> route) {
+        if (route == null) {
+            throw new NullPointerException("route must not be null");
+        }
+        long keyHash = KeyedHash.hashOf(keyHasher, key, new StreamingHash(0));
+        N oldNode = oldLookup.nodeForHash(keyHash);
+        return route.set(oldNode, newNode(keyHash, oldNode));
+    }
+
+    @Override
+    public boolean isMoved(K key) {
+        long keyHash = KeyedHash.hashOf(keyHasher, key, new StreamingHash(0));
+        N oldNode = oldLookup.nodeForHash(keyHash);
+        return !Objects.equals(oldNode, newNode(keyHash, oldNode));
+    }
+
+    @Override
+    public int routeAll(List<? extends K> keys, N[] oldNodes, N[] newNodes) {
+        int count = keys.size();
+        validator.validateBatch(count, Math.min(oldNodes.length, newNodes.length));
+        StreamingHash sink = new StreamingHash(0);
+        int moved = 0;
+        int i = 0;
+        for (K key : keys) {
+            long keyHash = KeyedHash.hashOf(keyHasher, key, sink);
+            N oldNode = oldLookup.nodeForHash(keyHash);
+            N newNode = newNode(keyHash, oldNode);
+            oldNodes[i] = oldNode;
+            newNodes[i] = newNode;
+            if (!Objects.equals(oldNode, newNode)) {
+                moved++;
+            }
+            i++;
+        }
+        return moved;
+    }
+
+    @Override
+    public KeyedStableHash<K, N> getOld() {
+        return oldHash;
+    }
+
+    @Override
+    public KeyedStableHash<K, N> getNew() {
+        return newHash;
+    }
+
+    private N newNode(long keyHash, N oldNode) {
+        return newLookup == oldLookup ? oldNode : newLookup.nodeForHash(keyHash);
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.HashFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caches identity of every node (by default its {@code toString()}) together with values derived from it:
+ * ring points of node's virtual nodes and rendezvous seed. Identity is computed once per node and reused
+ * by all instances derived from each other (eg. by {@code addNode}), so nodes with expensive or unstable
+ * {@code toString()} are hashed consistently and cheaply. Ring points are in addition shared by unrelated
+ * instances through {@link VnodePointCache}.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+final class NodeIdentities<N> {
+
+    private final Function<? super N, String> extractor;
+    private final Map<N, Entry> entries;
+
+    NodeIdentities(Function<? super N, String> extractor) {
+        this(extractor, new ConcurrentHashMap<>());
+    }
+
+    private NodeIdentities(Function<? super N, String> extractor, Map<N, Entry> entries) {
+        if (extractor == null) {
+            throw new NullPointerException("identity extractor must not be null");
+        }
+        this.extractor = extractor;
+        this.entries = entries;
+    }
+
+    static <N> NodeIdentities<N> ofToString() {
+        return new NodeIdentities<>(Object::toString);
+    }
+
+    /**
+     * Returns cache to be used by derived instance: shares cached values of given nodes only,
+     * so values of removed nodes do not linger.
+     */
+    NodeIdentities<N> retain(Collection<N> nodes) {
+        Map<N, Entry> retained = new ConcurrentHashMap<>();
+        for (N node : nodes) {
+            Entry entry = entries.get(node);
+            if (entry != null) {
+                retained.put(node, entry);
+            }
+        }
+        return new NodeIdentities<>(extractor, retained);
+    }
+
+    String identity(N node) {
+        return entry(node).identity;
+    }
+
+    long seed(N node) {
+        return entry(node).seed;
+    }
+
+    static long seedOf(String identity) {
+        return new StreamingHash(0).putString(identity).finish();
+    }
+
+    /**
+     * Adds ring points of first {@code vnodes} virtual nodes of given node to the builder, see {@link VnodePoints}.
+     * Points are taken from the {@link VnodePointCache#shared() shared cache} the first time they are needed
+     * and added as one sorted run, so building a ring merges per node arrays instead of sorting all points.
+     */
+    void addPoints(N node, int vnodes, HashFactory hashFactory, RingBuilder builder, int owner, boolean wide) {
+        VnodePoints points = entry(node).points(vnodes, hashFactory, wide);
+        builder.addRun(points.sorted(vnodes), points.end(vnodes), owner);
+    }
+
+    private Entry entry(N node) {
+        Entry entry = entries.get(node);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(node, key -> new Entry(extractor.apply(key)));
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+
+        private final String identity;
+        private final long seed;
+        private volatile VnodePoints points = VnodePoints.empty(false);
+        private volatile VnodePoints widePoints = VnodePoints.empty(true);
+
+        private Entry(String identity) {
+            if (identity == null) {
+                throw new NullPointerException("node identity must not be null");
+            }
+            this.identity = identity;
+            this.seed = seedOf(identity);
+        }
+
+        private VnodePoints points(int vnodes, HashFactory hashFactory, boolean wide) {
+            VnodePoints current = wide ? widePoints : points;
+            if (current.vnodes() < vnodes) {
+                synchronized (this) {
+                    current = wide ? widePoints : points;
+                    if (current.vnodes() < vnodes) {
+                        current = VnodePointCache.shared().points(hashFactory, identity, wide, vnodes, current);
+                        if (wide) {
+                            widePoints = current;
+                        } else {
+                            points = current;
+                        }
+                    }
+                }
+            }
+            return current;
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ring kept in a direct {@link ByteBuffer}: all points (8 bytes each) followed by all owners (4 bytes each).
+ * Lookups binary search straight over off-heap memory.
+ *
+ * Memory is released by the buffer's own cleaner once ring becomes unreachable. Ring is never freed while
+ * anybody can still read it, so reads need no guard; {@link ConsistentHash#close()} only drops the reference
+ * held by its instance.
+ */
+final class OffHeapRing implements Ring {
+
+    private final int size;
+    private final int ownersOffset;
+    private final ByteBuffer buffer;
+
+    OffHeapRing(long[] points, int[] owners) {
+        this.size = points.length;
+        this.ownersOffset = size * Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacityOf(size)).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(i * Long.BYTES, points[i]);
+            buffer.putInt(ownersOffset + i * Integer.BYTES, owners[i]);
+        }
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long pointAt(int pos) {
+        return buffer.getLong(pos * Long.BYTES);
+    }
+
+    @Override
+    public int ownerAt(int pos) {
+        return buffer.getInt(ownersOffset + pos * Integer.BYTES);
+    }
+
+    @Override
+    public int successor(long hash) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long point = buffer.getLong(mid * Long.BYTES);
+            if (point < hash) {
+                low = mid + 1;
+            } else if (point > hash) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low == size ? 0 : low;
+    }
+
+    @Override
+    public long heapBytes() {
+        return 64L;
+    }
+
+    private static int capacityOf(int size) {
+        try {
+            return Math.multiplyExact(size, Long.BYTES + Integer.BYTES);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Invalid number of ring points: " + size
+                    + "; should be <= " + Integer.MAX_VALUE / (Long.BYTES + Integer.BYTES) + " for off-heap ring.");
+        }
+    }
+
+}
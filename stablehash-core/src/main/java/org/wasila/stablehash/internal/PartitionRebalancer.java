@@ -0,0 +1,114 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+/**
+ * Assigns fixed partitions to nodes so that every node owns number of partitions proportional to its weight,
+ * moving as few partitions as possible: only partitions of removed nodes and the excess of nodes owning more
+ * than their target are reassigned.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+final class PartitionRebalancer {
+
+    private PartitionRebalancer() {
+    }
+
+    /**
+     * Returns number of partitions every node should own: floor of its proportional share plus one
+     * for nodes with the largest remainders (ties go to the node with lower index).
+     */
+    static int[] targets(int partitionCount, int[] weights) {
+        int[] targets = new int[weights.length];
+        if (weights.length == 0) {
+            return targets;
+        }
+        long totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        long[] remainders = new long[weights.length];
+        int assigned = 0;
+        for (int i = 0; i < weights.length; i++) {
+            long share = (long) partitionCount * weights[i];
+            targets[i] = (int) (share / totalWeight);
+            remainders[i] = share % totalWeight;
+            assigned += targets[i];
+        }
+        for (; assigned < partitionCount; assigned++) {
+            int best = 0;
+            for (int i = 1; i < weights.length; i++) {
+                if (remainders[i] > remainders[best]) {
+                    best = i;
+                }
+            }
+            targets[best]++;
+            remainders[best] = -1;
+        }
+        return targets;
+    }
+
+    /**
+     * Rebalances partitions in place.
+     *
+     * @param owners    Owner index of every partition; -1 marks partition without owner (eg. of removed node)
+     * @param targets   Number of partitions every node should own; must sum up to number of partitions
+     *                  unless there are no nodes at all
+     * @return          Number of partitions which changed owner
+     */
+    static int rebalance(int[] owners, int[] targets) {
+        if (targets.length == 0) {
+            int moved = 0;
+            for (int p = 0; p < owners.length; p++) {
+                if (owners[p] >= 0) {
+                    owners[p] = -1;
+                    moved++;
+                }
+            }
+            return moved;
+        }
+        int[] counts = new int[targets.length];
+        for (int owner : owners) {
+            if (owner >= 0) {
+                counts[owner]++;
+            }
+        }
+        int[] released = new int[owners.length];
+        int releasedCount = 0;
+        for (int p = 0; p < owners.length; p++) {
+            int owner = owners[p];
+            if (owner < 0) {
+                released[releasedCount++] = p;
+            } else if (counts[owner] > targets[owner]) {
+                counts[owner]--;
+                owners[p] = -1;
+                released[releasedCount++] = p;
+            }
+        }
+        // round robin over nodes below target, so partitions of one node are spread over the others
+        int node = 0;
+        for (int i = 0; i < releasedCount; i++) {
+            while (counts[node] >= targets[node]) {
+                node = (node + 1) % targets.length;
+            }
+            owners[released[i]] = node;
+            counts[node]++;
+            node = (node + 1) % targets.length;
+        }
+        return releasedCount;
+    }
+
+}
@@ -0,0 +1,298 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.HashTagExtractor;
+import org.wasila.stablehash.PartitionMap;
+import org.wasila.stablehash.PartitionedStableHash;
+import org.wasila.stablehash.StableHashOptions;
+import org.wasila.stablehash.VersionedTopology;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Fixed partition implementation. Key is hashed into one of {@code 2^k} partitions and table of partition owners
+ * gives the node. Partition table is rebuilt with {@link PartitionRebalancer} on every membership or weight change,
+ * starting from the table of instance it is derived from, so only minimal number of partitions move.
+ *
+ * Replicas returned by {@link #getNodes(String, int)} are the distinct owners of consecutive partitions,
+ * starting from the partition of the key.
+ *
+ * @param <N> Node type
+ */
+public class PartitionedHash<N> implements PartitionedStableHash<N>, HashedLookup<N>, VersionedTopology<N> {
+
+    // rough per node cost: weight map entry, boxed weight and index map entry
+    private static final long BYTES_PER_NODE = 32 + 16 + 32;
+
+    private final InputValidator<N> validator;
+
+    private final Map<N, Integer> weights;
+    private final Map<N, Integer> indices;
+    private final N[] nodes;
+    private final int[] owners;
+    private final int mask;
+
+    // null to hash whole keys
+    private final HashTagExtractor hashTagExtractor;
+
+    /**
+     * Constructs instance with given nodes. All nodes have default weight of 1.
+     *
+     * @param nodes             Collection of nodes
+     * @param partitionCount    Number of partitions; must be a power of two
+     * @throws IllegalArgumentException if number of partitions is not a power of two
+     */
+    public PartitionedHash(Collection<N> nodes, int partitionCount) {
+        this(toWeights(nodes), partitionCount);
+    }
+
+    /**
+     * Constructs instance with given nodes and weights.
+     *
+     * @param weights           map where nodes are assigned to keys and weights to the corresponding values
+     * @param partitionCount    Number of partitions; must be a power of two
+     * @throws IllegalArgumentException if number of partitions is not a power of two or any weight is 0 or less
+     */
+    public PartitionedHash(Map<N, Integer> weights, int partitionCount) {
+        this(weights, partitionCount, StableHashOptions.defaults());
+    }
+
+    /**
+     * Constructs instance with given nodes, weights and options; only hash tag extractor applies to partitioned hashing.
+     *
+     * @param weights           map where nodes are assigned to keys and weights to the corresponding values
+     * @param partitionCount    Number of partitions; must be a power of two
+     * @param options           Options; see {@link StableHashOptions#withHashTagExtractor(HashTagExtractor)}
+     * @throws IllegalArgumentException if number of partitions is not a power of two or any weight is 0 or less
+     */
+    public PartitionedHash(Map<N, Integer> weights, int partitionCount, StableHashOptions options) {
+        this(weights, emptyOwners(partitionCount), null, options.getHashTagExtractor());
+    }
+
+    /**
+     * Restores instance from persisted partition map. If nodes or weights differ from the ones the map
+     * was created for, partitions are rebalanced with minimal number of moves.
+     *
+     * @param partitionMap  Persisted partition map
+     * @param weights       map where nodes are assigned to keys and weights to the corresponding values
+     * @throws IllegalArgumentException if any weight is 0 or less
+     */
+    public PartitionedHash(PartitionMap<N> partitionMap, Map<N, Integer> weights) {
+        this(partitionMap, weights, StableHashOptions.defaults());
+    }
+
+    /**
+     * Restores instance from persisted partition map with given options; only hash tag extractor applies
+     * to partitioned hashing and it has to be the one the map was used with, or keys map to other partitions.
+     *
+     * @param partitionMap  Persisted partition map
+     * @param weights       map where nodes are assigned to keys and weights to the corresponding values
+     * @param options       Options; see {@link StableHashOptions#withHashTagExtractor(HashTagExtractor)}
+     * @throws IllegalArgumentException if any weight is 0 or less
+     */
+    public PartitionedHash(PartitionMap<N> partitionMap, Map<N, Integer> weights, StableHashOptions options) {
+        this(weights, partitionMap.getOwners(), partitionMap.getNodes().toArray(), options.getHashTagExtractor());
+    }
+
+    @SuppressWarnings("unchecked")
+    private PartitionedHash(Map<N, Integer> weights, int[] previousOwners, Object[] previousNodes, HashTagExtractor hashTagExtractor) {
+        validator = new InputValidator<>();
+        this.hashTagExtractor = hashTagExtractor;
+        this.weights = new LinkedHashMap<>();
+        for (Map.Entry<N, Integer> entry : weights.entrySet()) {
+            validator.validateAddWeightedNode(entry.getKey(), entry.getValue());
+            this.weights.put(entry.getKey(), entry.getValue());
+        }
+        this.nodes = (N[]) this.weights.keySet().toArray();
+        this.indices = new HashMap<>();
+        int[] nodeWeights = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            indices.put(nodes[i], i);
+            nodeWeights[i] = this.weights.get(nodes[i]);
+        }
+
+        owners = previousOwners;
+        if (previousNodes != null) {
+            for (int p = 0; p < owners.length; p++) {
+                owners[p] = owners[p] < 0 ? -1 : indices.getOrDefault(previousNodes[owners[p]], -1);
+            }
+        }
+        PartitionRebalancer.rebalance(owners, PartitionRebalancer.targets(owners.length, nodeWeights));
+        mask = owners.length - 1;
+    }
+
+    private static <N> Map<N, Integer> toWeights(Collection<N> nodes) {
+        Map<N, Integer> weights = new LinkedHashMap<>();
+        for (N node : nodes) {
+            weights.put(node, 1);
+        }
+        return weights;
+    }
+
+    private static int[] emptyOwners(int partitionCount) {
+        new InputValidator<>().validatePartitionCount(partitionCount);
+        int[] owners = new int[partitionCount];
+        Arrays.fill(owners, -1);
+        return owners;
+    }
+
+    @Override
+    public Optional<N> getNode(String key) {
+        validator.validateGetNode(key);
+        return getNodeForHash(hashOf(key));
+    }
+
+    @Override
+    public Set<N> getNodes(String key, int size) {
+        validator.validateGetNodes(key, size, nodes.length);
+        return collectNodes((int) hashOf(key) & mask, size);
+    }
+
+    @Override
+    public N nodeForHash(long keyHash) {
+        int owner = owners[(int) keyHash & mask];
+        return owner < 0 ? null : nodes[owner];
+    }
+
+    @Override
+    public Set<N> getNodesForHash(long keyHash, int size) {
+        validator.validateSize(size, nodes.length);
+        return collectNodes((int) keyHash & mask, size);
+    }
+
+    @Override
+    public int getPartition(String key) {
+        validator.validateGetNode(key);
+        return (int) hashOf(key) & mask;
+    }
+
+    @Override
+    public PartitionMap<N> getPartitionMap() {
+        return new PartitionMap<>(Arrays.asList(nodes), owners);
+    }
+
+    @Override
+    public PartitionedHash<N> addNode(N node) {
+        validator.validateAddNode(node);
+        return addWeightedNode(node, 1);
+    }
+
+    @Override
+    public PartitionedHash<N> addWeightedNode(N node, int weight) {
+        validator.validateAddWeightedNode(node, weight);
+        if (weights.containsKey(node)) {
+            return this;
+        }
+        Map<N, Integer> newWeights = new LinkedHashMap<>(weights);
+        newWeights.put(node, weight);
+        return derive(newWeights);
+    }
+
+    @Override
+    public PartitionedHash<N> updateWeightedNode(N node, int weight) {
+        validator.validateUpdateWeightedNode(node, weight);
+        Integer oldWeight = weights.get(node);
+        if (oldWeight != null && oldWeight == weight) {
+            return this;
+        }
+        Map<N, Integer> newWeights = new LinkedHashMap<>(weights);
+        newWeights.put(node, weight);
+        return derive(newWeights);
+    }
+
+    @Override
+    public PartitionedHash<N> removeNode(N node) {
+        validator.validateRemoveNode(node);
+        if (!weights.containsKey(node)) {
+            return this;
+        }
+        Map<N, Integer> newWeights = new LinkedHashMap<>(weights);
+        newWeights.remove(node);
+        return derive(newWeights);
+    }
+
+    @Override
+    public Map<N, Integer> getWeights() {
+        return Collections.unmodifiableMap(weights);
+    }
+
+    /**
+     * Computes fingerprint of nodes and weights; identity of node is its {@code toString()}. Assignment
+     * of partitions depends also on history of changes and is not part of the fingerprint.
+     */
+    @Override
+    public long getFingerprint() {
+        return TopologyFingerprint.of(weights, node -> NodeIdentities.seedOf(node.toString()));
+    }
+
+    /**
+     * Computes exact ownership from number of partitions owned by every node.
+     *
+     * @return          Ownership and balance statistics
+     */
+    @Override
+    public HashStats<N> stats() {
+        int[] counts = new int[nodes.length];
+        for (int owner : owners) {
+            if (owner >= 0) {
+                counts[owner]++;
+            }
+        }
+        Map<N, Double> ownership = new LinkedHashMap<>();
+        for (int i = 0; i < nodes.length; i++) {
+            ownership.put(nodes[i], counts[i] / (double) owners.length);
+        }
+        return new HashStats<>(ownership, owners.length, 4L * owners.length + nodes.length * BYTES_PER_NODE, false);
+    }
+
+    private PartitionedHash<N> derive(Map<N, Integer> newWeights) {
+        return new PartitionedHash<>(newWeights, owners.clone(), nodes, hashTagExtractor);
+    }
+
+    private Set<N> collectNodes(int partition, int size) {
+        Set<N> result = new LinkedHashSet<>();
+        for (int i = 0; i < owners.length && result.size() < size; i++) {
+            int owner = owners[(partition + i) & mask];
+            if (owner >= 0) {
+                result.add(nodes[owner]);
+            }
+        }
+        // nodes owning no partitions at all (possible only with more nodes than partitions)
+        for (int i = 0; i < nodes.length && result.size() < size; i++) {
+            result.add(nodes[i]);
+        }
+        return result;
+    }
+
+    private long hashOf(String key) {
+        if (hashTagExtractor == null) {
+            return new StreamingHash(0).putString(key).finish();
+        }
+        int start = hashTagExtractor.tagStart(key);
+        return new StreamingHash(0).putString(key, start, hashTagExtractor.tagEnd(key, start)).finish();
+    }
+
+}
@@ -17,8 +17,14 @@ package org.wasila.stablehash.internal;
 
 import org.wasila.stablehash.AuxHashKey;
 import org.wasila.stablehash.HashFactory;
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.HashTagExtractor;
+import org.wasila.stablehash.NodeFailover;
 import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashOptions;
+import org.wasila.stablehash.VersionedTopology;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -27,6 +33,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -37,7 +44,10 @@ import java.util.stream.Collectors;
  *
  * @param <N> Node type
  */
-public class RendezvousHash<N> implements StableHash<N> {
+public class RendezvousHash<N> implements StableHash<N>, HashedLookup<N>, NodeFailover<N>, VersionedTopology<N> {
+
+    // rough per node cost: hash map entry plus boxed weight (64-bit JVM, compressed oops)
+    private static final long BYTES_PER_NODE = 32 + 4 + 16;
 
     private final long fto = (0xFF_FF_FF_FF_FF_FF_FF_FFL >> (64 - 53));
     private final double ftz = (double)(1L << 53);
@@ -48,8 +58,29 @@ public class RendezvousHash<N> implements StableHash<N> {
 
     private final Map<N, Integer> nodes;
 
+    // lazily computed for lookups by key hash; racy initialization is harmless as result is always the same
+    private volatile NodeSeeds<N> seeds;
+
+    private final NodeIdentities<N> identities;
+
+    // null to hash whole keys
+    private final HashTagExtractor hashTagExtractor;
+
+    // indexed as nodes of seeds, which follow iteration order of nodes map; null until any node is marked down
+    private volatile DownNodes down;
+
     public RendezvousHash(HashFactory hashFactory) {
+        this(hashFactory, NodeIdentities.ofToString());
+    }
+
+    private RendezvousHash(HashFactory hashFactory, NodeIdentities<N> identities) {
+        this(hashFactory, identities, null);
+    }
+
+    private RendezvousHash(HashFactory hashFactory, NodeIdentities<N> identities, HashTagExtractor hashTagExtractor) {
         this.hashFactory = hashFactory;
+        this.identities = identities;
+        this.hashTagExtractor = hashTagExtractor;
         validator = new InputValidator<N>();
         nodes = new HashMap<>();
     }
@@ -72,17 +103,63 @@ public class RendezvousHash<N> implements StableHash<N> {
         this.nodes.putAll(weightedNodesList);
     }
 
+    /**
+     * Constructs instance with given nodes and node identity.
+     *
+     * @param hashFactory       Factory of auxiliary hashes
+     * @param weightedNodesList map where nodes are assigned to keys and weights to the corresponding values
+     * @param nodeIdentity      Returns stable identity of node mixed into every score; computed once per node
+     */
+    public RendezvousHash(HashFactory hashFactory, Map<N, Integer> weightedNodesList, Function<? super N, String> nodeIdentity) {
+        this(hashFactory, new NodeIdentities<>(nodeIdentity));
+        this.nodes.putAll(weightedNodesList);
+    }
+
+    public RendezvousHash(Map<N, Integer> weightedNodesList, Function<? super N, String> nodeIdentity) {
+        this(new HashUtil(), weightedNodesList, nodeIdentity);
+    }
+
+    /**
+     * Constructs instance with given nodes and options; only hash tag extractor applies to rendezvous hashing.
+     *
+     * @param hashFactory       Factory of auxiliary hashes
+     * @param weightedNodesList map where nodes are assigned to keys and weights to the corresponding values
+     * @param options           Options; see {@link StableHashOptions#withHashTagExtractor(HashTagExtractor)}
+     */
+    public RendezvousHash(HashFactory hashFactory, Map<N, Integer> weightedNodesList, StableHashOptions options) {
+        this(hashFactory, NodeIdentities.ofToString(), options.getHashTagExtractor());
+        this.nodes.putAll(weightedNodesList);
+    }
+
+    public RendezvousHash(Map<N, Integer> weightedNodesList, StableHashOptions options) {
+        this(new HashUtil(), weightedNodesList, options);
+    }
+
+    private RendezvousHash(RendezvousHash<N> previous, Map<N, Integer> weightedNodesList) {
+        this(previous.hashFactory, previous.identities.retain(weightedNodesList.keySet()), previous.hashTagExtractor);
+        this.nodes.putAll(weightedNodesList);
+        if (isAnyDown(previous.down)) {
+            down = DownNodes.carry(previous.down, Arrays.asList(previous.getSeeds().nodes), Arrays.asList(getSeeds().nodes));
+        }
+    }
+
     @Override
     public Optional<N> getNode(String key) {
         validator.validateGetNode(key);
+        String hashedPart = DelimitedHashTag.hashedPart(hashTagExtractor, key);
+        DownNodes downNodes = down;
         double highestScore = -1;
         N champion = null;
+        int i = 0;
         for (Map.Entry<N, Integer> entry : nodes.entrySet()) {
-            double newScore = getWeightedScore(key, entry.getKey(), entry.getValue());
-            if (newScore > highestScore) {
-                champion = entry.getKey();
-                highestScore = newScore;
+            if (!isMarked(downNodes, i)) {
+                double newScore = getWeightedScore(hashedPart, entry.getKey(), entry.getValue());
+                if (newScore > highestScore) {
+                    champion = entry.getKey();
+                    highestScore = newScore;
+                }
             }
+            i++;
         }
         return Optional.ofNullable(champion);
     }
@@ -90,13 +167,56 @@ public class RendezvousHash<N> implements StableHash<N> {
     @Override
     public Set<N> getNodes(String key, int size) {
         validator.validateGetNodes(key, size, nodes.size());
+        String hashedPart = DelimitedHashTag.hashedPart(hashTagExtractor, key);
 
         Set<Pair<N, Double>> sortedSet = new TreeSet<>(Collections.reverseOrder(Comparator.comparingDouble(Pair::getLast)));
 
+        DownNodes downNodes = down;
+        int i = 0;
         for (Map.Entry<N, Integer> entry : nodes.entrySet()) {
-            sortedSet.add(new Pair<>(entry.getKey(), getWeightedScore(key, entry.getKey(), entry.getValue())));
+            if (!isMarked(downNodes, i)) {
+                sortedSet.add(new Pair<>(entry.getKey(), getWeightedScore(hashedPart, entry.getKey(), entry.getValue())));
+            }
+            i++;
+        }
+
+        if (sortedSet.size() < size) {
+            // not enough nodes up
+            return Collections.emptySet();
+        }
+        return sortedSet.stream().limit(size).map(pair -> pair.getFirst()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns node with the highest score for given 64-bit key hash. Score of every node is computed
+     * from key hash mixed with precomputed seed of the node, so no string hashing is involved. Returns null
+     * if all nodes are down.
+     */
+    @Override
+    public N nodeForHash(long keyHash) {
+        NodeSeeds<N> nodeSeeds = getSeeds();
+        int champion = nodeSeeds.champion(keyHash, down);
+        return champion < 0 ? null : nodeSeeds.nodes[champion];
+    }
+
+    @Override
+    public Set<N> getNodesForHash(long keyHash, int size) {
+        validator.validateSize(size, nodes.size());
+        NodeSeeds<N> nodeSeeds = getSeeds();
+
+        Set<Pair<N, Double>> sortedSet = new TreeSet<>(Collections.reverseOrder(Comparator.comparingDouble(Pair::getLast)));
+        DownNodes downNodes = down;
+        for (int i = 0; i < nodeSeeds.nodes.length; i++) {
+            if (isMarked(downNodes, i)) {
+                continue;
+            }
+            sortedSet.add(new Pair<>(nodeSeeds.nodes[i], getWeightedScore(keyHash, nodeSeeds.seeds[i], nodeSeeds.weights[i])));
         }
 
+        if (sortedSet.size() < size) {
+            // not enough nodes up
+            return Collections.emptySet();
+        }
         return sortedSet.stream().limit(size).map(pair -> pair.getFirst()).collect(Collectors.toSet());
     }
 
@@ -110,19 +230,25 @@ public class RendezvousHash<N> implements StableHash<N> {
     public RendezvousHash<N> addWeightedNode(N node, int weight) {
         validator.validateAddWeightedNode(node, weight);
 
-        Integer oldWeight = nodes.get(node);
-        if (oldWeight != null && oldWeight == 1) {
+        if (nodes.containsKey(node)) {
             return this;
         }
         Map<N, Integer> newNodes = new HashMap<>(nodes);
-        newNodes.put(node, 1);
-        return new RendezvousHash<>(this.hashFactory, newNodes);
+        newNodes.put(node, weight);
+        return new RendezvousHash<>(this, newNodes);
     }
 
     @Override
     public RendezvousHash<N> updateWeightedNode(N node, int weight) {
         validator.validateUpdateWeightedNode(node, weight);
-        return addWeightedNode(node, weight);
+
+        Integer oldWeight = nodes.get(node);
+        if (oldWeight != null && oldWeight == weight) {
+            return this;
+        }
+        Map<N, Integer> newNodes = new HashMap<>(nodes);
+        newNodes.put(node, weight);
+        return new RendezvousHash<>(this, newNodes);
     }
 
     @Override
@@ -134,17 +260,156 @@ public class RendezvousHash<N> implements StableHash<N> {
         Map<N, Integer> newNodes = new HashMap<>();
         newNodes.putAll(nodes);
         newNodes.remove(node);
-        return new RendezvousHash<>(this.hashFactory, newNodes);
+        return new RendezvousHash<>(this, newNodes);
+    }
+
+    @Override
+    public boolean markDown(N node) {
+        int index = indexOf(node);
+        validator.validateFailoverNode(node, index);
+        return downNodes().set(index);
+    }
+
+    @Override
+    public boolean markUp(N node) {
+        int index = indexOf(node);
+        validator.validateFailoverNode(node, index);
+        return downNodes().clear(index);
+    }
+
+    @Override
+    public boolean isDown(N node) {
+        int index = indexOf(node);
+        return index >= 0 && isMarked(down, index);
+    }
+
+    @Override
+    public Map<N, Integer> getWeights() {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    /**
+     * Computes fingerprint of nodes and weights; node identities are the ones hashed into scores.
+     */
+    @Override
+    public long getFingerprint() {
+        return TopologyFingerprint.of(nodes, identities::seed);
+    }
+
+    /**
+     * Estimates ownership of every node by routing a fixed, deterministic sample of keys.
+     *
+     * @return          Sampled ownership and balance statistics
+     */
+    @Override
+    public HashStats<N> stats() {
+        return SampledStats.sample(this, nodes.keySet(), nodes.size() * BYTES_PER_NODE);
     }
 
     private double toDouble(long hash) {
         return (hash & fto) / ftz;
     }
 
+    private NodeSeeds<N> getSeeds() {
+        NodeSeeds<N> nodeSeeds = seeds;
+        if (nodeSeeds == null) {
+            nodeSeeds = new NodeSeeds<>(nodes, identities);
+            seeds = nodeSeeds;
+        }
+        return nodeSeeds;
+    }
+
+    private int indexOf(N node) {
+        if (node == null || !nodes.containsKey(node)) {
+            return -1;
+        }
+        return getSeeds().indices.get(node);
+    }
+
+    // bitset is allocated on first use, so instances never failed over do not pay for it
+    private synchronized DownNodes downNodes() {
+        if (down == null) {
+            down = new DownNodes(nodes.size());
+        }
+        return down;
+    }
+
+    private static boolean isAnyDown(DownNodes downNodes) {
+        return downNodes != null && !downNodes.isEmpty();
+    }
+
+    private static boolean isMarked(DownNodes downNodes, int index) {
+        return isAnyDown(downNodes) && downNodes.get(index);
+    }
+
+    private static double getWeightedScore(long keyHash, long seed, int weight) {
+        return weight / -Math.log(uniform(keyHash, seed));
+    }
+
+    private static double uniform(long keyHash, long seed) {
+        long mixed = StreamingHash.mix(keyHash ^ seed);
+        return ((mixed >>> 11) + 0.5d) / (double)(1L << 53);
+    }
+
     private double getWeightedScore(String keyString, N node, int weight) {
-        AuxHashKey key = hashFactory.iterator(node.toString() + keyString).next();
+        AuxHashKey key = hashFactory.iterator(identities.identity(node) + keyString).next();
         double score = 1.0 / -Math.log(toDouble(key.getHash()));
         return weight * score;
     }
 
+    /**
+     * Nodes, their weights and seeds (hashes of identity) in structure of arrays form.
+     */
+    private static final class NodeSeeds<N> {
+
+        // slightly below 1 so rounding errors of score and its bound never prune a node which could win
+        private static final double BOUND_MARGIN = 1.0d - 1e-9d;
+
+        private final N[] nodes;
+        private final long[] seeds;
+        private final int[] weights;
+        private final Map<N, Integer> indices;
+
+        @SuppressWarnings("unchecked")
+        private NodeSeeds(Map<N, Integer> weightedNodes, NodeIdentities<N> identities) {
+            nodes = (N[]) new Object[weightedNodes.size()];
+            seeds = new long[nodes.length];
+            weights = new int[nodes.length];
+            indices = new HashMap<>();
+            int i = 0;
+            for (Map.Entry<N, Integer> entry : weightedNodes.entrySet()) {
+                nodes[i] = entry.getKey();
+                seeds[i] = identities.seed(entry.getKey());
+                weights[i] = entry.getValue();
+                indices.put(entry.getKey(), i);
+                i++;
+            }
+        }
+
+        /**
+         * Returns index of node with the highest score (the first one on ties), or -1 if all nodes are down.
+         * As -log(u) &gt;= 1 - u, score w / -log(u) of a node is at most w / (1 - u); logarithm is computed only
+         * for nodes whose bound exceeds the best score so far, which after a few nodes is true for very few of
+         * them. Pruned nodes could not win, so the result is the same as if all scores were computed.
+         */
+        private int champion(long keyHash, DownNodes downNodes) {
+            boolean anyDown = isAnyDown(downNodes);
+            double highestScore = -1;
+            int champion = -1;
+            for (int i = 0; i < seeds.length; i++) {
+                double uniform = uniform(keyHash, seeds[i]);
+                if (highestScore * (1.0d - uniform) * BOUND_MARGIN >= weights[i] || anyDown && downNodes.get(i)) {
+                    continue;
+                }
+                double newScore = weights[i] / -Math.log(uniform);
+                if (newScore > highestScore) {
+                    champion = i;
+                    highestScore = newScore;
+                }
+            }
+            return champion;
+        }
+
+    }
+
 }
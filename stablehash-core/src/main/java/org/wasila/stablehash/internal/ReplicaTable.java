@@ -0,0 +1,105 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import java.util.BitSet;
+
+/**
+ * For every ring point, owners of the first {@code width} distinct nodes found walking clockwise from it
+ * (the point's own owner first). Built backwards in one pass: list of a point is its owner followed by
+ * the list of the next point without that owner, so building costs {@code O(points * width)}.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+final class ReplicaTable {
+
+    private final int width;
+    private final int[] owners;
+
+    private ReplicaTable(int width, int[] owners) {
+        this.width = width;
+        this.owners = owners;
+    }
+
+    /**
+     * Width of the table is limited by number of distinct owners actually on the ring, which may be lower than
+     * number of nodes as node with relatively small weight can get no points at all.
+     *
+     * @param ring          Built ring
+     * @param replicas      Requested number of distinct owners per point
+     */
+    static ReplicaTable build(Ring ring, int replicas) {
+        int size = ring.size();
+        int width = replicas == 0 ? 0 : Math.min(replicas, distinctOwners(ring));
+        int[] owners = new int[size * width];
+        if (width == 0) {
+            return new ReplicaTable(0, owners);
+        }
+
+        // last point needs a real walk as its successor list wraps around
+        int last = (size - 1) * width;
+        int found = 0;
+        for (int i = 0; i < size && found < width; i++) {
+            int owner = ring.ownerAt((size - 1 + i) % size);
+            if (!contains(owners, last, found, owner)) {
+                owners[last + found++] = owner;
+            }
+        }
+
+        for (int pos = size - 2; pos >= 0; pos--) {
+            int base = pos * width;
+            int next = base + width;
+            int owner = ring.ownerAt(pos);
+            owners[base] = owner;
+            for (int r = 0, w = 1; w < width; r++) {
+                if (owners[next + r] != owner) {
+                    owners[base + w++] = owners[next + r];
+                }
+            }
+        }
+        return new ReplicaTable(width, owners);
+    }
+
+    int width() {
+        return width;
+    }
+
+    int ownerAt(int pos, int replica) {
+        return owners[pos * width + replica];
+    }
+
+    long heapBytes() {
+        return 16 + 4L * owners.length;
+    }
+
+    private static int distinctOwners(Ring ring) {
+        BitSet owners = new BitSet();
+        for (int pos = 0; pos < ring.size(); pos++) {
+            owners.set(ring.ownerAt(pos));
+        }
+        return owners.cardinality();
+    }
+
+    private static boolean contains(int[] owners, int from, int count, int owner) {
+        for (int i = from; i < from + count; i++) {
+            if (owners[i] == owner) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
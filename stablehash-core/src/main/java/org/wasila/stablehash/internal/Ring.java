@@ -0,0 +1,45 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+/**
+ * Sorted points of consistent hash ring. Every point has an owner given as a dense index of node.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+interface Ring {
+
+    int size();
+
+    long pointAt(int pos);
+
+    int ownerAt(int pos);
+
+    /**
+     * Returns position of the first point greater or equal to given hash; if there is no such point
+     * ring wraps around and position 0 is returned.
+     *
+     * @param hash  Hash of the key
+     * @return      Position of the successor point
+     */
+    int successor(long hash);
+
+    /**
+     * @return approximate number of heap bytes used by ring
+     */
+    long heapBytes();
+
+}
@@ -0,0 +1,43 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+/**
+ * Helpers of rings with 64-bit points. Points are unsigned values, while rings compare points as signed
+ * longs; flipping the sign bit maps unsigned order onto signed order, so rings store and search points
+ * in this sortable form. Distance between two points is the same in both forms.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+final class Ring64 {
+
+    static final double KEY_SPACE = 18446744073709551616.0d;
+
+    private Ring64() {
+    }
+
+    static long sortable(long unsigned) {
+        return unsigned ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * @return value of unsigned 64-bit integer as double
+     */
+    static double toDouble(long unsigned) {
+        return (double) (unsigned >>> 1) * 2.0d + (unsigned & 1L);
+    }
+
+}
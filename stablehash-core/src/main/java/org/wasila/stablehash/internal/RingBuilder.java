@@ -0,0 +1,196 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.SearchLayout;
+import org.wasila.stablehash.StableHashOptions;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Collects ring points in generation order and builds sorted {@link Ring} out of them. Points may be added
+ * as already sorted runs (eg. all points of one node), which are then only merged.
+ *
+ * When the same point is generated more than once the owner added last wins, which is compatible
+ * with original implementation overwriting ring map entries. Alternatively owners can be ranked, then
+ * the owner of the lowest rank wins regardless of generation order.
+ */
+final class RingBuilder {
+
+    private long[] points;
+    private int[] owners;
+    private int size;
+    // end (exclusive) of every sorted run of points
+    private int[] runEnds;
+    private int runs;
+    private BitSet collidingOwners = new BitSet();
+
+    RingBuilder(int expectedSize) {
+        points = new long[Math.max(expectedSize, 16)];
+        owners = new int[points.length];
+        runEnds = new int[16];
+    }
+
+    void add(long point, int owner) {
+        ensureCapacity(1);
+        points[size] = point;
+        owners[size] = owner;
+        size++;
+        endRun();
+    }
+
+    /**
+     * Adds first {@code count} points of given array, which have to be sorted, all owned by the same owner.
+     */
+    void addRun(long[] sortedPoints, int count, int owner) {
+        if (count == 0) {
+            return;
+        }
+        ensureCapacity(count);
+        System.arraycopy(sortedPoints, 0, points, size, count);
+        Arrays.fill(owners, size, size + count, owner);
+        size += count;
+        endRun();
+    }
+
+    /**
+     * Adds first {@code count} points of given array, which have to be sorted, with their owners.
+     */
+    void addRun(long[] sortedPoints, int[] pointOwners, int count) {
+        if (count == 0) {
+            return;
+        }
+        ensureCapacity(count);
+        System.arraycopy(sortedPoints, 0, points, size, count);
+        System.arraycopy(pointOwners, 0, owners, size, count);
+        size += count;
+        endRun();
+    }
+
+    /**
+     * @return  owners of points which had the same value as another point in the last {@link #build},
+     *          both the owner which kept the point and the ones which lost it
+     */
+    BitSet collidingOwners() {
+        return collidingOwners;
+    }
+
+    private void ensureCapacity(int count) {
+        if (size + count > points.length) {
+            int capacity = Math.max(size + count, points.length * 2);
+            points = Arrays.copyOf(points, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+        }
+    }
+
+    private void endRun() {
+        if (runs == runEnds.length) {
+            runEnds = Arrays.copyOf(runEnds, runs * 2);
+        }
+        runEnds[runs++] = size;
+    }
+
+    Ring build(StableHashOptions options) {
+        return build(options, null);
+    }
+
+    /**
+     * @param options   Options selecting ring layout
+     * @param ownerRank Rank of every owner used to resolve duplicated points or null if the owner added last wins
+     */
+    Ring build(StableHashOptions options, int[] ownerRank) {
+        sort();
+
+        long[] sortedPoints = new long[size];
+        int[] sortedOwners = new int[size];
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique > 0 && sortedPoints[unique - 1] == points[i]) {
+                collidingOwners.set(owners[i]);
+                collidingOwners.set(sortedOwners[unique - 1]);
+                if (ownerRank == null || ownerRank[owners[i]] < ownerRank[sortedOwners[unique - 1]]) {
+                    sortedOwners[unique - 1] = owners[i];
+                }
+            } else {
+                sortedPoints[unique] = points[i];
+                sortedOwners[unique] = owners[i];
+                unique++;
+            }
+        }
+        if (unique < size) {
+            sortedPoints = Arrays.copyOf(sortedPoints, unique);
+            sortedOwners = Arrays.copyOf(sortedOwners, unique);
+        }
+
+        if (options.isOffHeap()) {
+            Ring ring = new OffHeapRing(sortedPoints, sortedOwners);
+            return options.getSearchLayout() == SearchLayout.RADIX_BUCKETS ? BucketedRing.of(ring) : ring;
+        }
+        switch (options.getSearchLayout()) {
+            case EYTZINGER:
+                return new EytzingerRing(sortedPoints, sortedOwners);
+            case BTREE:
+                return new BTreeRing(sortedPoints, sortedOwners);
+            case RADIX_BUCKETS:
+                return BucketedRing.of(new HeapRing(sortedPoints, sortedOwners));
+            default:
+                return new HeapRing(sortedPoints, sortedOwners);
+        }
+    }
+
+    /**
+     * Stable (bottom-up merge) sort of points together with their owners, so equal points keep generation
+     * order. Sorted runs are merged pairwise until one is left; runs of single points make it a plain merge sort.
+     */
+    private void sort() {
+        long[] pointBuffer = new long[size];
+        int[] ownerBuffer = new int[size];
+        int[] ends = Arrays.copyOf(runEnds, runs);
+        int count = runs;
+        while (count > 1) {
+            int merged = 0;
+            int low = 0;
+            for (int r = 0; r < count; r += 2) {
+                int mid = ends[r];
+                int high = r + 1 < count ? ends[r + 1] : mid;
+                int left = low;
+                int right = mid;
+                for (int k = low; k < high; k++) {
+                    if (left < mid && (right >= high || points[left] <= points[right])) {
+                        pointBuffer[k] = points[left];
+                        ownerBuffer[k] = owners[left++];
+                    } else {
+                        pointBuffer[k] = points[right];
+                        ownerBuffer[k] = owners[right++];
+                    }
+                }
+                ends[merged++] = high;
+                low = high;
+            }
+            count = merged;
+            long[] pointSwap = points;
+            points = pointBuffer;
+            pointBuffer = pointSwap;
+            int[] ownerSwap = owners;
+            owners = ownerBuffer;
+            ownerBuffer = ownerSwap;
+        }
+        runEnds[0] = size;
+        runs = size == 0 ? 0 : 1;
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.StableHash;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimates node ownership by routing fixed, deterministic sample of keys. Used by algorithms without
+ * ring points to compute ownership from.
+ */
+final class SampledStats {
+
+    static final int SAMPLE_SIZE = 4096;
+
+    private SampledStats() {
+    }
+
+    static <N> HashStats<N> sample(StableHash<N> hash, Collection<N> nodes, long heapBytes) {
+        Map<N, Double> ownership = new LinkedHashMap<>();
+        for (N node : nodes) {
+            ownership.put(node, 0.0d);
+        }
+        if (!nodes.isEmpty()) {
+            double share = 1.0d / SAMPLE_SIZE;
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                hash.getNode("stats-sample-" + i).ifPresent(node -> ownership.merge(node, share, Double::sum));
+            }
+        }
+        return new HashStats<>(ownership, 0, heapBytes, true);
+    }
+
+}
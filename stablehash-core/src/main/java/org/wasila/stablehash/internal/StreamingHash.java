@@ -0,0 +1,128 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.HashSink;
+
+/**
+ * Streaming 64-bit hash used by {@link org.wasila.stablehash.KeyHasher}. Every fed value is mixed into
+ * the state with multiply-rotate steps; final value goes through MurmurHash3 finalizer so all bits
+ * are usable (top bits select ring point, low bits feed rendezvous scores).
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+public final class StreamingHash implements HashSink {
+
+    private static final long K1 = 0x87C37B91114253D5L;
+    private static final long K2 = 0x4CF5AD432745937FL;
+
+    private long state;
+    private long length;
+
+    StreamingHash(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Starts new hash with given seed, so one instance can hash many keys.
+     */
+    StreamingHash reset(long seed) {
+        state = seed;
+        length = 0;
+        return this;
+    }
+
+    @Override
+    public StreamingHash putLong(long value) {
+        state ^= Long.rotateLeft(value * K1, 31) * K2;
+        state = Long.rotateLeft(state, 27) * 5 + 0x52DCE729;
+        length += 8;
+        return this;
+    }
+
+    @Override
+    public StreamingHash putInt(int value) {
+        state ^= Long.rotateLeft((value & 0xFFFFFFFFL) * K1, 31) * K2;
+        state = Long.rotateLeft(state, 27) * 5 + 0x52DCE729;
+        length += 4;
+        return this;
+    }
+
+    @Override
+    public StreamingHash putString(CharSequence value) {
+        return putString(value, 0, value.length());
+    }
+
+    @Override
+    public StreamingHash putString(CharSequence value, int start, int end) {
+        int i = start;
+        for (; i + 4 <= end; i += 4) {
+            putLong((long) value.charAt(i) | (long) value.charAt(i + 1) << 16
+                    | (long) value.charAt(i + 2) << 32 | (long) value.charAt(i + 3) << 48);
+        }
+        long tail = 0;
+        for (int shift = 0; i < end; i++, shift += 16) {
+            tail |= (long) value.charAt(i) << shift;
+        }
+        putLong(tail);
+        return putInt(end - start);
+    }
+
+    @Override
+    public StreamingHash putBytes(byte[] value, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        for (; i + 8 <= end; i += 8) {
+            long word = 0;
+            for (int b = 0; b < 8; b++) {
+                word |= (value[i + b] & 0xFFL) << (b * 8);
+            }
+            putLong(word);
+        }
+        long tail = 0;
+        for (int shift = 0; i < end; i++, shift += 8) {
+            tail |= (value[i] & 0xFFL) << shift;
+        }
+        putLong(tail);
+        return putInt(length);
+    }
+
+    long finish() {
+        return mix(state ^ length);
+    }
+
+    /**
+     * @param seed  Seed of the hash
+     * @param value Characters to be hashed
+     * @return      64-bit hash of given characters
+     */
+    public static long hash(long seed, CharSequence value) {
+        return new StreamingHash(seed).putString(value).finish();
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Computes fingerprint of nodes and weights returned by {@link org.wasila.stablehash.VersionedTopology}. Every node
+ * contributes a mix of its seed (hash of identity) and weight; contributions are summed, so the result does not
+ * depend on iteration order of nodes.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+final class TopologyFingerprint {
+
+    private static final long WEIGHT_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private TopologyFingerprint() {
+    }
+
+    static <N> long of(Map<N, Integer> weights, ToLongFunction<? super N> seed) {
+        long sum = 0;
+        for (Map.Entry<N, Integer> entry : weights.entrySet()) {
+            sum += StreamingHash.mix(seed.applyAsLong(entry.getKey()) ^ entry.getValue() * WEIGHT_MULTIPLIER);
+        }
+        return StreamingHash.mix(sum ^ weights.size());
+    }
+
+}
@@ -0,0 +1,198 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.HashFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide cache of ring points of virtual nodes, keyed by hash factory, node identity and point width.
+ * Consistent hash instances over overlapping node sets (eg. one ring per tenant) hash every virtual node once
+ * and share the resulting primitive arrays instead of each keeping its own copy.
+ *
+ * Cache is bounded by total number of cached points, {@code 2^20} (8MiB) by default, which can be changed with
+ * {@code stablehash.vnodeCache.maxPoints} system property (0 disables the cache). It is split into segments, each
+ * evicting least recently used nodes once over its share of the bound; instances keep using evicted arrays they
+ * already hold. Hash factories are matched with {@code equals}, so instances share points only if their factories
+ * are equal, eg. the default MD5 based one or the same factory instance.
+ */
+public final class VnodePointCache {
+
+    static final String MAX_POINTS_PROPERTY = "stablehash.vnodeCache.maxPoints";
+
+    private static final int SEGMENTS = 16;
+
+    private static final VnodePointCache SHARED = new VnodePointCache(Long.getLong(MAX_POINTS_PROPERTY, 1L << 20));
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    VnodePointCache(long maxPoints) {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxPoints / SEGMENTS);
+        }
+    }
+
+    public static VnodePointCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns points of at least first {@code vnodes} virtual nodes of given node, computing missing ones
+     * starting from cached points or points already known by the caller, whichever cover more virtual nodes.
+     */
+    VnodePoints points(HashFactory hashFactory, String identity, boolean wide, int vnodes, VnodePoints known) {
+        Key key = new Key(hashFactory, identity, wide);
+        Segment segment = segments[(key.hashCode() ^ key.hashCode() >>> 16) & (SEGMENTS - 1)];
+        VnodePoints cached = segment.get(key);
+        if (cached != null && cached.vnodes() >= vnodes) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        // hashing happens outside of segment lock; concurrent builds of the same node may both compute it
+        VnodePoints base = cached == null || cached.vnodes() < known.vnodes() ? known : cached;
+        VnodePoints points = base.extend(identity, vnodes, hashFactory);
+        return segment.put(key, points);
+    }
+
+    /**
+     * @return  number of cached nodes
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return  number of cached points of all nodes
+     */
+    public long pointCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.points;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return  number of requests served from cache
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return  number of requests which had to hash at least one virtual node
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.points = 0;
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        private final long maxPoints;
+        private final LinkedHashMap<Key, VnodePoints> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long points;
+
+        private Segment(long maxPoints) {
+            this.maxPoints = maxPoints;
+        }
+
+        private synchronized VnodePoints get(Key key) {
+            return entries.get(key);
+        }
+
+        /**
+         * Stores points unless bigger ones were stored concurrently; returns whichever is kept.
+         */
+        private synchronized VnodePoints put(Key key, VnodePoints value) {
+            if (value.size() > maxPoints) {
+                return value;
+            }
+            VnodePoints current = entries.get(key);
+            if (current != null && current.vnodes() >= value.vnodes()) {
+                return current;
+            }
+            entries.put(key, value);
+            points += value.size() - (current == null ? 0 : current.size());
+            Iterator<Map.Entry<Key, VnodePoints>> eldest = entries.entrySet().iterator();
+            while (points > maxPoints) {
+                Map.Entry<Key, VnodePoints> entry = eldest.next();
+                points -= entry.getValue().size();
+                eldest.remove();
+            }
+            return value;
+        }
+
+    }
+
+    private static final class Key {
+
+        private final HashFactory hashFactory;
+        private final String identity;
+        private final boolean wide;
+        private final int hash;
+
+        private Key(HashFactory hashFactory, String identity, boolean wide) {
+            this.hashFactory = hashFactory;
+            this.identity = identity;
+            this.wide = wide;
+            this.hash = 31 * (31 * hashFactory.hashCode() + identity.hashCode()) + (wide ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return wide == other.wide && identity.equals(other.identity) && hashFactory.equals(other.hashFactory);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.internal;
+
+import org.wasila.stablehash.AuxHashKey;
+import org.wasila.stablehash.HashFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Immutable ring points of consecutive virtual nodes of one node; {@code ends[j]} is number of points
+ * of virtual nodes 0 to j. Points of virtual node {@code j} are the first three auxiliary hashes of
+ * {@code identity + "-" + j}, or the first two 64-bit auxiliary hashes (stored in {@link Ring64 sortable}
+ * form) if {@code wide} is set.
+ *
+ * This class is used only internally meaning it is not part of the API.
+ */
+final class VnodePoints {
+
+    private static final VnodePoints EMPTY = new VnodePoints(new long[0], new int[0], false);
+    private static final VnodePoints EMPTY_WIDE = new VnodePoints(new long[0], new int[0], true);
+
+    // bizzarly, original implementation took only 3 of 4 possible hash keys (md5 has 16 bytes)
+    static final int POINTS_PER_VNODE = 3;
+
+    // 64-bit points take 8 bytes of 16 byte md5 digest each
+    static final int WIDE_POINTS_PER_VNODE = 2;
+
+    private final long[] values;
+    private final int[] ends;
+    private final boolean wide;
+    // sorted copy of points of first few virtual nodes; instances of equal weights mostly ask for the same number
+    private volatile SortedPrefix sorted;
+
+    private VnodePoints(long[] values, int[] ends, boolean wide) {
+        this.values = values;
+        this.ends = ends;
+        this.wide = wide;
+    }
+
+    static VnodePoints empty(boolean wide) {
+        return wide ? EMPTY_WIDE : EMPTY;
+    }
+
+    int vnodes() {
+        return ends.length;
+    }
+
+    /**
+     * @return  number of points of first {@code vnodes} virtual nodes
+     */
+    int end(int vnodes) {
+        return vnodes == 0 ? 0 : ends[vnodes - 1];
+    }
+
+    long value(int i) {
+        return values[i];
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    /**
+     * @return  array starting with sorted points of first {@code vnodes} virtual nodes ({@link #end(int)} of them)
+     */
+    long[] sorted(int vnodes) {
+        SortedPrefix prefix = sorted;
+        if (prefix == null || prefix.vnodes != vnodes) {
+            long[] values = Arrays.copyOf(this.values, end(vnodes));
+            Arrays.sort(values);
+            prefix = new SortedPrefix(vnodes, values);
+            sorted = prefix;
+        }
+        return prefix.values;
+    }
+
+    VnodePoints extend(String identity, int vnodes, HashFactory hashFactory) {
+        int perVnode = wide ? WIDE_POINTS_PER_VNODE : POINTS_PER_VNODE;
+        long[] newValues = Arrays.copyOf(values, vnodes * perVnode);
+        int[] newEnds = Arrays.copyOf(ends, vnodes);
+        int size = end(ends.length);
+        for (int j = ends.length; j < vnodes; j++) {
+            String vnode = identity + "-" + j;
+            Iterator<AuxHashKey> it = wide ? hashFactory.iterator64(vnode) : hashFactory.iterator(vnode);
+            for (int i = 0; it.hasNext() && i < perVnode; i++) {
+                long hash = it.next().getHash();
+                newValues[size++] = wide ? Ring64.sortable(hash) : hash;
+            }
+            newEnds[j] = size;
+        }
+        return new VnodePoints(size == newValues.length ? newValues : Arrays.copyOf(newValues, size), newEnds, wide);
+    }
+
+    private static final class SortedPrefix {
+
+        private final int vnodes;
+        private final long[] values;
+
+        private SortedPrefix(int vnodes, long[] values) {
+            this.vnodes = vnodes;
+            this.values = values;
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.metrics;
+
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashDecorator;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The {@code InstrumentedStableHash} class decorates any {@link StableHash} with lookup metrics:
+ * per node lookup counts, latency histogram and counts of empty and failed replica results.
+ *
+ * Failover and topology are the ones of the delegate (see {@link StableHashDecorator}); lookups by key hash are
+ * not supported, as they would not be counted.
+ *
+ * Instrumentation is optional: when system property {@code stablehash.metrics.disabled} is set to {@code true}
+ * {@link #wrap(StableHash, LookupMetrics)} returns the delegate itself so there is no overhead at all.
+ *
+ * @param <N> Node type
+ */
+public final class InstrumentedStableHash<N> implements StableHashDecorator<N> {
+
+    /**
+     * True unless instrumentation was disabled with {@code -Dstablehash.metrics.disabled=true}.
+     */
+    public static final boolean ENABLED = !Boolean.getBoolean("stablehash.metrics.disabled");
+
+    private final StableHash<N> delegate;
+    private final LookupMetrics<N> metrics;
+    private final NodeCounters<N> nodeCounters;
+
+    private InstrumentedStableHash(StableHash<N> delegate, LookupMetrics<N> metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.nodeCounters = new NodeCounters<>(nodesOf(delegate), metrics);
+    }
+
+    /**
+     * Returns instrumented view of given hash or hash itself if instrumentation is disabled.
+     *
+     * @param hash      Hash to be instrumented
+     * @param metrics   Metrics collecting lookups
+     * @return          Instrumented {@code StableHash} instance
+     * @throws NullPointerException     if {@code hash} or {@code metrics} is null
+     */
+    public static <N> StableHash<N> wrap(StableHash<N> hash, LookupMetrics<N> metrics) {
+        if (hash == null || metrics == null) {
+            throw new NullPointerException("hash and metrics must not be null");
+        }
+        if (!ENABLED) {
+            return hash;
+        }
+        return new InstrumentedStableHash<>(hash, metrics);
+    }
+
+    /**
+     * @return metrics shared by this instance and all instances derived from it
+     */
+    public LookupMetrics<N> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return wrapped instance
+     */
+    @Override
+    public StableHash<N> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Optional<N> getNode(String key) {
+        long start = System.nanoTime();
+        Optional<N> node = delegate.getNode(key);
+        metrics.recordLookup(System.nanoTime() - start);
+        if (node.isPresent()) {
+            nodeCounters.record(node.get());
+        } else {
+            metrics.recordEmptyResult();
+        }
+        return node;
+    }
+
+    @Override
+    public Set<N> getNodes(String key, int size) {
+        long start = System.nanoTime();
+        Set<N> nodes = delegate.getNodes(key, size);
+        metrics.recordLookup(System.nanoTime() - start);
+        // built-in implementations return empty set when they cannot return all replicas; custom ones may not
+        if (nodes.size() < size) {
+            metrics.recordFailedReplica();
+        }
+        for (N node : nodes) {
+            nodeCounters.record(node);
+        }
+        return nodes;
+    }
+
+    @Override
+    public InstrumentedStableHash<N> addNode(N node) {
+        return derive(delegate.addNode(node));
+    }
+
+    @Override
+    public InstrumentedStableHash<N> addWeightedNode(N node, int weight) {
+        return derive(delegate.addWeightedNode(node, weight));
+    }
+
+    @Override
+    public InstrumentedStableHash<N> updateWeightedNode(N node, int weight) {
+        return derive(delegate.updateWeightedNode(node, weight));
+    }
+
+    @Override
+    public InstrumentedStableHash<N> removeNode(N node) {
+        return derive(delegate.removeNode(node));
+    }
+
+    @Override
+    public HashStats<N> stats() {
+        return delegate.stats();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static <N> Collection<N> nodesOf(StableHash<N> hash) {
+        try {
+            return StableHashStaticFactory.topology(hash).getWeights().keySet();
+        } catch (IllegalArgumentException ex) {
+            // custom hash without topology; its nodes are counted by metrics directly
+            return Collections.emptySet();
+        }
+    }
+
+    private InstrumentedStableHash<N> derive(StableHash<N> newDelegate) {
+        if (newDelegate == delegate) {
+            return this;
+        }
+        return new InstrumentedStableHash<>(newDelegate, metrics);
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LatencyHistogram} class is a lock-free histogram of latencies with log-linear buckets
+ * in the spirit of HdrHistogram. Every power of two range is split into 8 linear sub-buckets
+ * so relative error of reported values is bounded by 12.5%.
+ *
+ * Every bucket is a {@link LongAdder}, like the per node counters of {@link LookupMetrics}, so concurrent lookups
+ * hitting the same few buckets increment separate cells instead of contending on one cache line. Recording does
+ * not allocate once cells of contended buckets are created.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records single value.
+     *
+     * @param value latency in nanoseconds; negative values are counted as 0
+     */
+    public void record(long value) {
+        counts[bucketOf(Math.max(0L, value))].increment();
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently with reset may or may not survive it.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i].reset();
+        }
+    }
+
+    /**
+     * @return point in time copy of the histogram
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts[i].sum();
+        }
+        return new Snapshot(copy);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long mantissa = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + mantissa) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+    /**
+     * Immutable copy of histogram counts.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long totalCount;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.totalCount = total;
+        }
+
+        /**
+         * @return number of recorded values
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns value at given percentile. Reported value is the upper bound of bucket holding it.
+         *
+         * @param percentile percentile in range [0, 100]
+         * @return value at given percentile or 0 if histogram is empty
+         * @throws IllegalArgumentException if percentile is outside of expected range
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0.0d || percentile > 100.0d) {
+                throw new IllegalArgumentException("percentile outside of expected range [0,100]: " + percentile);
+            }
+            if (totalCount == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0d * totalCount));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(counts.length - 1);
+        }
+
+        /**
+         * @return upper bound of the highest non empty bucket or 0 if histogram is empty
+         */
+        public long getMaxValue() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return upperBoundOf(i);
+                }
+            }
+            return 0L;
+        }
+
+    }
+
+}
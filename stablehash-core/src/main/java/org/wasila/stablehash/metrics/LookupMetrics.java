@@ -0,0 +1,165 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LookupMetrics} class collects lookup statistics of {@link InstrumentedStableHash}.
+ *
+ * All counters are {@link LongAdder} based so concurrent lookups do not contend on a single cache line.
+ * Per node counters are created for every node of an instrumented topology; nodes never looked up (or not
+ * since {@link #reset()}) are left out of counts.
+ * One instance is shared by all {@code StableHash} instances derived from the same instrumented hash
+ * (eg. by {@code addNode}) so metrics survive topology changes.
+ *
+ * @param <N> Node type
+ */
+public final class LookupMetrics<N> implements LookupMetricsMXBean {
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder emptyResults = new LongAdder();
+    private final LongAdder failedReplicas = new LongAdder();
+    private final ConcurrentHashMap<N, LongAdder> nodeLookups = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    void recordLookup(long latencyNanos) {
+        lookups.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordNode(N node) {
+        counter(node).increment();
+    }
+
+    LongAdder counter(N node) {
+        LongAdder counter = nodeLookups.get(node);
+        if (counter == null) {
+            counter = nodeLookups.computeIfAbsent(node, key -> new LongAdder());
+        }
+        return counter;
+    }
+
+    void recordEmptyResult() {
+        emptyResults.increment();
+    }
+
+    void recordFailedReplica() {
+        failedReplicas.increment();
+    }
+
+    /**
+     * @return point in time copy of all metrics
+     */
+    public LookupMetricsSnapshot<N> snapshot() {
+        Map<N, Long> counts = new LinkedHashMap<>();
+        nodeLookups.forEach((node, counter) -> {
+            long count = counter.sum();
+            if (count > 0) {
+                counts.put(node, count);
+            }
+        });
+        return new LookupMetricsSnapshot<>(lookups.sum(), emptyResults.sum(), failedReplicas.sum(),
+                counts, latency.snapshot());
+    }
+
+    /**
+     * Registers these metrics in platform MBean server.
+     *
+     * @param name   Name of the MBean, eg. {@code org.wasila.stablehash:type=LookupMetrics,name=sessions}
+     * @throws JMException if registration fails
+     */
+    public void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(name));
+    }
+
+    /**
+     * Removes these metrics from platform MBean server.
+     *
+     * @param name   Name given at registration
+     * @throws JMException if unregistration fails
+     */
+    public void unregister(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(new ObjectName(name));
+    }
+
+    @Override
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    @Override
+    public long getEmptyResultCount() {
+        return emptyResults.sum();
+    }
+
+    @Override
+    public long getFailedReplicaCount() {
+        return failedReplicas.sum();
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return latency.snapshot().getValueAtPercentile(50.0d);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return latency.snapshot().getValueAtPercentile(99.0d);
+    }
+
+    @Override
+    public long getLatencyP999Nanos() {
+        return latency.snapshot().getValueAtPercentile(99.9d);
+    }
+
+    @Override
+    public long getLatencyMaxNanos() {
+        return latency.snapshot().getMaxValue();
+    }
+
+    @Override
+    public Map<String, Long> getNodeLookupCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        nodeLookups.forEach((node, counter) -> {
+            long count = counter.sum();
+            if (count > 0) {
+                counts.merge(node.toString(), count, Long::sum);
+            }
+        });
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        lookups.reset();
+        emptyResults.reset();
+        failedReplicas.reset();
+        // counters are referenced by instrumented instances, so they are reset rather than dropped
+        nodeLookups.values().forEach(LongAdder::reset);
+        latency.reset();
+    }
+
+}
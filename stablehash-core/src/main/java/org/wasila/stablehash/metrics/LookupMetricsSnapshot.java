@@ -0,0 +1,97 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable, point in time copy of {@link LookupMetrics}.
+ *
+ * @param <N> Node type
+ */
+public final class LookupMetricsSnapshot<N> {
+
+    private final long lookupCount;
+    private final long emptyResultCount;
+    private final long failedReplicaCount;
+    private final Map<N, Long> nodeLookupCounts;
+    private final LatencyHistogram.Snapshot latency;
+
+    LookupMetricsSnapshot(long lookupCount, long emptyResultCount, long failedReplicaCount,
+                          Map<N, Long> nodeLookupCounts, LatencyHistogram.Snapshot latency) {
+        this.lookupCount = lookupCount;
+        this.emptyResultCount = emptyResultCount;
+        this.failedReplicaCount = failedReplicaCount;
+        this.nodeLookupCounts = Collections.unmodifiableMap(new LinkedHashMap<>(nodeLookupCounts));
+        this.latency = latency;
+    }
+
+    /**
+     * @return number of {@code getNode} and {@code getNodes} calls
+     */
+    public long getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * @return number of {@code getNode} calls which returned no node (empty ring)
+     */
+    public long getEmptyResultCount() {
+        return emptyResultCount;
+    }
+
+    /**
+     * @return number of {@code getNodes} calls which could not find enough distinct nodes and returned empty set
+     */
+    public long getFailedReplicaCount() {
+        return failedReplicaCount;
+    }
+
+    /**
+     * @return number of times each node was returned by a lookup
+     */
+    public Map<N, Long> getNodeLookupCounts() {
+        return nodeLookupCounts;
+    }
+
+    /**
+     * @return number of times given node was returned by a lookup
+     */
+    public long getNodeLookupCount(N node) {
+        return nodeLookupCounts.getOrDefault(node, 0L);
+    }
+
+    /**
+     * @return lookup latency histogram in nanoseconds
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "LookupMetricsSnapshot{" +
+                "lookupCount=" + lookupCount +
+                ", emptyResultCount=" + emptyResultCount +
+                ", failedReplicaCount=" + failedReplicaCount +
+                ", nodeLookupCounts=" + nodeLookupCounts +
+                ", latencyP99=" + latency.getValueAtPercentile(99.0d) +
+                '}';
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lookup counters of nodes of one topology in an open addressing table built once per topology, so counting
+ * a lookup probes plain arrays instead of a concurrent map. Counters themselves belong to {@link LookupMetrics}
+ * and are shared by all topologies, so counts survive topology changes.
+ *
+ * @param <N> Node type
+ */
+final class NodeCounters<N> {
+
+    private final LookupMetrics<N> metrics;
+    private final Object[] nodes;
+    private final LongAdder[] counters;
+    private final int mask;
+
+    NodeCounters(Collection<N> topologyNodes, LookupMetrics<N> metrics) {
+        this.metrics = metrics;
+        // at most half full, so probes stay short
+        int capacity = Integer.highestOneBit(Math.max(2, topologyNodes.size() * 2) - 1) << 1;
+        nodes = new Object[capacity];
+        counters = new LongAdder[capacity];
+        mask = capacity - 1;
+        for (N node : topologyNodes) {
+            int slot = slot(node);
+            while (nodes[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            nodes[slot] = node;
+            counters[slot] = metrics.counter(node);
+        }
+    }
+
+    void record(N node) {
+        int slot = slot(node);
+        Object candidate;
+        while ((candidate = nodes[slot]) != null) {
+            if (candidate == node || candidate.equals(node)) {
+                counters[slot].increment();
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // node not known to the topology, eg. returned by a custom hash without topology versioning
+        metrics.recordNode(node);
+    }
+
+    private int slot(Object node) {
+        int hash = node.hashCode();
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+}
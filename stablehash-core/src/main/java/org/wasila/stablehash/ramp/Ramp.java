@@ -0,0 +1,152 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.ramp;
+
+import org.wasila.stablehash.StableHash;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Progress of ramping weight of a single node, as started by {@link WeightRamp#ramp(Object, int, RampOptions)}.
+ * Weight of step {@code k} (of {@code n}) is {@code start + (target - start) * k / n}, rounded and at least 1.
+ *
+ * @param <N> Node type
+ */
+public final class Ramp<N> {
+
+    private final N node;
+    private final int startWeight;
+    private final int targetWeight;
+    private final RampOptions options;
+    private final CompletableFuture<StableHash<N>> completion = new CompletableFuture<>();
+
+    private volatile int completedSteps;
+    private volatile ScheduledFuture<?> nextStep;
+
+    Ramp(N node, int startWeight, int targetWeight, RampOptions options) {
+        this.node = node;
+        this.startWeight = startWeight;
+        this.targetWeight = targetWeight;
+        this.options = options;
+    }
+
+    public N getNode() {
+        return node;
+    }
+
+    /**
+     * @return  weight of node when ramp started; 0 if node was not a member
+     */
+    public int getStartWeight() {
+        return startWeight;
+    }
+
+    public int getTargetWeight() {
+        return targetWeight;
+    }
+
+    public RampOptions getOptions() {
+        return options;
+    }
+
+    public int getCompletedSteps() {
+        return completedSteps;
+    }
+
+    /**
+     * @return  fraction of steps already published, in range [0, 1]
+     */
+    public double getProgress() {
+        return completedSteps / (double) options.getSteps();
+    }
+
+    /**
+     * @return  weight published by the last completed step, or start weight if no step was taken yet
+     */
+    public int getCurrentWeight() {
+        return completedSteps == 0 ? startWeight : weightAt(completedSteps);
+    }
+
+    /**
+     * @return  true if ramp reached target weight or was cancelled
+     */
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Returns future completed with the instance published by the last step. It is cancelled if the ramp is
+     * cancelled or superseded by a newer ramp of the same node and completed exceptionally if a step fails, eg.
+     * when an instance published by {@link WeightRamp#update(java.util.function.UnaryOperator)} does not support
+     * topology versioning.
+     *
+     * @return  Completion of the ramp
+     */
+    public CompletableFuture<StableHash<N>> completion() {
+        return completion;
+    }
+
+    /**
+     * Stops the ramp; node keeps the weight of the last completed step.
+     *
+     * @return  true if ramp was still in progress
+     */
+    public boolean cancel() {
+        boolean cancelled = completion.cancel(false);
+        ScheduledFuture<?> step = nextStep;
+        if (step != null) {
+            step.cancel(false);
+        }
+        return cancelled;
+    }
+
+    int weightAt(int step) {
+        long weight = startWeight + Math.round((targetWeight - startWeight) * (double) step / options.getSteps());
+        return (int) Math.max(1, weight);
+    }
+
+    void stepCompleted(int step) {
+        completedSteps = step;
+    }
+
+    void scheduled(ScheduledFuture<?> step) {
+        nextStep = step;
+        if (completion.isDone()) {
+            step.cancel(false);
+        }
+    }
+
+    void complete(StableHash<N> hash) {
+        completion.complete(hash);
+    }
+
+    void fail(Throwable cause) {
+        completion.completeExceptionally(cause);
+    }
+
+    @Override
+    public String toString() {
+        return "Ramp{" +
+                "node=" + node +
+                ", startWeight=" + startWeight +
+                ", targetWeight=" + targetWeight +
+                ", completedSteps=" + completedSteps +
+                ", steps=" + options.getSteps() +
+                '}';
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.ramp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule of a weight ramp. Instances are immutable; every {@code with...} method returns a modified copy.
+ */
+public final class RampOptions {
+
+    private static final RampOptions DEFAULTS = new RampOptions(10, TimeUnit.MINUTES.toNanos(10));
+
+    private final int steps;
+    private final long durationNanos;
+
+    private RampOptions(int steps, long durationNanos) {
+        this.steps = steps;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return 10 steps spread evenly over 10 minutes
+     */
+    public static RampOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param steps Number of weight changes from the initial to the target weight; the last one reaches the target
+     * @return      Modified options
+     */
+    public RampOptions withSteps(int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("Invalid number of steps: " + steps + "; should be > 0.");
+        }
+        return new RampOptions(steps, durationNanos);
+    }
+
+    /**
+     * @param duration  Time between the first step (taken when ramp starts) and the last one; 0 takes all steps at once
+     * @param unit      Unit of duration
+     * @return          Modified options
+     */
+    public RampOptions withDuration(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Invalid duration: " + duration + "; should be >= 0.");
+        }
+        return new RampOptions(steps, unit.toNanos(duration));
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return delay between consecutive steps in nanoseconds
+     */
+    public long getStepIntervalNanos() {
+        return steps == 1 ? 0 : durationNanos / (steps - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RampOptions{" +
+                "steps=" + steps +
+                ", durationNanos=" + durationNanos +
+                '}';
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.ramp;
+
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * The {@code WeightRamp} class raises (or lowers) weight of a node gradually instead of at once, so that a node
+ * added to a cache cluster takes its share of keys in several smaller portions and its cache warms up between them.
+ *
+ * Every step derives new instance from the current one with {@code addWeightedNode} or {@code updateWeightedNode}
+ * and publishes it atomically; readers simply call {@link #get()} for every lookup (or batch of lookups). Other
+ * topology changes must go through {@link #update(UnaryOperator)}, so they are not lost between steps.
+ *
+ * Integer weights limit resolution of a ramp: node of weight 1 next to other nodes of weight 1 has nothing to ramp
+ * through, so use weights of, say, 100 per unit of capacity. With consistent hashing a weight change also changes
+ * number of virtual nodes of other nodes slightly, so a small fraction of keys moves between old nodes at every step.
+ * With rendezvous hashing only lookups by key hash (see {@code StableHashStaticFactory.keyed}) get shares proportional
+ * to weights; scores of plain string lookups favour the heaviest nodes, so a ramped node gets few keys until it is
+ * close to their weight.
+ *
+ * @param <N> Node type
+ */
+public final class WeightRamp<N> implements AutoCloseable {
+
+    private final AtomicReference<StableHash<N>> current;
+    private final ScheduledExecutorService executor;
+    private final boolean ownExecutor;
+    private final Map<N, Ramp<N>> ramps = new ConcurrentHashMap<>();
+
+    /**
+     * Creates ramp scheduler running steps on its own daemon thread.
+     *
+     * @param initial   Instance published initially; it has to support topology versioning to know current weights
+     * @throws IllegalArgumentException if {@code initial} does not support topology versioning
+     */
+    public WeightRamp(StableHash<N> initial) {
+        this(initial, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stablehash-weight-ramp");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Creates ramp scheduler running steps on given executor; executor is not shut down by {@link #close()}.
+     *
+     * @param initial   Instance published initially; it has to support topology versioning to know current weights
+     * @param executor  Executor of steps
+     * @throws IllegalArgumentException if {@code initial} does not support topology versioning
+     */
+    public WeightRamp(StableHash<N> initial, ScheduledExecutorService executor) {
+        this(initial, executor, false);
+    }
+
+    private WeightRamp(StableHash<N> initial, ScheduledExecutorService executor, boolean ownExecutor) {
+        if (initial == null || executor == null) {
+            throw new NullPointerException("initial hash and executor must not be null");
+        }
+        StableHashStaticFactory.topology(initial);
+        this.current = new AtomicReference<>(initial);
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * @return  the most recently published instance
+     */
+    public StableHash<N> get() {
+        return current.get();
+    }
+
+    /**
+     * Atomically applies topology change to the current instance and publishes the result.
+     *
+     * @param change    Function deriving new instance, eg. {@code hash -> hash.removeNode(node)}; may be called
+     *                  more than once if a step is published concurrently
+     * @return          Published instance
+     */
+    public StableHash<N> update(UnaryOperator<StableHash<N>> change) {
+        return current.updateAndGet(change);
+    }
+
+    /**
+     * Starts ramping weight of given node from its current weight (or from nothing if it is not a member yet) to
+     * target weight. The first step is taken immediately. Ramp of the same node which is still in progress is
+     * cancelled.
+     *
+     * @param node          Node to be ramped
+     * @param targetWeight  Weight reached by the last step
+     * @param options       Number of steps and duration of the ramp
+     * @return              Progress of the ramp
+     * @throws NullPointerException     if {@code node} or {@code options} is null
+     * @throws IllegalArgumentException if target weight is 0 or less
+     */
+    public Ramp<N> ramp(N node, int targetWeight, RampOptions options) {
+        if (node == null || options == null) {
+            throw new NullPointerException("node and options must not be null");
+        }
+        if (targetWeight <= 0) {
+            throw new IllegalArgumentException("Invalid weight value: " + targetWeight + "; should be > 0.");
+        }
+        Integer startWeight = StableHashStaticFactory.topology(current.get()).getWeights().get(node);
+        Ramp<N> ramp = new Ramp<>(node, startWeight == null ? 0 : startWeight, targetWeight, options);
+        Ramp<N> previous = ramps.put(node, ramp);
+        if (previous != null) {
+            previous.cancel();
+        }
+        ramp.scheduled(executor.schedule(() -> step(ramp, 1), 0, TimeUnit.NANOSECONDS));
+        return ramp;
+    }
+
+    /**
+     * @param node  Any node
+     * @return      The latest ramp of given node, finished or not
+     */
+    public Optional<Ramp<N>> getRamp(N node) {
+        return Optional.ofNullable(ramps.get(node));
+    }
+
+    /**
+     * Cancels all ramps in progress and shuts down own thread, if any.
+     */
+    @Override
+    public void close() {
+        ramps.values().forEach(Ramp::cancel);
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void step(Ramp<N> ramp, int step) {
+        try {
+            doStep(ramp, step);
+        } catch (RuntimeException e) {
+            // nobody waits for result of scheduled step; failure would be swallowed by executor
+            ramp.fail(e);
+        }
+    }
+
+    private void doStep(Ramp<N> ramp, int step) {
+        if (ramp.isDone()) {
+            return;
+        }
+        N node = ramp.getNode();
+        int weight = ramp.weightAt(step);
+        // whether the run of the update function whose result was published applied the step
+        boolean[] applied = new boolean[1];
+        StableHash<N> published = current.updateAndGet(hash -> {
+            applied[0] = false;
+            if (ramp.isDone()) {
+                // superseded or cancelled since the step started; function is re-run if newer ramp published first
+                return hash;
+            }
+            boolean member = StableHashStaticFactory.topology(hash).getWeights().containsKey(node);
+            if (!member && step > 1) {
+                // removed by someone else in the meantime; do not bring it back
+                return hash;
+            }
+            applied[0] = true;
+            return member ? hash.updateWeightedNode(node, weight) : hash.addWeightedNode(node, weight);
+        });
+        if (applied[0]) {
+            // weight of the step is published even if the ramp was cancelled meanwhile, so progress reports it
+            ramp.stepCompleted(step);
+        }
+        if (ramp.isDone()) {
+            return;
+        }
+        if (!applied[0]) {
+            ramp.cancel();
+            return;
+        }
+        if (step == ramp.getOptions().getSteps()) {
+            ramp.complete(published);
+        } else {
+            ramp.scheduled(executor.schedule(() -> step(ramp, step + 1),
+                    ramp.getOptions().getStepIntervalNanos(), TimeUnit.NANOSECONDS));
+        }
+    }
+
+}
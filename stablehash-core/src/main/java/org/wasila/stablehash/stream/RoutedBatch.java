@@ -0,0 +1,86 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.stream;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Records of one micro-batch grouped by node they are routed to. Nodes follow order of their first record and
+ * records of every node keep order of the batch.
+ *
+ * @param <N> Node type
+ * @param <T> Record type
+ */
+public final class RoutedBatch<N, T> {
+
+    private final Map<N, List<T>> byNode;
+    private final List<T> unrouted;
+    private final int size;
+
+    RoutedBatch(Map<N, List<T>> byNode, List<T> unrouted, int size) {
+        this.byNode = Collections.unmodifiableMap(byNode);
+        this.unrouted = Collections.unmodifiableList(unrouted);
+        this.size = size;
+    }
+
+    /**
+     * @return records of the batch grouped by node
+     */
+    public Map<N, List<T>> getByNode() {
+        return byNode;
+    }
+
+    /**
+     * @return records of given node, empty if none of records is routed to it
+     */
+    public List<T> getRecords(N node) {
+        return byNode.getOrDefault(node, Collections.emptyList());
+    }
+
+    /**
+     * @return records for which no node was available, eg. all nodes were down
+     */
+    public List<T> getUnrouted() {
+        return unrouted;
+    }
+
+    /**
+     * @return number of all records in the batch, including unrouted ones
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passes records of every node, in order of nodes, to given consumer.
+     */
+    public void forEach(BiConsumer<? super N, ? super List<T>> consumer) {
+        byNode.forEach(consumer);
+    }
+
+    @Override
+    public String toString() {
+        return "RoutedBatch{" +
+                "nodes=" + byNode.size() +
+                ", size=" + size +
+                ", unrouted=" + unrouted.size() +
+                '}';
+    }
+
+}
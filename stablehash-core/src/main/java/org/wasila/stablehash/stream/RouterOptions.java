@@ -0,0 +1,84 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.stream;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of micro-batches built by {@link ShardRouter}. Instances are immutable; every {@code with...} method
+ * returns a modified copy.
+ */
+public final class RouterOptions {
+
+    private static final RouterOptions DEFAULTS = new RouterOptions(1024, TimeUnit.MILLISECONDS.toNanos(10));
+
+    private final int batchSize;
+    private final long maxDelayNanos;
+
+    private RouterOptions(int batchSize, long maxDelayNanos) {
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    /**
+     * @return batches of up to 1024 records collected for at most 10 milliseconds
+     */
+    public static RouterOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param batchSize Maximum number of records in a batch
+     * @return          Modified options
+     */
+    public RouterOptions withBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize + "; should be > 0.");
+        }
+        return new RouterOptions(batchSize, maxDelayNanos);
+    }
+
+    /**
+     * @param maxDelay  Time after taking the first record of a batch when batch is closed even if it is not full;
+     *                  0 closes batch after every record; spliterator and stream sources are checked only as their
+     *                  records arrive, see {@link ShardRouter}
+     * @param unit      Unit of delay
+     * @return          Modified options
+     */
+    public RouterOptions withMaxDelay(long maxDelay, TimeUnit unit) {
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("Invalid delay: " + maxDelay + "; should be >= 0.");
+        }
+        return new RouterOptions(batchSize, unit.toNanos(maxDelay));
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getMaxDelayNanos() {
+        return maxDelayNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "RouterOptions{" +
+                "batchSize=" + batchSize +
+                ", maxDelayNanos=" + maxDelayNanos +
+                '}';
+    }
+
+}
@@ -0,0 +1,324 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.stream;
+
+import org.wasila.stablehash.KeyedStableHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The {@code ShardRouter} class is a pipeline stage turning a stream of records into a stream of micro-batches
+ * grouped by node. Records are taken from the source until batch is full or {@link RouterOptions#getMaxDelayNanos()
+ * maximum delay} passes since its first record (overrunning it by a few percent at most, as clock is read less often
+ * while records arrive quickly); keys of the whole batch are then routed with one
+ * {@link KeyedStableHash#routeAll batched lookup}.
+ *
+ * Batches are pulled: the next one is read from the source only when downstream asks for it, so a slow consumer
+ * slows down reading of the source and at most one batch is held in memory. Spliterator and stream sources cannot
+ * be read with a timeout, so delay is checked as their records arrive and a source blocking for a long time before
+ * its next record delays the batch accordingly; {@link #batches(BlockingQueue, Object) queue sources} are polled
+ * with the remaining delay, so their batches are closed on time even if no further record arrives.
+ *
+ * Router itself is thread safe; every {@link Spliterator} or {@link Stream} returned by it is sequential.
+ *
+ * @param <T> Record type
+ * @param <K> Key type
+ * @param <N> Node type
+ */
+public final class ShardRouter<T, K, N> {
+
+    // maximum number of records taken between two readings of the clock
+    private static final int MAX_CLOCK_STRIDE = 64;
+
+    private final Supplier<? extends KeyedStableHash<K, N>> hash;
+    private final Function<? super T, ? extends K> keyOf;
+    private final RouterOptions options;
+
+    /**
+     * @param hash      Hash routing keys of records
+     * @param keyOf     Returns key of record
+     * @param options   Limits of batches
+     */
+    public ShardRouter(KeyedStableHash<K, N> hash, Function<? super T, ? extends K> keyOf, RouterOptions options) {
+        this(constant(hash), keyOf, options);
+    }
+
+    /**
+     * Creates router which takes current hash for every batch, eg. {@code () -> keyed(ramp.get(), hasher)}.
+     *
+     * @param hash      Supplier of hash routing keys of records
+     * @param keyOf     Returns key of record
+     * @param options   Limits of batches
+     */
+    public ShardRouter(Supplier<? extends KeyedStableHash<K, N>> hash, Function<? super T, ? extends K> keyOf, RouterOptions options) {
+        if (hash == null || keyOf == null || options == null) {
+            throw new NullPointerException("hash, keyOf and options must not be null");
+        }
+        this.hash = hash;
+        this.keyOf = keyOf;
+        this.options = options;
+    }
+
+    /**
+     * Routes given records as one batch regardless of batch size.
+     *
+     * @param records   Records to be routed
+     * @return          Records grouped by node
+     * @throws NullPointerException if key of any record is null
+     */
+    public RoutedBatch<N, T> route(List<? extends T> records) {
+        List<K> keys = new ArrayList<>(records.size());
+        for (T record : records) {
+            keys.add(keyOf.apply(record));
+        }
+        return group(records, keys, newNodes(records.size()));
+    }
+
+    /**
+     * @param source    Records to be routed
+     * @return          Sequential, ordered spliterator of batches of records taken from given one
+     */
+    public Spliterator<RoutedBatch<N, T>> batches(Spliterator<? extends T> source) {
+        if (source == null) {
+            throw new NullPointerException("source must not be null");
+        }
+        return new BatchSpliterator(source);
+    }
+
+    /**
+     * @param source    Records to be routed
+     * @return          Sequential stream of batches of records taken from given stream; closing it closes the source
+     */
+    public Stream<RoutedBatch<N, T>> batches(Stream<? extends T> source) {
+        return StreamSupport.stream(batches(source.spliterator()), false).onClose(source::close);
+    }
+
+    /**
+     * Reads records from given queue, waiting for each record at most until maximum delay of the batch passes,
+     * so batches are closed on time however slowly records arrive. Stream ends when {@code end} (compared by
+     * identity) is taken from the queue, or when the reading thread is interrupted; the interrupt status is then
+     * set again.
+     *
+     * @param source    Queue of records to be routed; no record is taken before downstream asks for a batch
+     * @param end       Marker put to the queue after the last record; it is not routed
+     * @return          Sequential stream of batches of records taken from given queue
+     */
+    public Stream<RoutedBatch<N, T>> batches(BlockingQueue<? extends T> source, T end) {
+        if (source == null || end == null) {
+            throw new NullPointerException("source and end must not be null");
+        }
+        return StreamSupport.stream(new QueueBatchSpliterator(source, end), false);
+    }
+
+    public RouterOptions getOptions() {
+        return options;
+    }
+
+    private RoutedBatch<N, T> group(List<? extends T> records, List<K> keys, N[] nodes) {
+        hash.get().routeAll(keys, nodes);
+        Map<N, List<T>> byNode = new LinkedHashMap<>();
+        List<T> unrouted = new ArrayList<>(0);
+        int size = records.size();
+        for (int i = 0; i < size; i++) {
+            N node = nodes[i];
+            if (node == null) {
+                unrouted.add(records.get(i));
+            } else {
+                byNode.computeIfAbsent(node, n -> new ArrayList<>()).add(records.get(i));
+            }
+        }
+        Arrays.fill(nodes, 0, size, null);
+        return new RoutedBatch<>(byNode, unrouted, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private N[] newNodes(int size) {
+        return (N[]) new Object[size];
+    }
+
+    private static <K, N> Supplier<KeyedStableHash<K, N>> constant(KeyedStableHash<K, N> hash) {
+        if (hash == null) {
+            throw new NullPointerException("hash must not be null");
+        }
+        return () -> hash;
+    }
+
+    /**
+     * Collects records of the next batch into reused lists and routes them when batch is closed.
+     */
+    private abstract class AbstractBatchSpliterator implements Spliterator<RoutedBatch<N, T>>, Consumer<T> {
+
+        final List<T> records;
+        private final List<K> keys;
+        private final N[] nodes;
+        boolean exhausted;
+
+        private AbstractBatchSpliterator() {
+            this.records = new ArrayList<>(options.getBatchSize());
+            this.keys = new ArrayList<>(options.getBatchSize());
+            this.nodes = newNodes(options.getBatchSize());
+        }
+
+        @Override
+        public void accept(T record) {
+            records.add(record);
+            keys.add(keyOf.apply(record));
+        }
+
+        /**
+         * Takes records of the next batch; sets {@code exhausted} when source has no more records.
+         */
+        abstract void fill();
+
+        @Override
+        public boolean tryAdvance(Consumer<? super RoutedBatch<N, T>> action) {
+            if (exhausted) {
+                return false;
+            }
+            records.clear();
+            keys.clear();
+            fill();
+            if (records.isEmpty()) {
+                return false;
+            }
+            action.accept(group(records, keys, nodes));
+            return true;
+        }
+
+        @Override
+        public Spliterator<RoutedBatch<N, T>> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+    }
+
+    /**
+     * Batches of spliterator source; delay is checked as records arrive.
+     */
+    private final class BatchSpliterator extends AbstractBatchSpliterator {
+
+        private final Spliterator<? extends T> source;
+
+        private BatchSpliterator(Spliterator<? extends T> source) {
+            this.source = source;
+        }
+
+        @Override
+        void fill() {
+            long maxDelay = options.getMaxDelayNanos();
+            long start = 0;
+            long lastCheck = 0;
+            int stride = 1;
+            int untilCheck = 1;
+            while (records.size() < options.getBatchSize()) {
+                if (!source.tryAdvance(this)) {
+                    exhausted = true;
+                    break;
+                }
+                if (records.size() == 1) {
+                    start = System.nanoTime();
+                    lastCheck = start;
+                    if (maxDelay == 0) {
+                        break;
+                    }
+                } else if (--untilCheck == 0) {
+                    long now = System.nanoTime();
+                    if (now - start >= maxDelay) {
+                        break;
+                    }
+                    // reading clock costs about as much as routing a record, so while records arrive much faster
+                    // than the delay the clock is read less often; the delay is then overrun by a small fraction only
+                    stride = now - lastCheck < maxDelay / MAX_CLOCK_STRIDE ? Math.min(stride * 2, MAX_CLOCK_STRIDE) : 1;
+                    untilCheck = stride;
+                    lastCheck = now;
+                }
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = source.estimateSize();
+            if (size == Long.MAX_VALUE) {
+                return size;
+            }
+            int batchSize = options.getBatchSize();
+            return size / batchSize + (size % batchSize == 0 ? 0 : 1);
+        }
+
+    }
+
+    /**
+     * Batches of queue source; waiting for a record is bounded by the remaining delay of the batch.
+     */
+    private final class QueueBatchSpliterator extends AbstractBatchSpliterator {
+
+        private final BlockingQueue<? extends T> source;
+        private final T end;
+
+        private QueueBatchSpliterator(BlockingQueue<? extends T> source, T end) {
+            this.source = source;
+            this.end = end;
+        }
+
+        @Override
+        void fill() {
+            try {
+                // batch starts with its first record, however long it takes to arrive
+                T record = source.take();
+                long deadline = System.nanoTime() + options.getMaxDelayNanos();
+                while (record != end) {
+                    accept(record);
+                    long remaining = deadline - System.nanoTime();
+                    if (records.size() == options.getBatchSize() || remaining <= 0) {
+                        return;
+                    }
+                    record = source.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (record == null) {
+                        return;
+                    }
+                }
+                exhausted = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exhausted = true;
+            }
+        }
+
+    }
+
+}
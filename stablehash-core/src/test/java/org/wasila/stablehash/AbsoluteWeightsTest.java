@@ -0,0 +1,163 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AbsoluteWeightsTest {
+
+    private static final StableHashOptions ABSOLUTE = StableHashOptions.defaults().withAbsoluteWeights(40);
+
+    private Map<String, Integer> weights(int count) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            weights.put("node-" + i, 1);
+        }
+        return weights;
+    }
+
+    private Map<String, String> route(StableHash<String> hash) {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            owners.put("key-" + i, hash.getNode("key-" + i).orElse(null));
+        }
+        return owners;
+    }
+
+    /**
+     * Asserts that every key which moved, moved from or to given node, and returns fraction of moved keys.
+     */
+    private double movedOnlyFor(String node, StableHash<String> before, StableHash<String> after) {
+        Map<String, String> oldOwners = route(before);
+        Map<String, String> newOwners = route(after);
+        int moved = 0;
+        for (Map.Entry<String, String> entry : oldOwners.entrySet()) {
+            String newOwner = newOwners.get(entry.getKey());
+            if (!entry.getValue().equals(newOwner)) {
+                Assert.assertTrue(entry.getKey() + ": " + entry.getValue() + " -> " + newOwner,
+                        node.equals(entry.getValue()) || node.equals(newOwner));
+                moved++;
+            }
+        }
+        return moved / (double) oldOwners.size();
+    }
+
+    private void assertSameRing(StableHash<String> expected, StableHash<String> actual) {
+        Assert.assertEquals(expected.stats().getPointCount(), actual.stats().getPointCount());
+        Assert.assertEquals(expected.stats().getOwnership(), actual.stats().getOwnership());
+        for (int i = 0; i < 5_000; i++) {
+            Assert.assertEquals(new ArrayList<>(expected.getNodes("key-" + i, 3)), new ArrayList<>(actual.getNodes("key-" + i, 3)));
+        }
+    }
+
+    @Test
+    public void reweightMovesOnlyKeysOfReweightedNode() {
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(weights(50), ABSOLUTE);
+        double moved = movedOnlyFor("node-7", hash, hash.updateWeightedNode("node-7", 2));
+        // node-7 doubles its share of 1/50
+        Assert.assertEquals(1.0d / 51, moved, 0.01d);
+
+        Assert.assertTrue(movedOnlyFor("node-7", hash, hash.updateWeightedNode("node-7", 3).updateWeightedNode("node-7", 1)) == 0.0d);
+    }
+
+    @Test
+    public void addAndRemoveMoveOnlyKeysOfChangedNode() {
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(weights(50), ABSOLUTE);
+        Assert.assertEquals(1.0d / 51, movedOnlyFor("node-new", hash, hash.addWeightedNode("node-new", 1)), 0.01d);
+        Assert.assertEquals(1.0d / 50, movedOnlyFor("node-3", hash, hash.removeNode("node-3")), 0.01d);
+    }
+
+    @Test
+    public void relativeWeightsMoveKeysBetweenOtherNodes() {
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(weights(50));
+        Map<String, String> before = route(hash);
+        Map<String, String> after = route(hash.updateWeightedNode("node-7", 2));
+        boolean unrelatedMove = false;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String owner = after.get(entry.getKey());
+            unrelatedMove |= !entry.getValue().equals(owner) && !"node-7".equals(owner) && !"node-7".equals(entry.getValue());
+        }
+        Assert.assertTrue(unrelatedMove);
+    }
+
+    @Test
+    public void mergedRingEqualsRingBuiltFromScratch() {
+        for (StableHashOptions options : Arrays.asList(ABSOLUTE, ABSOLUTE.withPointBits(64),
+                ABSOLUTE.withOffHeap(true), ABSOLUTE.withSearchLayout(SearchLayout.EYTZINGER).withPrecomputedReplicas(3))) {
+            StableHash<String> derived = StableHashStaticFactory.newConsistentHash(weights(30), options)
+                    .addWeightedNode("node-new", 3)
+                    .removeNode("node-4")
+                    .updateWeightedNode("node-9", 2)
+                    .updateWeightedNode("node-11", 1);
+
+            Map<String, Integer> expected = weights(30);
+            expected.remove("node-4");
+            expected.put("node-9", 2);
+            expected.put("node-new", 3);
+            assertSameRing(StableHashStaticFactory.newConsistentHash(expected, options), derived);
+        }
+    }
+
+    @Test
+    public void collidingPointsFallBackToFullBuild() {
+        HashFactory colliding = key -> {
+            // virtual node 0 of every node lands on the same point
+            long value = key.endsWith("-0") ? 7 : key.hashCode() & 0xFFFFFFFFL;
+            AuxHashKey hash = new AuxHashKey() {
+                @Override
+                public long getHash() {
+                    return value;
+                }
+
+                @Override
+                public int compareTo(AuxHashKey other) {
+                    return Long.compare(value, other.getHash());
+                }
+            };
+            Iterator<AuxHashKey> it = Collections.nCopies(3, hash).iterator();
+            return it;
+        };
+        List<String> nodes = Arrays.asList("a", "b", "c", "d");
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        nodes.forEach(node -> weights.put(node, 2));
+
+        StableHash<String> derived = StableHashStaticFactory.newConsistentHash(colliding, weights, ABSOLUTE)
+                .removeNode("d")
+                .addWeightedNode("d", 2);
+        assertSameRing(StableHashStaticFactory.newConsistentHash(colliding, weights, ABSOLUTE), derived);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeVnodesPerWeightIsRejected() {
+        StableHashOptions.defaults().withAbsoluteWeights(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void weightGivingTooManyVnodesIsRejected() {
+        StableHashStaticFactory.newConsistentHash(weights(2), ABSOLUTE).updateWeightedNode("node-0", Integer.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConsistentHashOffHeapTest {
+
+    private static final StableHashOptions OFF_HEAP = StableHashOptions.defaults().withOffHeap(true);
+
+    @Test
+    public void offHeapRingRoutesLikeHeapRing() {
+        Map<String,Integer> weights = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            weights.put("node" + i, 1 + i % 3);
+        }
+        StableHash<String> heap = StableHashStaticFactory.newConsistentHash(weights);
+        StableHash<String> offHeap = StableHashStaticFactory.newConsistentHash(weights, OFF_HEAP);
+        StableHash<String> bucketed = StableHashStaticFactory.newConsistentHash(weights,
+                OFF_HEAP.withSearchLayout(SearchLayout.RADIX_BUCKETS));
+
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + i;
+            Assert.assertEquals(heap.getNode(key), offHeap.getNode(key));
+            Assert.assertEquals(heap.getNode(key), bucketed.getNode(key));
+            Assert.assertEquals(new ArrayList<>(heap.getNodes(key, 3)), new ArrayList<>(offHeap.getNodes(key, 3)));
+        }
+    }
+
+    @Test
+    public void derivedInstancesStayOffHeap() {
+        List<String> nodes = new ArrayList<>();
+        nodes.add("a");
+        nodes.add("b");
+        nodes.add("c");
+        StableHash<String> offHeap = StableHashStaticFactory.newConsistentHash(nodes, OFF_HEAP).addNode("d");
+        StableHash<String> heap = StableHashStaticFactory.newConsistentHash(nodes).addNode("d");
+
+        Assert.assertEquals(heap.getNode("bbbb"), offHeap.getNode("bbbb"));
+        Assert.assertTrue(offHeap.stats().getEstimatedHeapBytes() < heap.stats().getEstimatedHeapBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedRingCannotBeUsed() {
+        List<String> nodes = new ArrayList<>();
+        nodes.add("a");
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(nodes, OFF_HEAP);
+        hash.close();
+        hash.getNode("test");
+    }
+
+    @Test
+    public void closingHeapInstanceIsNoOp() {
+        List<String> nodes = new ArrayList<>();
+        nodes.add("a");
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(nodes);
+        hash.close();
+        Assert.assertEquals("a", hash.getNode("test").get());
+    }
+
+    @Test
+    public void lookupsRacingWithCloseEitherFinishOrFailUpFront() throws InterruptedException {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            nodes.add("node" + i);
+        }
+        for (int round = 0; round < 20; round++) {
+            StableHash<String> hash = StableHashStaticFactory.newConsistentHash(nodes, OFF_HEAP);
+            AtomicInteger failures = new AtomicInteger();
+            Thread reader = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    try {
+                        Assert.assertTrue(hash.getNode("key" + i).isPresent());
+                        Assert.assertEquals(3, hash.getNodes("key" + i, 3).size());
+                    } catch (IllegalStateException ex) {
+                        return;
+                    } catch (Throwable ex) {
+                        failures.incrementAndGet();
+                        return;
+                    }
+                }
+            });
+            reader.start();
+            Thread.sleep(1);
+            hash.close();
+            reader.join();
+            Assert.assertEquals(0, failures.get());
+        }
+    }
+
+}
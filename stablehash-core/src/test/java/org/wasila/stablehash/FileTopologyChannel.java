@@ -0,0 +1,84 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local stand-in of a topology distribution channel: publisher appends length prefixed encoded deltas to a file,
+ * every subscriber reads the records it has not seen yet.
+ */
+class FileTopologyChannel {
+
+    private final Path file;
+
+    FileTopologyChannel(Path file) {
+        this.file = file;
+    }
+
+    void publish(TopologyDelta<String> delta) throws IOException {
+        byte[] bytes = delta.encode(node -> node);
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    Subscriber subscribe() {
+        return new Subscriber();
+    }
+
+    class Subscriber {
+
+        private int seen;
+
+        List<TopologyDelta<String>> poll() throws IOException {
+            List<TopologyDelta<String>> deltas = new ArrayList<>();
+            if (!Files.exists(file)) {
+                return deltas;
+            }
+            try (InputStream in = Files.newInputStream(file); DataInputStream data = new DataInputStream(in)) {
+                for (int i = 0; ; i++) {
+                    byte[] bytes;
+                    try {
+                        bytes = new byte[data.readInt()];
+                        data.readFully(bytes);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (i >= seen) {
+                        deltas.add(TopologyDelta.decode(bytes, node -> node));
+                    }
+                }
+            }
+            seen += deltas.size();
+            return deltas;
+        }
+
+    }
+
+}
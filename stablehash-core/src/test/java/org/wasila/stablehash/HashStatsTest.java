@@ -0,0 +1,122 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class HashStatsTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void consistentOwnershipCoversWholeKeySpace() {
+        List<String> nodes = Arrays.asList("a", "b", "c");
+        HashStats<String> stats = StableHashStaticFactory.newConsistentHash(nodes).stats();
+
+        double total = stats.getOwnership().values().stream().mapToDouble(Double::doubleValue).sum();
+        Assert.assertEquals(1.0d, total, EPSILON);
+        Assert.assertEquals(3, stats.getOwnership().size());
+        Assert.assertEquals(3 * 40 * 3, stats.getPointCount());
+        Assert.assertFalse(stats.isSampled());
+        Assert.assertTrue(stats.getPeakToMean() >= 1.0d);
+    }
+
+    @Test
+    public void consistentOwnershipFollowsWeights() {
+        Map<String,Integer> weights = new HashMap<>();
+        weights.put("a", 1);
+        weights.put("b", 4);
+        HashStats<String> stats = StableHashStaticFactory.newConsistentHash(weights).stats();
+
+        Assert.assertTrue(stats.getOwnership("b") > stats.getOwnership("a") * 2);
+    }
+
+    @Test
+    public void singleNodeOwnsEverything() {
+        HashStats<String> stats = StableHashStaticFactory.newConsistentHash(Collections.singletonList("a")).stats();
+
+        Assert.assertEquals(1.0d, stats.getOwnership("a"), EPSILON);
+        Assert.assertEquals(1.0d, stats.getPeakToMean(), EPSILON);
+        Assert.assertEquals(0.0d, stats.getStandardDeviation(), EPSILON);
+    }
+
+    @Test
+    public void emptyRingHasNoOwners() {
+        HashStats<String> stats = StableHashStaticFactory.<String>newConsistentHash(Collections.emptyList()).stats();
+
+        Assert.assertTrue(stats.getOwnership().isEmpty());
+        Assert.assertEquals(0, stats.getPointCount());
+    }
+
+    @Test
+    public void rendezvousOwnershipIsSampled() {
+        List<String> nodes = Arrays.asList("a", "b", "c", "d");
+        HashStats<String> stats = StableHashStaticFactory.newRendezvousHash(nodes).stats();
+
+        double total = stats.getOwnership().values().stream().mapToDouble(Double::doubleValue).sum();
+        Assert.assertEquals(1.0d, total, EPSILON);
+        Assert.assertTrue(stats.isSampled());
+        for (String node : nodes) {
+            Assert.assertEquals(0.25d, stats.getOwnership(node), 0.05d);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void implementationWithoutStatsStillCompiles() {
+        StableHash<String> external = new StableHash<String>() {
+            @Override
+            public Optional<String> getNode(String key) {
+                return Optional.of("a");
+            }
+
+            @Override
+            public Set<String> getNodes(String key, int size) {
+                return Collections.singleton("a");
+            }
+
+            @Override
+            public StableHash<String> addNode(String node) {
+                return this;
+            }
+
+            @Override
+            public StableHash<String> addWeightedNode(String node, int weight) {
+                return this;
+            }
+
+            @Override
+            public StableHash<String> updateWeightedNode(String node, int weight) {
+                return this;
+            }
+
+            @Override
+            public StableHash<String> removeNode(String node) {
+                return this;
+            }
+        };
+        external.stats();
+    }
+
+}
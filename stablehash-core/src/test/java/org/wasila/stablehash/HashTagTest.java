@@ -0,0 +1,125 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class HashTagTest {
+
+    private final List<String> nodes = Arrays.asList("a", "b", "c", "d", "e");
+
+    private String tag(HashTagExtractor extractor, String key) {
+        int start = extractor.tagStart(key);
+        return key.substring(start, extractor.tagEnd(key, start));
+    }
+
+    @Test
+    public void redisConvention() {
+        HashTagExtractor redis = HashTagExtractor.redis();
+        Assert.assertEquals("42", tag(redis, "user:{42}:profile"));
+        Assert.assertEquals("42", tag(redis, "{42}"));
+        Assert.assertEquals("a", tag(redis, "x{a}{b}"));
+        Assert.assertEquals("{a", tag(redis, "x{{a}"));
+        Assert.assertEquals("user:{}:profile", tag(redis, "user:{}:profile"));
+        Assert.assertEquals("user:{42", tag(redis, "user:{42"));
+        Assert.assertEquals("}{", tag(redis, "}{"));
+        Assert.assertEquals("plain", tag(redis, "plain"));
+        Assert.assertEquals("", tag(redis, ""));
+    }
+
+    @Test
+    public void customDelimiters() {
+        Assert.assertEquals("42", tag(HashTagExtractor.delimited('[', ']'), "user:[42]:{7}"));
+    }
+
+    @Test
+    public void taggedKeysAreColocatedByConsistentHash() {
+        StableHash<String> plain = StableHashStaticFactory.newConsistentHash(nodes);
+        StableHash<String> tagged = StableHashStaticFactory.newConsistentHash(nodes,
+                StableHashOptions.defaults().withHashTagExtractor(HashTagExtractor.redis()));
+
+        for (int i = 0; i < 1_000; i++) {
+            String node = tagged.getNode("user:{" + i + "}:profile").get();
+            Assert.assertEquals(node, tagged.getNode("user:{" + i + "}:cart").get());
+            Assert.assertEquals(plain.getNode(String.valueOf(i)).get(), node);
+            Assert.assertEquals(plain.getNode("user:" + i).get(), tagged.getNode("user:" + i).get());
+        }
+        Assert.assertEquals(tagged.getNodes("{7}:x", 3), tagged.getNodes("{7}:y", 3));
+        Assert.assertEquals(tagged.getNode("{7}:x"), tagged.addNode("f").removeNode("f").getNode("{7}:y"));
+    }
+
+    private void assertColocated(StableHash<String> plain, StableHash<String> tagged) {
+        for (int i = 0; i < 1_000; i++) {
+            String node = tagged.getNode("user:{" + i + "}:profile").get();
+            Assert.assertEquals(node, tagged.getNode("user:{" + i + "}:cart").get());
+            Assert.assertEquals(plain.getNode(String.valueOf(i)).get(), node);
+            Assert.assertEquals(plain.getNode("user:" + i).get(), tagged.getNode("user:" + i).get());
+            Assert.assertEquals(plain.getNodes(String.valueOf(i), 2), tagged.getNodes("{" + i + "}:x", 2));
+        }
+        StableHash<String> derived = tagged.addNode("f");
+        Assert.assertEquals(derived.getNode("{7}:x"), derived.getNode("{7}:y"));
+        Assert.assertEquals(plain.addNode("f").getNode("7"), derived.getNode("{7}:x"));
+    }
+
+    private Map<String, Integer> weights() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        nodes.forEach(node -> weights.put(node, 1));
+        return weights;
+    }
+
+    @Test
+    public void taggedKeysAreColocatedByRendezvousHash() {
+        assertColocated(StableHashStaticFactory.newRendezvousHash(weights(), StableHashOptions.defaults()),
+                StableHashStaticFactory.newRendezvousHash(weights(), StableHashOptions.defaults().withHashTagExtractor(HashTagExtractor.redis())));
+    }
+
+    @Test
+    public void taggedKeysAreColocatedByPartitionedHash() {
+        assertColocated(StableHashStaticFactory.newPartitionedHash(weights(), 1024),
+                StableHashStaticFactory.newPartitionedHash(weights(), 1024, StableHashOptions.defaults().withHashTagExtractor(HashTagExtractor.redis())));
+    }
+
+    @Test
+    public void taggedKeysAreColocatedByHierarchicalHash() {
+        Function<String, List<String>> locator = node -> Arrays.asList("dc", "rack-" + node);
+        assertColocated(StableHashStaticFactory.newHierarchicalHash(weights(), locator, 1),
+                StableHashStaticFactory.newHierarchicalHash(weights(), locator, 1, StableHashOptions.defaults().withHashTagExtractor(HashTagExtractor.redis())));
+    }
+
+    @Test
+    public void keyHasherHashesOnlyTag() {
+        for (StableHash<String> hash : Arrays.asList(StableHashStaticFactory.newConsistentHash(nodes),
+                StableHashStaticFactory.newRendezvousHash(nodes), StableHashStaticFactory.newPartitionedHash(nodes, 1024))) {
+            KeyedStableHash<CharSequence, String> plain = StableHashStaticFactory.keyed(hash, KeyHasher.ofString());
+            KeyedStableHash<CharSequence, String> tagged = StableHashStaticFactory.keyed(hash,
+                    KeyHasher.ofString(HashTagExtractor.redis()));
+            for (int i = 0; i < 1_000; i++) {
+                String node = tagged.getNode("order:{" + i + "}:items").get();
+                Assert.assertEquals(node, tagged.getNode("order:{" + i + "}:total").get());
+                Assert.assertEquals(plain.getNode(String.valueOf(i)).get(), node);
+                Assert.assertEquals(plain.getNode("order:" + i).get(), tagged.getNode("order:" + i).get());
+            }
+        }
+    }
+
+}
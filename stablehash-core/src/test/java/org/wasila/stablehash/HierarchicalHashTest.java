@@ -0,0 +1,139 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+public class HierarchicalHashTest {
+
+    private static final Function<String, List<String>> LOCATOR = node -> {
+        String[] parts = node.split("-");
+        return Arrays.asList(parts[0], parts[0] + "-" + parts[1]);
+    };
+
+    private Map<String, Integer> weights;
+
+    @Before
+    public void setUp() {
+        weights = new LinkedHashMap<>();
+        for (int dc = 0; dc < 3; dc++) {
+            for (int rack = 0; rack < 3; rack++) {
+                for (int node = 0; node < 2; node++) {
+                    weights.put("dc" + dc + "-rack" + rack + "-n" + node, 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void replicasSpanDistinctDatacenters() {
+        HierarchicalStableHash<String> hash = StableHashStaticFactory.newHierarchicalHash(weights, LOCATOR, 0);
+        for (int i = 0; i < 500; i++) {
+            Set<String> nodes = hash.getNodes("key" + i, 3);
+            Set<String> datacenters = new HashSet<>();
+            for (String node : nodes) {
+                datacenters.add(hash.getLocation(node).get(0));
+            }
+            Assert.assertEquals(3, datacenters.size());
+            Assert.assertEquals(hash.getNode("key" + i).get(), nodes.iterator().next());
+        }
+    }
+
+    @Test
+    public void replicasSpanDistinctRacks() {
+        HierarchicalStableHash<String> hash = StableHashStaticFactory.newHierarchicalHash(weights, LOCATOR, 1);
+        for (int i = 0; i < 500; i++) {
+            Set<String> racks = new HashSet<>();
+            for (String node : hash.getNodes("key" + i, 5)) {
+                racks.add(hash.getLocation(node).get(1));
+            }
+            Assert.assertEquals(5, racks.size());
+        }
+    }
+
+    @Test
+    public void fallsBackToDistinctNodesWhenDomainsAreExhausted() {
+        HierarchicalStableHash<String> hash = StableHashStaticFactory.newHierarchicalHash(weights, LOCATOR, 0);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(7, hash.getNodes("key" + i, 7).size());
+        }
+    }
+
+    @Test
+    public void preferredLocationComesFirst() {
+        HierarchicalStableHash<String> hash = StableHashStaticFactory.newHierarchicalHash(weights, LOCATOR, 0);
+        for (int i = 0; i < 100; i++) {
+            List<String> nodes = new ArrayList<>(hash.getNodes("key" + i, 3, Arrays.asList("dc2")));
+            Assert.assertEquals("dc2", hash.getLocation(nodes.get(0)).get(0));
+            Assert.assertEquals(new HashSet<>(hash.getNodes("key" + i, 3)), new HashSet<>(nodes));
+        }
+    }
+
+    @Test
+    public void reweightingMovesKeysOnlyIntoDomainOfThatNode() {
+        HierarchicalStableHash<String> before = StableHashStaticFactory.newHierarchicalHash(weights, LOCATOR, 0);
+        HierarchicalStableHash<String> after = before.updateWeightedNode("dc1-rack2-n0", 3);
+
+        int moved = 0;
+        for (int i = 0; i < 2000; i++) {
+            String oldNode = before.getNode("key" + i).get();
+            String newNode = after.getNode("key" + i).get();
+            if (!oldNode.equals(newNode)) {
+                moved++;
+                Assert.assertEquals("dc1", after.getLocation(newNode).get(0));
+                if (before.getLocation(oldNode).get(0).equals("dc1")) {
+                    Assert.assertEquals("dc1-rack2", after.getLocation(newNode).get(1));
+                }
+            }
+        }
+        Assert.assertTrue(moved > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failureDomainLevelMustExist() {
+        StableHashStaticFactory.newHierarchicalHash(weights, LOCATOR, 2);
+    }
+
+    @Test
+    public void equallyNamedRacksInDifferentDatacentersDrawIndependently() {
+        Function<String, List<String>> plainRackNames = node -> Arrays.asList(node.split("-")[0], node.split("-")[1]);
+        HierarchicalStableHash<String> hash = StableHashStaticFactory.newHierarchicalHash(weights, plainRackNames, 0);
+
+        int sameRack = 0;
+        int keys = 3_000;
+        for (int i = 0; i < keys; i++) {
+            Set<String> racks = new HashSet<>();
+            for (String node : hash.getNodes("key" + i, 2)) {
+                racks.add(hash.getLocation(node).get(1));
+            }
+            sameRack += racks.size() == 1 ? 1 : 0;
+        }
+        // with 3 racks per datacenter independent draws pick the same rack name for about a third of keys
+        Assert.assertEquals(keys / 3.0d, sameRack, keys * 0.05d);
+    }
+
+}
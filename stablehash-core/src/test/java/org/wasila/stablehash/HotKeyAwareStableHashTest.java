@@ -0,0 +1,173 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wasila.stablehash.hotkey.CountMinSketch;
+import org.wasila.stablehash.hotkey.HotKeyAwareStableHash;
+import org.wasila.stablehash.hotkey.HotKeyDetector;
+import org.wasila.stablehash.hotkey.HotKeyOptions;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class HotKeyAwareStableHashTest {
+
+    private final List<String> nodes = Arrays.asList("a", "b", "c", "d", "e");
+
+    @Test
+    public void hotKeyReadsAreSpreadOverPreferenceList() {
+        HotKeyDetector detector = new HotKeyDetector(HotKeyOptions.defaults().withHotThreshold(0.05d, 100));
+        StableHash<String> owner = StableHashStaticFactory.newConsistentHash(nodes);
+        StableHash<String> hash = HotKeyAwareStableHash.wrap(owner, detector);
+
+        Set<String> hotNodes = new HashSet<>();
+        Set<String> coldNodes = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            hotNodes.add(hash.getNode("viral").get());
+            String cold = "key" + i;
+            Assert.assertEquals(owner.getNode(cold), hash.getNode(cold));
+            if (i % 1000 == 0) {
+                coldNodes.add(hash.getNode("key0").get());
+            }
+        }
+
+        Assert.assertEquals(owner.getNodes("viral", 3), hotNodes);
+        Assert.assertEquals(1, coldNodes.size());
+        Assert.assertEquals("viral", detector.getHotKeys().get(0).getKey());
+    }
+
+    @Test
+    public void hotKeyCoolsDownAfterDecay() {
+        HotKeyDetector detector = new HotKeyDetector(HotKeyOptions.defaults()
+                .withHotThreshold(0.05d, 100)
+                .withDecayInterval(10_000));
+        for (int i = 0; i < 50_000; i++) {
+            detector.record("viral");
+        }
+        Assert.assertTrue(detector.isHot("viral"));
+
+        for (int i = 0; i < 500_000; i++) {
+            detector.record("key" + i);
+        }
+        Assert.assertFalse(detector.isHot("viral"));
+    }
+
+    @Test
+    public void sketchNeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(i % 1000);
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(sketch.estimate(i) >= 10);
+        }
+    }
+
+    @Test
+    public void spreadResumesWhenEnoughNodesAreBack() {
+        AtomicReference<StableHash<String>> current = new AtomicReference<>(
+                StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "b")));
+        StableHash<String> live = new StableHash<String>() {
+            @Override
+            public Optional<String> getNode(String key) {
+                return current.get().getNode(key);
+            }
+
+            @Override
+            public Set<String> getNodes(String key, int size) {
+                return current.get().getNodes(key, size);
+            }
+
+            @Override
+            public StableHash<String> addNode(String node) {
+                return this;
+            }
+
+            @Override
+            public StableHash<String> addWeightedNode(String node, int weight) {
+                return this;
+            }
+
+            @Override
+            public StableHash<String> updateWeightedNode(String node, int weight) {
+                return this;
+            }
+
+            @Override
+            public StableHash<String> removeNode(String node) {
+                return this;
+            }
+        };
+        // totals refreshed on every lookup, so the key is hot after exactly 100 lookups
+        HotKeyDetector detector = new HotKeyDetector(HotKeyOptions.defaults()
+                .withHotThreshold(0.05d, 100)
+                .withRefreshInterval(1)
+                .withSpreadRetry(0, TimeUnit.NANOSECONDS));
+        StableHash<String> hash = HotKeyAwareStableHash.wrap(live, detector);
+        for (int i = 0; i < 100; i++) {
+            hash.getNode("viral");
+        }
+        Assert.assertTrue(detector.isHot("viral"));
+        // hot key with only 2 nodes is still routed to its owner
+        Assert.assertEquals(live.getNode("viral"), hash.getNode("viral"));
+
+        current.set(StableHashStaticFactory.newConsistentHash(nodes));
+        Set<String> hotNodes = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            hotNodes.add(hash.getNode("viral").get());
+        }
+        Assert.assertEquals(3, hotNodes.size());
+    }
+
+    @Test
+    public void decoratedHashCanBeFailedOver() {
+        StableHash<String> hash = HotKeyAwareStableHash.wrap(StableHashStaticFactory.newRendezvousHash(nodes), new HotKeyDetector());
+        String owner = hash.getNode("test").get();
+
+        Assert.assertTrue(StableHashStaticFactory.failover(hash).markDown(owner));
+        Assert.assertNotEquals(owner, hash.getNode("test").get());
+        Assert.assertEquals(StableHashStaticFactory.topology(hash).getWeights().keySet(), new HashSet<>(nodes));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyedViewOfDecoratedHashIsRejected() {
+        StableHash<String> hash = HotKeyAwareStableHash.wrap(StableHashStaticFactory.newRendezvousHash(nodes), new HotKeyDetector());
+        StableHashStaticFactory.keyed(hash, KeyHasher.ofString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooDeepSketchIsRejected() {
+        HotKeyOptions.defaults().withSketch(CountMinSketch.MAX_DEPTH + 1, 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refreshIntervalMustBePowerOfTwo() {
+        HotKeyOptions.defaults().withRefreshInterval(1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMinLookupsAreRejected() {
+        HotKeyOptions.defaults().withHotThreshold(0.1d, -1);
+    }
+
+}
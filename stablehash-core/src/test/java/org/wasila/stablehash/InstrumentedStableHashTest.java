@@ -0,0 +1,157 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wasila.stablehash.metrics.InstrumentedStableHash;
+import org.wasila.stablehash.metrics.LatencyHistogram;
+import org.wasila.stablehash.metrics.LookupMetrics;
+import org.wasila.stablehash.metrics.LookupMetricsSnapshot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class InstrumentedStableHashTest {
+
+    @Test
+    public void countsLookupsPerNode() {
+        List<String> nodes = Arrays.asList("a", "b", "c");
+        LookupMetrics<String> metrics = new LookupMetrics<>();
+        StableHash<String> hash = InstrumentedStableHash.wrap(StableHashStaticFactory.newConsistentHash(nodes), metrics);
+
+        for (int i = 0; i < 100; i++) {
+            hash.getNode("key" + i);
+        }
+        hash.getNodes("test", 2);
+
+        LookupMetricsSnapshot<String> snapshot = metrics.snapshot();
+        Assert.assertEquals(101, snapshot.getLookupCount());
+        Assert.assertEquals(102, snapshot.getNodeLookupCounts().values().stream().mapToLong(Long::longValue).sum());
+        Assert.assertEquals(101, snapshot.getLatency().getTotalCount());
+    }
+
+    @Test
+    public void metricsSurviveTopologyChange() {
+        LookupMetrics<String> metrics = new LookupMetrics<>();
+        StableHash<String> hash = InstrumentedStableHash.wrap(
+                StableHashStaticFactory.<String>newConsistentHash(Collections.emptyList()), metrics);
+
+        hash.getNode("test");
+        hash = hash.addNode("a");
+        hash.getNode("test");
+
+        LookupMetricsSnapshot<String> snapshot = metrics.snapshot();
+        Assert.assertEquals(2, snapshot.getLookupCount());
+        Assert.assertEquals(1, snapshot.getEmptyResultCount());
+        Assert.assertEquals(1, snapshot.getNodeLookupCount("a"));
+    }
+
+    @Test
+    public void countsFailedReplicas() {
+        LookupMetrics<String> metrics = new LookupMetrics<>();
+        StableHash<String> hash = InstrumentedStableHash.wrap(
+                StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "a", "b")), metrics);
+
+        Assert.assertTrue(hash.getNodes("test", 3).isEmpty());
+        Assert.assertEquals(1, metrics.snapshot().getFailedReplicaCount());
+    }
+
+    @Test
+    public void countsReplicaSetsShortOfDownNodes() {
+        LookupMetrics<String> metrics = new LookupMetrics<>();
+        StableHash<String> plain = StableHashStaticFactory.newRendezvousHash(Arrays.asList("a", "b", "c"));
+        StableHashStaticFactory.failover(plain).markDown("b");
+        StableHash<String> hash = InstrumentedStableHash.wrap(plain, metrics);
+
+        Assert.assertEquals(2, hash.getNodes("test", 2).size());
+        Assert.assertTrue(hash.getNodes("test", 3).isEmpty());
+        Assert.assertEquals(1, metrics.snapshot().getFailedReplicaCount());
+    }
+
+    @Test
+    public void decoratedHashKeepsFailoverAndTopologyOfDelegate() {
+        LookupMetrics<String> metrics = new LookupMetrics<>();
+        StableHash<String> plain = StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "b", "c"));
+        StableHash<String> hash = InstrumentedStableHash.wrap(plain, metrics);
+
+        String owner = hash.getNode("test").get();
+        StableHashStaticFactory.failover(hash).markDown(owner);
+        Assert.assertNotEquals(owner, hash.getNode("test").get());
+        Assert.assertTrue(StableHashStaticFactory.failover(plain).isDown(owner));
+
+        StableHash<String> target = plain.addNode("d");
+        TopologyDelta<String> delta = TopologyDelta.between(StableHashStaticFactory.topology(hash), StableHashStaticFactory.topology(target));
+        StableHash<String> updated = delta.applyTo(hash);
+        Assert.assertTrue(updated instanceof InstrumentedStableHash);
+        Assert.assertEquals(StableHashStaticFactory.topology(target).getFingerprint(), StableHashStaticFactory.topology(updated).getFingerprint());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyedViewOfDecoratedHashIsRejected() {
+        StableHash<String> hash = InstrumentedStableHash.wrap(
+                StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "b")), new LookupMetrics<>());
+        StableHashStaticFactory.keyed(hash, KeyHasher.ofString());
+    }
+
+    @Test
+    public void resetClearsCountsOfLiveInstances() {
+        LookupMetrics<String> metrics = new LookupMetrics<>();
+        StableHash<String> hash = InstrumentedStableHash.wrap(StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "b")), metrics);
+
+        hash.getNode("test");
+        metrics.reset();
+        Assert.assertTrue(metrics.snapshot().getNodeLookupCounts().isEmpty());
+        String owner = hash.getNode("test").get();
+        Assert.assertEquals(1, metrics.snapshot().getNodeLookupCount(owner));
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 100);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        Assert.assertEquals(1000, snapshot.getTotalCount());
+        Assert.assertEquals(50_000, snapshot.getValueAtPercentile(50.0d), 50_000 * 0.125d);
+        Assert.assertEquals(99_000, snapshot.getValueAtPercentile(99.0d), 99_000 * 0.125d);
+        Assert.assertTrue(snapshot.getMaxValue() >= 100_000);
+    }
+
+    @Test
+    public void concurrentRecordingLosesNoValues() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(100);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(400_000, histogram.snapshot().getTotalCount());
+        histogram.reset();
+        Assert.assertEquals(0, histogram.snapshot().getTotalCount());
+    }
+
+}
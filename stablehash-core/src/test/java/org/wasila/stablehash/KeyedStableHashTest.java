@@ -0,0 +1,112 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class KeyedStableHashTest {
+
+    private final List<String> nodes = Arrays.asList("a", "b", "c", "d");
+
+    @Test
+    public void numericKeysAreSpreadEvenly() {
+        for (StableHash<String> hash : Arrays.asList(StableHashStaticFactory.newConsistentHash(nodes),
+                StableHashStaticFactory.newRendezvousHash(nodes))) {
+            KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(hash, KeyHasher.ofLong(Long::longValue));
+
+            Map<String, Integer> counts = new HashMap<>();
+            for (long userId = 0; userId < 40_000; userId++) {
+                counts.merge(keyed.getNode(userId).get(), 1, Integer::sum);
+            }
+            Assert.assertEquals(4, counts.size());
+            for (int count : counts.values()) {
+                Assert.assertEquals(10_000, count, 3_000);
+            }
+        }
+    }
+
+    @Test
+    public void compositeKeysUseAllFields() {
+        KeyHasher<long[]> hasher = (key, sink) -> sink.putLong(key[0]).putLong(key[1]);
+        KeyedStableHash<long[], String> keyed = StableHashStaticFactory.keyed(
+                StableHashStaticFactory.newRendezvousHash(nodes), hasher);
+
+        int differ = 0;
+        for (long i = 0; i < 100; i++) {
+            if (!keyed.getNode(new long[] {42, i}).equals(keyed.getNode(new long[] {42, i + 1}))) {
+                differ++;
+            }
+        }
+        Assert.assertTrue(differ > 30);
+        Assert.assertEquals(keyed.getNode(new long[] {1, 2}), keyed.getNode(new long[] {1, 2}));
+    }
+
+    @Test
+    public void addingNodeMovesKeysOnlyToNewNode() {
+        KeyedStableHash<CharSequence, String> before = StableHashStaticFactory.keyed(
+                StableHashStaticFactory.newConsistentHash(nodes), KeyHasher.ofString());
+        KeyedStableHash<CharSequence, String> after = before.addNode("e");
+
+        for (int i = 0; i < 5_000; i++) {
+            String key = "user:" + i;
+            String oldNode = before.getNode(key).get();
+            String newNode = after.getNode(key).get();
+            if (!oldNode.equals(newNode)) {
+                Assert.assertEquals("e", newNode);
+            }
+            Assert.assertEquals(after.getNode(key).get(), after.getNodes(key, 3).iterator().next());
+        }
+    }
+
+    @Test
+    public void batchRoutingMatchesSingleLookups() {
+        KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(
+                StableHashStaticFactory.newRendezvousHash(nodes), KeyHasher.ofLong(Long::longValue));
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; key < 1_000; key++) {
+            keys.add(key);
+        }
+        String[] routed = new String[keys.size()];
+        keyed.routeAll(keys, routed);
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals(keyed.getNode(keys.get(i)).get(), routed[i]);
+        }
+    }
+
+    @Test
+    public void emptyHashHasNoNode() {
+        KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(
+                StableHashStaticFactory.<String>newConsistentHash(Collections.emptyList()), KeyHasher.ofLong(Long::longValue));
+        Assert.assertFalse(keyed.getNode(1L).isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedHashIsRejected() {
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("a", 1);
+        StableHashStaticFactory.keyed(StableHashStaticFactory.newHierarchicalHash(weights,
+                node -> Collections.singletonList("dc"), 0), KeyHasher.ofString());
+    }
+
+}
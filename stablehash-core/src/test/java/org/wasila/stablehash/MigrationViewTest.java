@@ -0,0 +1,115 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MigrationViewTest {
+
+    private final List<String> nodes = Arrays.asList("a", "b", "c", "d");
+
+    private final KeyHasher<Long> hasher = KeyHasher.ofLong(Long::longValue);
+
+    @Test
+    public void routesMatchLookupsInBothHashes() {
+        for (StableHash<String> hash : Arrays.asList(StableHashStaticFactory.newConsistentHash(nodes),
+                StableHashStaticFactory.newRendezvousHash(nodes),
+                StableHashStaticFactory.newPartitionedHash(nodes, 1024))) {
+            StableHash<String> scaled = hash.addNode("e");
+            MigrationView<Long, String> migration = StableHashStaticFactory.migration(hash, scaled, hasher);
+            KeyedStableHash<Long, String> oldKeyed = StableHashStaticFactory.keyed(hash, hasher);
+            KeyedStableHash<Long, String> newKeyed = StableHashStaticFactory.keyed(scaled, hasher);
+
+            MigrationRoute<String> route = new MigrationRoute<>();
+            int moved = 0;
+            for (long key = 0; key < 10_000; key++) {
+                Assert.assertSame(route, migration.route(key, route));
+                Assert.assertEquals(oldKeyed.getNode(key).get(), route.getOldNode());
+                Assert.assertEquals(newKeyed.getNode(key).get(), route.getNewNode());
+                Assert.assertEquals(route.isMoved(), migration.isMoved(key));
+                if (route.isMoved()) {
+                    Assert.assertEquals("e", route.getNewNode());
+                    moved++;
+                }
+            }
+            Assert.assertTrue(hash.getClass().getSimpleName() + " moved " + moved, moved > 1_000 && moved < 3_000);
+        }
+    }
+
+    @Test
+    public void batchFillsArraysAndCountsMovedKeys() {
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(nodes);
+        MigrationView<Long, String> migration = StableHashStaticFactory.migration(hash, hash.removeNode("b"), hasher);
+
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; key < 1_000; key++) {
+            keys.add(key);
+        }
+        String[] oldNodes = new String[keys.size()];
+        String[] newNodes = new String[keys.size()];
+        int moved = migration.routeAll(keys, oldNodes, newNodes);
+
+        int expected = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            MigrationRoute<String> route = migration.route(keys.get(i));
+            Assert.assertEquals(route.getOldNode(), oldNodes[i]);
+            Assert.assertEquals(route.getNewNode(), newNodes[i]);
+            if (route.isMoved()) {
+                Assert.assertEquals("b", route.getOldNode());
+                expected++;
+            }
+        }
+        Assert.assertEquals(expected, moved);
+        Assert.assertTrue(moved > 0);
+    }
+
+    @Test
+    public void sameInstanceMovesNothing() {
+        StableHash<String> hash = StableHashStaticFactory.newRendezvousHash(nodes);
+        MigrationView<Long, String> migration = StableHashStaticFactory.migration(hash, hash, hasher);
+        for (long key = 0; key < 1_000; key++) {
+            Assert.assertFalse(migration.isMoved(key));
+        }
+    }
+
+    @Test
+    public void missingOwnerIsNull() {
+        StableHash<String> empty = StableHashStaticFactory.newConsistentHash(new ArrayList<>());
+        MigrationView<Long, String> migration = StableHashStaticFactory.migration(empty, empty.addNode("a"), hasher);
+        MigrationRoute<String> route = migration.route(42L);
+        Assert.assertNull(route.getOldNode());
+        Assert.assertEquals("a", route.getNewNode());
+        Assert.assertTrue(route.isMoved());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortOutputIsRejected() {
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(nodes);
+        StableHashStaticFactory.migration(hash, hash, hasher).routeAll(Arrays.asList(1L, 2L), new String[2], new String[1]);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullKeyIsRejected() {
+        StableHash<String> hash = StableHashStaticFactory.newConsistentHash(nodes);
+        StableHashStaticFactory.migration(hash, hash, hasher).route(null);
+    }
+
+}
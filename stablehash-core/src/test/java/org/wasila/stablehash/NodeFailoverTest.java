@@ -0,0 +1,158 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class NodeFailoverTest {
+
+    private final List<String> nodes = Arrays.asList("a", "b", "c", "d");
+
+    private List<StableHash<String>> hashes() {
+        return Arrays.asList(StableHashStaticFactory.newConsistentHash(nodes), StableHashStaticFactory.newRendezvousHash(nodes));
+    }
+
+    private Map<String, String> route(StableHash<String> hash) {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            owners.put("key-" + i, hash.getNode("key-" + i).get());
+        }
+        return owners;
+    }
+
+    @Test
+    public void downNodeIsSkippedAndOwnershipSnapsBack() {
+        for (StableHash<String> hash : hashes()) {
+            NodeFailover<String> failover = StableHashStaticFactory.failover(hash);
+            Map<String, String> before = route(hash);
+
+            Assert.assertTrue(failover.markDown("b"));
+            Assert.assertFalse(failover.markDown("b"));
+            Assert.assertTrue(failover.isDown("b"));
+            Map<String, String> during = route(hash);
+            for (Map.Entry<String, String> entry : before.entrySet()) {
+                String owner = during.get(entry.getKey());
+                Assert.assertNotEquals("b", owner);
+                if (!entry.getValue().equals("b")) {
+                    Assert.assertEquals(entry.getValue(), owner);
+                }
+            }
+
+            Assert.assertTrue(failover.markUp("b"));
+            Assert.assertFalse(failover.isDown("b"));
+            Assert.assertEquals(before, route(hash));
+        }
+    }
+
+    @Test
+    public void replicasSkipDownNodes() {
+        for (StableHash<String> hash : hashes()) {
+            StableHashStaticFactory.failover(hash).markDown("c");
+            for (int i = 0; i < 1_000; i++) {
+                Set<String> replicas = hash.getNodes("key-" + i, 3);
+                Assert.assertEquals(3, replicas.size());
+                Assert.assertFalse(replicas.contains("c"));
+                Assert.assertTrue(replicas.contains(hash.getNode("key-" + i).get()));
+            }
+        }
+    }
+
+    @Test
+    public void notEnoughNodesUpGivesEmptyReplicaSet() {
+        for (StableHash<String> hash : hashes()) {
+            KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(hash, KeyHasher.ofLong(Long::longValue));
+            NodeFailover<String> failover = StableHashStaticFactory.failover(hash);
+            failover.markDown("c");
+            failover.markDown("d");
+            for (int i = 0; i < 1_000; i++) {
+                Assert.assertEquals(2, hash.getNodes("key-" + i, 2).size());
+                Assert.assertTrue(hash.getNodes("key-" + i, 3).isEmpty());
+                Assert.assertTrue(hash.getNodes("key-" + i, 4).isEmpty());
+                Assert.assertEquals(2, keyed.getNodes((long) i, 2).size());
+                Assert.assertTrue(keyed.getNodes((long) i, 3).isEmpty());
+            }
+            failover.markUp("c");
+            Assert.assertEquals(3, hash.getNodes("key", 3).size());
+        }
+    }
+
+    @Test
+    public void hashedLookupSkipsDownNodes() {
+        for (StableHash<String> hash : hashes()) {
+            KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(hash, KeyHasher.ofLong(Long::longValue));
+            StableHashStaticFactory.failover(hash).markDown("a");
+            for (long key = 0; key < 1_000; key++) {
+                Assert.assertNotEquals("a", keyed.getNode(key).get());
+                Assert.assertFalse(keyed.getNodes(key, 2).contains("a"));
+            }
+        }
+    }
+
+    @Test
+    public void downMarksAreCarriedToDerivedInstance() {
+        for (StableHash<String> hash : hashes()) {
+            StableHashStaticFactory.failover(hash).markDown("d");
+            StableHash<String> derived = hash.addNode("e").removeNode("a");
+            Assert.assertTrue(StableHashStaticFactory.failover(derived).isDown("d"));
+            Assert.assertFalse(StableHashStaticFactory.failover(derived).isDown("e"));
+            Assert.assertFalse(route(derived).containsValue("d"));
+        }
+    }
+
+    @Test
+    public void manyDownMarksAreCarriedAcrossAddRemoveAndUpdate() {
+        List<String> many = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            many.add("n" + i);
+        }
+        for (StableHash<String> hash : Arrays.asList(StableHashStaticFactory.newConsistentHash(many),
+                StableHashStaticFactory.newRendezvousHash(many))) {
+            NodeFailover<String> failover = StableHashStaticFactory.failover(hash);
+            for (int i = 0; i < many.size(); i += 3) {
+                failover.markDown("n" + i);
+            }
+            StableHash<String> derived = hash.removeNode("n0").removeNode("n1").addNode("x").updateWeightedNode("n9", 2);
+            NodeFailover<String> derivedFailover = StableHashStaticFactory.failover(derived);
+            for (int i = 2; i < many.size(); i++) {
+                Assert.assertEquals("n" + i, i % 3 == 0, derivedFailover.isDown("n" + i));
+            }
+            Assert.assertFalse(derivedFailover.isDown("x"));
+        }
+    }
+
+    @Test
+    public void allNodesDownGivesNoNode() {
+        for (StableHash<String> hash : hashes()) {
+            NodeFailover<String> failover = StableHashStaticFactory.failover(hash);
+            nodes.forEach(failover::markDown);
+            Assert.assertFalse(hash.getNode("key").isPresent());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownNodeIsRejected() {
+        StableHashStaticFactory.failover(StableHashStaticFactory.newConsistentHash(nodes)).markDown("x");
+    }
+
+}
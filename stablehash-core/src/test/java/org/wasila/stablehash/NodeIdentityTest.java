@@ -0,0 +1,98 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NodeIdentityTest {
+
+    private static final class Server {
+
+        private final String id;
+        private final AtomicInteger toStringCalls = new AtomicInteger();
+
+        private Server(String id) {
+            this.id = id;
+        }
+
+        private String getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            // expensive and unstable in real life
+            return "Server@" + id + "#" + toStringCalls.incrementAndGet();
+        }
+
+    }
+
+    private Map<Server, Integer> servers(String... ids) {
+        Map<Server, Integer> servers = new HashMap<>();
+        for (String id : ids) {
+            servers.put(new Server(id), 1);
+        }
+        return servers;
+    }
+
+    @Test
+    public void consistentHashUsesIdentityInsteadOfToString() {
+        Map<Server, Integer> servers = servers("a", "b", "c");
+        StableHash<Server> hash = StableHashStaticFactory.newConsistentHash(servers,
+                StableHashOptions.defaults(), Server::getId);
+        Map<String, Integer> byId = new HashMap<>();
+        servers.keySet().forEach(server -> byId.put(server.getId(), 1));
+        StableHash<String> reference = StableHashStaticFactory.newConsistentHash(byId);
+
+        assertSameRouting(hash, reference);
+        hash = hash.addNode(new Server("d"));
+        assertSameRouting(hash, reference.addNode("d"));
+        assertToStringNeverCalled(servers);
+    }
+
+    @Test
+    public void rendezvousHashUsesIdentityInsteadOfToString() {
+        Map<Server, Integer> servers = servers("a", "b", "c");
+        StableHash<Server> hash = StableHashStaticFactory.newRendezvousHash(servers, Server::getId);
+        Map<String, Integer> byId = new HashMap<>();
+        servers.keySet().forEach(server -> byId.put(server.getId(), 1));
+        StableHash<String> reference = StableHashStaticFactory.newRendezvousHash(byId);
+
+        assertSameRouting(hash, reference);
+        hash = hash.addNode(new Server("d"));
+        assertSameRouting(hash, reference.addNode("d"));
+        assertToStringNeverCalled(servers);
+    }
+
+    private void assertSameRouting(StableHash<Server> hash, StableHash<String> reference) {
+        for (int i = 0; i < 2_000; i++) {
+            String key = "key-" + i;
+            Assert.assertEquals(reference.getNode(key).get(), hash.getNode(key).get().getId());
+        }
+    }
+
+    private void assertToStringNeverCalled(Map<Server, Integer> servers) {
+        for (Server server : servers.keySet()) {
+            Assert.assertEquals(0, server.toStringCalls.get());
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PartitionedHashTest {
+
+    private static final int PARTITIONS = 4096;
+
+    private Map<String, Integer> weights(String... nodes) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String node : nodes) {
+            weights.put(node, 1);
+        }
+        return weights;
+    }
+
+    private int moved(PartitionMap<String> before, PartitionMap<String> after) {
+        int moved = 0;
+        for (int p = 0; p < before.getPartitionCount(); p++) {
+            if (!before.getOwner(p).equals(after.getOwner(p))) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    @Test
+    public void partitionsAreSpreadByWeight() {
+        Map<String, Integer> weights = weights("a", "b", "c");
+        weights.put("d", 5);
+        PartitionMap<String> map = StableHashStaticFactory.newPartitionedHash(weights, PARTITIONS).getPartitionMap();
+
+        Assert.assertEquals(512, map.getPartitionCount("a"));
+        Assert.assertEquals(512, map.getPartitionCount("b"));
+        Assert.assertEquals(512, map.getPartitionCount("c"));
+        Assert.assertEquals(2560, map.getPartitionCount("d"));
+    }
+
+    @Test
+    public void keyIsRoutedToOwnerOfItsPartition() {
+        PartitionedStableHash<String> hash = StableHashStaticFactory.newPartitionedHash(Arrays.asList("a", "b", "c"), PARTITIONS);
+        PartitionMap<String> map = hash.getPartitionMap();
+        for (int i = 0; i < 1_000; i++) {
+            String key = "key-" + i;
+            int partition = hash.getPartition(key);
+            Assert.assertTrue(partition >= 0 && partition < PARTITIONS);
+            Assert.assertEquals(map.getOwner(partition), hash.getNode(key));
+            Assert.assertEquals(hash.getNode(key).get(), hash.getNodes(key, 2).iterator().next());
+            Assert.assertEquals(3, hash.getNodes(key, 3).size());
+        }
+    }
+
+    @Test
+    public void addingNodeMovesOnlyItsShare() {
+        PartitionedStableHash<String> before = StableHashStaticFactory.newPartitionedHash(weights("a", "b", "c"), PARTITIONS);
+        PartitionedStableHash<String> after = before.addNode("d");
+
+        Assert.assertEquals(1024, moved(before.getPartitionMap(), after.getPartitionMap()));
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (!before.getPartitionMap().getOwner(p).equals(after.getPartitionMap().getOwner(p))) {
+                Assert.assertEquals("d", after.getPartitionMap().getOwner(p).get());
+            }
+        }
+    }
+
+    @Test
+    public void removingNodeMovesOnlyItsPartitions() {
+        PartitionedStableHash<String> before = StableHashStaticFactory.newPartitionedHash(weights("a", "b", "c", "d"), PARTITIONS);
+        PartitionedStableHash<String> after = before.removeNode("b");
+
+        Assert.assertEquals(before.getPartitionMap().getPartitionCount("b"), moved(before.getPartitionMap(), after.getPartitionMap()));
+        Assert.assertEquals(0, after.getPartitionMap().getPartitionCount("b"));
+        Assert.assertEquals(1.0d, after.stats().getPeakToMean(), 0.01d);
+    }
+
+    @Test
+    public void weightUpdateMovesOnlyDifference() {
+        PartitionedStableHash<String> before = StableHashStaticFactory.newPartitionedHash(weights("a", "b", "c", "d"), PARTITIONS);
+        PartitionedStableHash<String> after = before.updateWeightedNode("a", 2);
+
+        Assert.assertEquals(1639, after.getPartitionMap().getPartitionCount("a"));
+        Assert.assertEquals(1639 - 1024, moved(before.getPartitionMap(), after.getPartitionMap()));
+    }
+
+    @Test
+    public void restoredMapIsNotRebalanced() {
+        Map<String, Integer> weights = weights("a", "b", "c");
+        PartitionedStableHash<String> hash = StableHashStaticFactory.newPartitionedHash(weights, PARTITIONS)
+                .addNode("d").removeNode("a");
+        weights.remove("a");
+        weights.put("d", 1);
+
+        PartitionMap<String> persisted = new PartitionMap<>(hash.getPartitionMap().getNodes(), hash.getPartitionMap().getOwners());
+        PartitionedStableHash<String> restored = StableHashStaticFactory.newPartitionedHash(persisted, weights);
+        Assert.assertEquals(hash.getPartitionMap(), restored.getPartitionMap());
+    }
+
+    @Test
+    public void restoredMapKeepsHashTagExtractor() {
+        StableHashOptions options = StableHashOptions.defaults().withHashTagExtractor(HashTagExtractor.redis());
+        PartitionedStableHash<String> hash = StableHashStaticFactory.newPartitionedHash(weights("a", "b", "c"), PARTITIONS, options);
+
+        PartitionedStableHash<String> restored = StableHashStaticFactory.newPartitionedHash(hash.getPartitionMap(),
+                weights("a", "b", "c"), options);
+        Assert.assertEquals(hash.getPartitionMap(), restored.getPartitionMap());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(restored.getPartition("{user" + i + "}"), restored.getPartition("{user" + i + "}:cart"));
+            Assert.assertEquals(hash.getNode("{user" + i + "}:cart"), restored.getNode("{user" + i + "}:cart"));
+        }
+    }
+
+    @Test
+    public void emptyHashHasNoNode() {
+        PartitionedStableHash<String> hash = StableHashStaticFactory.newPartitionedHash(Collections.<String>emptyList(), 16);
+        Assert.assertFalse(hash.getNode("key").isPresent());
+        Assert.assertTrue(hash.addNode("a").getNode("key").isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partitionCountMustBePowerOfTwo() {
+        StableHashStaticFactory.newPartitionedHash(Arrays.asList("a", "b"), 1000);
+    }
+
+}
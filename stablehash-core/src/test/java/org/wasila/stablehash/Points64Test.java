@@ -0,0 +1,129 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+public class Points64Test {
+
+    private static final StableHashOptions WIDE = StableHashOptions.defaults().withPointBits(64);
+
+    private List<String> nodes(int count) {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add("node-" + i);
+        }
+        return nodes;
+    }
+
+    /**
+     * Hashes keys into 16 values only, so points of different nodes collide.
+     */
+    private static final class CollidingHashFactory implements HashFactory {
+
+        @Override
+        public Iterator<AuxHashKey> iterator(String key) {
+            long value = key.hashCode() & 0xF;
+            AuxHashKey hash = new AuxHashKey() {
+                @Override
+                public long getHash() {
+                    return value;
+                }
+
+                @Override
+                public int compareTo(AuxHashKey other) {
+                    return Long.compare(value, other.getHash());
+                }
+            };
+            return Collections.nCopies(4, hash).iterator();
+        }
+
+    }
+
+    @Test
+    public void layoutsReturnSameNodes() {
+        StableHash<String> binary = StableHashStaticFactory.newConsistentHash(nodes(50), WIDE);
+        for (StableHashOptions options : Arrays.asList(WIDE.withSearchLayout(SearchLayout.EYTZINGER),
+                WIDE.withSearchLayout(SearchLayout.BTREE), WIDE.withOffHeap(true), WIDE.withPrecomputedReplicas(3))) {
+            StableHash<String> other = StableHashStaticFactory.newConsistentHash(nodes(50), options);
+            for (int i = 0; i < 5_000; i++) {
+                Assert.assertEquals(binary.getNode("key-" + i), other.getNode("key-" + i));
+                Assert.assertEquals(new ArrayList<>(binary.getNodes("key-" + i, 3)), new ArrayList<>(other.getNodes("key-" + i, 3)));
+            }
+        }
+    }
+
+    @Test
+    public void ownershipCoversWholeKeySpace() {
+        HashStats<String> stats = StableHashStaticFactory.newConsistentHash(nodes(20), WIDE).stats();
+        double sum = stats.getOwnership().values().stream().mapToDouble(Double::doubleValue).sum();
+        Assert.assertEquals(1.0d, sum, 1e-9);
+        Assert.assertEquals(20 * 40 * 2, stats.getPointCount());
+        Assert.assertEquals(1.0d, StableHashStaticFactory.newConsistentHash(Collections.singletonList("a"), WIDE)
+                .stats().getOwnership("a"), 1e-9);
+    }
+
+    @Test
+    public void addingNodeMovesKeysOnlyToNewNode() {
+        StableHash<String> before = StableHashStaticFactory.newConsistentHash(nodes(10), WIDE);
+        StableHash<String> after = before.addNode("node-new");
+        for (int i = 0; i < 10_000; i++) {
+            String oldNode = before.getNode("key-" + i).get();
+            String newNode = after.getNode("key-" + i).get();
+            if (!oldNode.equals(newNode)) {
+                Assert.assertEquals("node-new", newNode);
+            }
+        }
+    }
+
+    @Test
+    public void keyedLookupIsConsistentWithReplicas() {
+        KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(
+                StableHashStaticFactory.newConsistentHash(nodes(10), WIDE), KeyHasher.ofLong(Long::longValue));
+        for (long key = 0; key < 5_000; key++) {
+            Assert.assertEquals(keyed.getNode(key).get(), keyed.getNodes(key, 2).iterator().next());
+        }
+    }
+
+    @Test
+    public void collisionsAreResolvedIndependentlyOfNodeOrder() {
+        HashFactory colliding = new CollidingHashFactory();
+        StableHash<String> forward = StableHashStaticFactory.newConsistentHash(colliding, Arrays.asList("a", "b", "c"), WIDE);
+        StableHash<String> backward = StableHashStaticFactory.newConsistentHash(colliding, Arrays.asList("c", "b", "a"), WIDE);
+        Assert.assertTrue(forward.stats().getPointCount() <= 16);
+        for (int i = 0; i < 1_000; i++) {
+            Assert.assertEquals(forward.getNode("key-" + i), backward.getNode("key-" + i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void radixBucketsAreRejected() {
+        StableHashStaticFactory.newConsistentHash(nodes(3), WIDE.withSearchLayout(SearchLayout.RADIX_BUCKETS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyTwoPointSizesAreSupported() {
+        StableHashOptions.defaults().withPointBits(48);
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PrecomputedReplicasTest {
+
+    private Map<String, Integer> weights() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            weights.put("node-" + i, 1 + i % 3);
+        }
+        return weights;
+    }
+
+    private void assertSameReplicas(StableHash<String> expected, StableHash<String> actual, int maxSize) {
+        for (int i = 0; i < 2_000; i++) {
+            String key = "key-" + i;
+            for (int size = 1; size <= maxSize; size++) {
+                Assert.assertEquals(new ArrayList<>(expected.getNodes(key, size)), new ArrayList<>(actual.getNodes(key, size)));
+            }
+        }
+    }
+
+    @Test
+    public void replicasMatchRingWalk() {
+        for (SearchLayout layout : SearchLayout.values()) {
+            StableHash<String> walk = StableHashStaticFactory.newConsistentHash(weights(), StableHashOptions.defaults());
+            StableHash<String> table = StableHashStaticFactory.newConsistentHash(weights(),
+                    StableHashOptions.defaults().withSearchLayout(layout).withPrecomputedReplicas(3));
+            assertSameReplicas(walk, table, 6);
+            assertSameReplicas(walk.addNode("extra").removeNode("node-2"), table.addNode("extra").removeNode("node-2"), 6);
+        }
+    }
+
+    @Test
+    public void tableWiderThanNodeCount() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        weights.put("a", 1);
+        weights.put("b", 2);
+        StableHash<String> walk = StableHashStaticFactory.newConsistentHash(weights);
+        StableHash<String> table = StableHashStaticFactory.newConsistentHash(weights, StableHashOptions.defaults().withPrecomputedReplicas(5));
+        assertSameReplicas(walk, table, 2);
+    }
+
+    @Test
+    public void nodeWithoutPointsIsNotCountedInTableWidth() {
+        for (String[] order : new String[][] {{"b", "a"}, {"a", "b"}}) {
+            Map<String, Integer> weights = new LinkedHashMap<>();
+            for (String node : order) {
+                weights.put(node, node.equals("b") ? 1000 : 1);
+            }
+            StableHash<String> walk = StableHashStaticFactory.newConsistentHash(weights);
+            StableHash<String> table = StableHashStaticFactory.newConsistentHash(weights, StableHashOptions.defaults().withPrecomputedReplicas(2));
+            Assert.assertEquals(0.0d, table.stats().getOwnership("a"), 0.0d);
+            assertSameReplicas(walk, table, 2);
+        }
+    }
+
+    @Test
+    public void downNodesFallBackToRingWalk() {
+        StableHash<String> table = StableHashStaticFactory.newConsistentHash(weights(), StableHashOptions.defaults().withPrecomputedReplicas(3));
+        StableHashStaticFactory.failover(table).markDown("node-4");
+        for (int i = 0; i < 1_000; i++) {
+            Assert.assertFalse(table.getNodes("key-" + i, 3).contains("node-4"));
+        }
+    }
+
+    @Test
+    public void tableIsAccountedInStats() {
+        long without = StableHashStaticFactory.newConsistentHash(weights()).stats().getEstimatedHeapBytes();
+        long with = StableHashStaticFactory.newConsistentHash(weights(), StableHashOptions.defaults().withPrecomputedReplicas(3))
+                .stats().getEstimatedHeapBytes();
+        Assert.assertTrue(with > without);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeReplicasAreRejected() {
+        StableHashOptions.defaults().withPrecomputedReplicas(-1);
+    }
+
+}
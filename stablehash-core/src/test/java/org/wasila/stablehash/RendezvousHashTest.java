@@ -15,11 +15,15 @@
  */
 package org.wasila.stablehash;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.wasila.stablehash.internal.RendezvousHash;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 public class RendezvousHashTest extends TestBase {
 
@@ -120,4 +124,41 @@ public class RendezvousHashTest extends TestBase {
         expectNodes("bbbb", new String[] {"a", "c"});
     }
 
+    @Test
+    public void testUpdateWeightedNode() {
+        List<String> nodes = Arrays.asList(new String[] {"a", "b", "c"});
+        hash = new RendezvousHash<>(nodes);
+        StableHash<String> heavier = hash.updateWeightedNode("a", 10);
+
+        int ownedBefore = 0;
+        int ownedAfter = 0;
+        for (int i = 0; i < 1000; i++) {
+            String before = hash.getNode("key" + i).get();
+            String after = heavier.getNode("key" + i).get();
+            ownedBefore += before.equals("a") ? 1 : 0;
+            ownedAfter += after.equals("a") ? 1 : 0;
+            if (!before.equals(after)) {
+                Assert.assertEquals("a", after);
+            }
+        }
+        Assert.assertTrue(ownedAfter > ownedBefore * 2);
+    }
+
+    @Test
+    public void lookupByHashPicksNodeWithHighestScore() {
+        Map<String, Integer> weights = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            weights.put("node" + i, i % 50 == 0 ? 10_000 : 1 + random.nextInt(100));
+        }
+        StableHash<String> weighted = new RendezvousHash<>(weights);
+        StableHashStaticFactory.failover(weighted).markDown("node0");
+        KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(weighted, KeyHasher.ofLong(Long::longValue));
+
+        // single node lookup skips scoring of nodes which cannot win; top-1 lookup still scores all of them
+        for (long key = 0; key < 5_000; key++) {
+            Assert.assertEquals(keyed.getNodes(key, 1).iterator().next(), keyed.getNode(key).get());
+        }
+    }
+
 }
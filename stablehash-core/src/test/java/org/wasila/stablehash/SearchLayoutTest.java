@@ -0,0 +1,93 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SearchLayoutTest {
+
+    /**
+     * Maps node keys into small key space and keys of form "#value" directly to given value,
+     * so every point of the ring and every gap between points can be looked up.
+     */
+    private static final HashFactory SMALL_SPACE = key -> {
+        long value = key.startsWith("#") ? Long.parseLong(key.substring(1)) : (key.hashCode() * 2654435761L) & 0xFFFF;
+        AuxHashKey hashKey = new AuxHashKey() {
+            @Override
+            public long getHash() {
+                return value;
+            }
+
+            @Override
+            public int compareTo(AuxHashKey o) {
+                return Long.compare(getHash(), o.getHash());
+            }
+        };
+        return Collections.singletonList(hashKey).iterator();
+    };
+
+    @Test
+    public void allLayoutsReturnSameNodes() {
+        for (int nodeCount : new int[] {1, 2, 3, 17, 100}) {
+            Map<String,Integer> weights = new HashMap<>();
+            for (int i = 0; i < nodeCount; i++) {
+                weights.put("node" + i, 1 + i % 4);
+            }
+            StableHash<String> binary = StableHashStaticFactory.newConsistentHash(weights);
+            for (SearchLayout layout : SearchLayout.values()) {
+                StableHash<String> other = StableHashStaticFactory.newConsistentHash(weights,
+                        StableHashOptions.defaults().withSearchLayout(layout));
+                for (int i = 0; i < 2000; i++) {
+                    String key = "key" + i;
+                    Assert.assertEquals(layout + "/" + nodeCount, binary.getNode(key), other.getNode(key));
+                    Assert.assertEquals(layout + "/" + nodeCount,
+                            new ArrayList<>(binary.getNodes(key, 1)), new ArrayList<>(other.getNodes(key, 1)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void allLayoutsAgreeOnEveryPointAndGap() {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 37; i++) {
+            nodes.add("n" + i);
+        }
+        StableHash<String> binary = StableHashStaticFactory.newConsistentHash(SMALL_SPACE, nodes);
+        for (SearchLayout layout : SearchLayout.values()) {
+            StableHash<String> other = StableHashStaticFactory.newConsistentHash(SMALL_SPACE, nodes,
+                    StableHashOptions.defaults().withSearchLayout(layout));
+            for (int value = 0; value <= 0x10000; value++) {
+                String key = "#" + value;
+                Assert.assertEquals(layout + " at " + value, binary.getNode(key), other.getNode(key));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offHeapRequiresBinaryLayout() {
+        StableHashStaticFactory.newConsistentHash(Collections.singletonList("a"),
+                StableHashOptions.defaults().withOffHeap(true).withSearchLayout(SearchLayout.EYTZINGER));
+    }
+
+}
@@ -0,0 +1,188 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wasila.stablehash.stream.RoutedBatch;
+import org.wasila.stablehash.stream.RouterOptions;
+import org.wasila.stablehash.stream.ShardRouter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+public class ShardRouterTest {
+
+    private final KeyedStableHash<Long, String> keyed = StableHashStaticFactory.keyed(
+            StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "b", "c", "d")), KeyHasher.ofLong(Long::longValue));
+
+    @Test
+    public void batchesGroupAllRecordsByNode() {
+        // batches are closed by size only, however slow the test machine is
+        ShardRouter<Long, Long, String> router = new ShardRouter<>(keyed, record -> record,
+                RouterOptions.defaults().withBatchSize(100).withMaxDelay(1, TimeUnit.HOURS));
+
+        List<RoutedBatch<String, Long>> batches = router.batches(LongStream.range(0, 1_050).boxed())
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(11, batches.size());
+        long next = 0;
+        for (RoutedBatch<String, Long> batch : batches) {
+            Assert.assertEquals(next == 1_000 ? 50 : 100, batch.size());
+            List<Long> records = new ArrayList<>();
+            batch.forEach((node, nodeRecords) -> {
+                for (long record : nodeRecords) {
+                    Assert.assertEquals(keyed.getNode(record).get(), node);
+                }
+                records.addAll(nodeRecords);
+            });
+            Assert.assertTrue(batch.getUnrouted().isEmpty());
+            Collections.sort(records);
+            Assert.assertEquals(LongStream.range(next, next + batch.size()).boxed().collect(Collectors.toList()), records);
+            next += batch.size();
+        }
+    }
+
+    @Test
+    public void batchIsPulledOnlyWhenRequested() {
+        AtomicInteger pulled = new AtomicInteger();
+        Spliterator<Long> source = Spliterators.spliteratorUnknownSize(
+                LongStream.range(0, 10_000).peek(record -> pulled.incrementAndGet()).iterator(), Spliterator.ORDERED);
+        Spliterator<RoutedBatch<String, Long>> batches = new ShardRouter<Long, Long, String>(keyed, record -> record,
+                RouterOptions.defaults().withBatchSize(64)).batches(source);
+
+        Assert.assertEquals(0, pulled.get());
+        Assert.assertTrue(batches.tryAdvance(batch -> Assert.assertEquals(64, batch.size())));
+        Assert.assertEquals(64, pulled.get());
+    }
+
+    @Test
+    public void slowSourceClosesBatchesAfterMaxDelay() {
+        Spliterator<Long> slow = new Spliterators.AbstractSpliterator<Long>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            private long next;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Long> action) {
+                if (next == 20) {
+                    return false;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                action.accept(next++);
+                return true;
+            }
+        };
+        ShardRouter<Long, Long, String> router = new ShardRouter<>(keyed, record -> record,
+                RouterOptions.defaults().withMaxDelay(20, TimeUnit.MILLISECONDS));
+
+        List<Integer> sizes = new ArrayList<>();
+        router.batches(slow).forEachRemaining(batch -> sizes.add(batch.size()));
+
+        Assert.assertTrue(sizes.toString(), sizes.size() > 1);
+        Assert.assertEquals(20, sizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    public void queueBatchIsClosedAfterMaxDelayWithoutNextRecord() throws Exception {
+        BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+        Long end = -1L;
+        ShardRouter<Long, Long, String> router = new ShardRouter<>(keyed, record -> record,
+                RouterOptions.defaults().withMaxDelay(20, TimeUnit.MILLISECONDS));
+        Spliterator<RoutedBatch<String, Long>> batches = router.batches(queue, end).spliterator();
+
+        queue.put(1L);
+        queue.put(2L);
+        long start = System.nanoTime();
+        Assert.assertTrue(batches.tryAdvance(batch -> Assert.assertEquals(2, batch.size())));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // the third record is put only after the batch was closed
+        Assert.assertTrue(String.valueOf(waited), waited >= 15 && waited < 5_000);
+
+        queue.put(3L);
+        queue.put(end);
+        Assert.assertTrue(batches.tryAdvance(batch -> Assert.assertEquals(Collections.singletonList(3L), batch.getRecords(keyed.getNode(3L).get()))));
+        Assert.assertFalse(batches.tryAdvance(batch -> Assert.fail()));
+    }
+
+    @Test
+    public void queueBatchesEndAtEndMarker() {
+        BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+        LongStream.range(0, 250).forEach(queue::add);
+        Long end = -1L;
+        queue.add(end);
+        ShardRouter<Long, Long, String> router = new ShardRouter<>(keyed, record -> record,
+                RouterOptions.defaults().withBatchSize(100).withMaxDelay(1, TimeUnit.HOURS));
+
+        List<Integer> sizes = router.batches(queue, end).map(RoutedBatch::size).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(100, 100, 50), sizes);
+    }
+
+    @Test
+    public void zeroDelayRoutesEveryRecordSeparately() {
+        ShardRouter<Long, Long, String> router = new ShardRouter<>(keyed, record -> record,
+                RouterOptions.defaults().withMaxDelay(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(router.batches(LongStream.range(0, 10).boxed()).allMatch(batch -> batch.size() == 1));
+    }
+
+    @Test
+    public void recordsWithoutNodeAreUnrouted() {
+        StableHash<String> hash = StableHashStaticFactory.newRendezvousHash(Arrays.asList("a", "b"));
+        StableHashStaticFactory.failover(hash).markDown("a");
+        StableHashStaticFactory.failover(hash).markDown("b");
+        ShardRouter<String, String, String> router = new ShardRouter<>(
+                StableHashStaticFactory.keyed(hash, KeyHasher.<String>ofLong(String::length)), record -> record,
+                RouterOptions.defaults());
+
+        RoutedBatch<String, String> batch = router.route(Arrays.asList("x", "yy"));
+
+        Assert.assertTrue(batch.getByNode().isEmpty());
+        Assert.assertEquals(Arrays.asList("x", "yy"), batch.getUnrouted());
+        Assert.assertEquals(2, batch.size());
+    }
+
+    @Test
+    public void routerFollowsSuppliedHash() {
+        List<KeyedStableHash<Long, String>> current = new ArrayList<>();
+        current.add(keyed);
+        ShardRouter<Long, Long, String> router = new ShardRouter<>(() -> current.get(0), record -> record,
+                RouterOptions.defaults());
+        current.set(0, keyed.removeNode("a").removeNode("b").removeNode("c"));
+
+        RoutedBatch<String, Long> batch = router.route(Arrays.asList(1L, 2L, 3L));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), batch.getRecords("d"));
+        Assert.assertTrue(batch.getRecords("a").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBatchSizeIsRejected() {
+        RouterOptions.defaults().withBatchSize(0);
+    }
+
+}
@@ -0,0 +1,179 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TopologyDeltaTest {
+
+    private Map<String, Integer> weights(Object... nodesAndWeights) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < nodesAndWeights.length; i += 2) {
+            weights.put((String) nodesAndWeights[i], (Integer) nodesAndWeights[i + 1]);
+        }
+        return weights;
+    }
+
+    private List<StableHash<String>> hashes(Map<String, Integer> weights) {
+        return Arrays.asList(StableHashStaticFactory.newConsistentHash(weights),
+                StableHashStaticFactory.newRendezvousHash(weights),
+                StableHashStaticFactory.newPartitionedHash(weights, 1024));
+    }
+
+    private long fingerprint(StableHash<String> hash) {
+        return StableHashStaticFactory.topology(hash).getFingerprint();
+    }
+
+    @Test
+    public void fingerprintDependsOnNodesAndWeightsOnly() {
+        Map<String, Integer> reversed = new LinkedHashMap<>();
+        reversed.put("c", 3);
+        reversed.put("b", 2);
+        reversed.put("a", 1);
+        long expected = fingerprint(StableHashStaticFactory.newConsistentHash(weights("a", 1, "b", 2, "c", 3)));
+
+        for (StableHash<String> hash : hashes(reversed)) {
+            Assert.assertEquals(expected, fingerprint(hash));
+            Assert.assertEquals(expected, fingerprint(hash.addNode("d").removeNode("d")));
+            Assert.assertNotEquals(expected, fingerprint(hash.updateWeightedNode("a", 2)));
+            Assert.assertNotEquals(expected, fingerprint(hash.removeNode("c")));
+        }
+    }
+
+    @Test
+    public void deltaTurnsBaseIntoTarget() {
+        Map<String, Integer> base = weights("a", 1, "b", 2, "c", 1);
+        Map<String, Integer> target = weights("a", 1, "b", 3, "d", 2);
+        for (int i = 0; i < 3; i++) {
+            StableHash<String> baseHash = hashes(base).get(i);
+            StableHash<String> targetHash = hashes(target).get(i);
+            TopologyDelta<String> delta = TopologyDelta.between(StableHashStaticFactory.topology(baseHash),
+                    StableHashStaticFactory.topology(targetHash));
+
+            Assert.assertEquals("[REMOVE c, REWEIGHT b=3, ADD d=2]", delta.getChanges().toString());
+            StableHash<String> applied = delta.applyTo(baseHash);
+            Assert.assertEquals(target, StableHashStaticFactory.topology(applied).getWeights());
+            Assert.assertEquals(fingerprint(targetHash), fingerprint(applied));
+            Assert.assertSame(applied, delta.applyTo(applied));
+        }
+    }
+
+    @Test
+    public void appliedDeltaRoutesLikeRebuiltInstance() {
+        StableHash<String> base = StableHashStaticFactory.newConsistentHash(weights("a", 1, "b", 1, "c", 1));
+        StableHash<String> target = StableHashStaticFactory.newConsistentHash(weights("a", 1, "b", 2, "c", 1, "d", 1));
+        StableHash<String> applied = TopologyDelta.between(StableHashStaticFactory.topology(base),
+                StableHashStaticFactory.topology(target)).applyTo(base);
+
+        for (int i = 0; i < 5_000; i++) {
+            Assert.assertEquals(target.getNode("key-" + i), applied.getNode("key-" + i));
+        }
+    }
+
+    @Test
+    public void encodedDeltaRoundTrips() {
+        StableHash<String> base = StableHashStaticFactory.newRendezvousHash(weights("a", 1, "b", 2));
+        StableHash<String> target = StableHashStaticFactory.newRendezvousHash(weights("b", 70_000, "za\u017c\u00f3\u0142\u0107", 1));
+        TopologyDelta<String> delta = TopologyDelta.between(StableHashStaticFactory.topology(base),
+                StableHashStaticFactory.topology(target));
+
+        byte[] bytes = delta.encode(node -> node);
+        TopologyDelta<String> decoded = TopologyDelta.decode(bytes, node -> node);
+
+        Assert.assertEquals(delta.toString(), decoded.toString());
+        Assert.assertEquals(1 + 8 + 8 + 1 + (1 + 1 + 1) + (1 + 1 + 1 + 3) + (1 + 1 + 10 + 1), bytes.length);
+        Assert.assertEquals(fingerprint(target), fingerprint(decoded.applyTo(base)));
+    }
+
+    @Test
+    public void malformedBytesAreRejected() {
+        byte[] bytes = TopologyDelta.between(StableHashStaticFactory.topology(StableHashStaticFactory.newConsistentHash(weights("a", 1))),
+                StableHashStaticFactory.topology(StableHashStaticFactory.newConsistentHash(weights("a", 1, "b", 1))))
+                .encode(node -> node);
+        for (byte[] malformed : Arrays.asList(new byte[0], Arrays.copyOf(bytes, bytes.length - 1),
+                Arrays.copyOf(bytes, bytes.length + 1), new byte[] {2})) {
+            try {
+                TopologyDelta.decode(malformed, node -> node);
+                Assert.fail("expected rejection of " + Arrays.toString(malformed));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaForOtherVersionIsRejected() {
+        StableHash<String> base = StableHashStaticFactory.newConsistentHash(weights("a", 1));
+        TopologyDelta<String> delta = TopologyDelta.between(StableHashStaticFactory.topology(base),
+                StableHashStaticFactory.topology(base.addNode("b")));
+        delta.applyTo(base.addNode("c"));
+    }
+
+    @Test
+    public void failoverMarksSurviveDelta() {
+        StableHash<String> base = StableHashStaticFactory.newConsistentHash(weights("a", 1, "b", 1));
+        StableHashStaticFactory.failover(base).markDown("a");
+        TopologyDelta<String> delta = TopologyDelta.between(StableHashStaticFactory.topology(base),
+                StableHashStaticFactory.topology(base.addNode("c")));
+
+        Assert.assertTrue(StableHashStaticFactory.failover(delta.applyTo(base)).isDown("a"));
+    }
+
+    @Test
+    public void clientsFollowFileChannel() throws IOException {
+        Path file = Files.createTempFile("topology", ".deltas");
+        Files.delete(file);
+        try {
+            FileTopologyChannel channel = new FileTopologyChannel(file);
+            FileTopologyChannel.Subscriber early = channel.subscribe();
+
+            StableHash<String> server = StableHashStaticFactory.newConsistentHash(weights("a", 1, "b", 1));
+            StableHash<String> client = StableHashStaticFactory.newConsistentHash(weights("b", 1, "a", 1));
+            Map<String, Integer> expected = new HashMap<>();
+            for (int version = 0; version < 5; version++) {
+                StableHash<String> next = server.addWeightedNode("n" + version, version + 1).removeNode(version % 2 == 0 ? "a" : "n0");
+                channel.publish(TopologyDelta.between(StableHashStaticFactory.topology(server), StableHashStaticFactory.topology(next)));
+                server = next;
+            }
+            expected.putAll(StableHashStaticFactory.topology(server).getWeights());
+
+            for (TopologyDelta<String> delta : early.poll()) {
+                client = delta.applyTo(client);
+            }
+            Assert.assertEquals(fingerprint(server), fingerprint(client));
+            Assert.assertEquals(expected, StableHashStaticFactory.topology(client).getWeights());
+            Assert.assertTrue(early.poll().isEmpty());
+
+            // replaying the channel on an up to date client only hits fingerprint compare of the last delta
+            List<TopologyDelta<String>> replay = channel.subscribe().poll();
+            TopologyDelta<String> last = replay.get(replay.size() - 1);
+            Assert.assertSame(client, last.applyTo(client));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
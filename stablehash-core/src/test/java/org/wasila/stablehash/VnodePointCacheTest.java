@@ -0,0 +1,85 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wasila.stablehash.internal.VnodePointCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class VnodePointCacheTest {
+
+    private final VnodePointCache cache = VnodePointCache.shared();
+
+    private List<String> nodes(String prefix, int from, int to) {
+        List<String> nodes = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            nodes.add(prefix + i);
+        }
+        return nodes;
+    }
+
+    @Test
+    public void tenantsOverOverlappingNodesHashEveryNodeOnce() {
+        String prefix = UUID.randomUUID() + "-node-";
+        long misses = cache.missCount();
+
+        StableHash<String> first = StableHashStaticFactory.newConsistentHash(nodes(prefix, 0, 50));
+        Assert.assertEquals(50, cache.missCount() - misses);
+
+        long hits = cache.hitCount();
+        StableHash<String> second = StableHashStaticFactory.newConsistentHash(nodes(prefix, 25, 75));
+        Assert.assertEquals(75, cache.missCount() - misses);
+        Assert.assertEquals(25, cache.hitCount() - hits);
+
+        StableHash<String> third = StableHashStaticFactory.newConsistentHash(nodes(prefix, 0, 50));
+        Assert.assertEquals(75, cache.missCount() - misses);
+        for (int i = 0; i < 1_000; i++) {
+            Assert.assertEquals(first.getNode("key-" + i), third.getNode("key-" + i));
+        }
+        Assert.assertEquals(50, second.getNodes("key", 50).size());
+    }
+
+    @Test
+    public void pointWidthsAreCachedSeparately() {
+        String prefix = UUID.randomUUID() + "-node-";
+        long misses = cache.missCount();
+
+        StableHash<String> narrow = StableHashStaticFactory.newConsistentHash(nodes(prefix, 0, 10));
+        StableHash<String> wide = StableHashStaticFactory.newConsistentHash(nodes(prefix, 0, 10),
+                StableHashOptions.defaults().withPointBits(64));
+
+        Assert.assertEquals(20, cache.missCount() - misses);
+        Assert.assertEquals(10 * 40 * 3, narrow.stats().getPointCount());
+        Assert.assertEquals(10 * 40 * 2, wide.stats().getPointCount());
+    }
+
+    @Test
+    public void heavierNodeExtendsCachedPoints() {
+        String prefix = UUID.randomUUID() + "-node-";
+        StableHash<String> even = StableHashStaticFactory.newConsistentHash(nodes(prefix, 0, 4));
+        StableHash<String> heavy = even.updateWeightedNode(prefix + 0, 5);
+
+        // 40 virtual nodes per node on average: heavy node gets 40 * 4 * 5 / 8 of them
+        Assert.assertEquals((100 + 3 * 20) * 3, heavy.stats().getPointCount());
+        Assert.assertTrue(cache.pointCount() > 0);
+        Assert.assertTrue(cache.size() > 0);
+    }
+
+}
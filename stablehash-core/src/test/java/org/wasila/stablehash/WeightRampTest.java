@@ -0,0 +1,267 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wasila.stablehash.hotkey.HotKeyAwareStableHash;
+import org.wasila.stablehash.hotkey.HotKeyDetector;
+import org.wasila.stablehash.ramp.Ramp;
+import org.wasila.stablehash.ramp.RampOptions;
+import org.wasila.stablehash.ramp.WeightRamp;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class WeightRampTest {
+
+    private final RampOptions slow = RampOptions.defaults().withSteps(4).withDuration(1, TimeUnit.HOURS);
+
+    private StableHash<String> hash() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        weights.put("a", 100);
+        weights.put("b", 100);
+        weights.put("c", 100);
+        return StableHashStaticFactory.newRendezvousHash(weights);
+    }
+
+    // keyed lookups, as rendezvous scores of plain string lookups are not proportional to weight
+    private Map<String, String> route(StableHash<String> hash) {
+        KeyedStableHash<CharSequence, String> keyed = StableHashStaticFactory.keyed(hash, KeyHasher.ofString());
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            owners.put("key-" + i, keyed.getNode("key-" + i).get());
+        }
+        return owners;
+    }
+
+    private int weight(StableHash<String> hash, String node) {
+        return StableHashStaticFactory.topology(hash).getWeights().getOrDefault(node, 0);
+    }
+
+    private void awaitSteps(Ramp<String> ramp, int steps) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ramp.getCompletedSteps() < steps) {
+            Assert.assertTrue("ramp did not progress in time", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class CancellingHash implements StableHashDecorator<String> {
+
+        private final StableHash<String> delegate;
+        private final Runnable onChange;
+
+        private CancellingHash(StableHash<String> delegate, Runnable onChange) {
+            this.delegate = delegate;
+            this.onChange = onChange;
+        }
+
+        @Override
+        public StableHash<String> getDelegate() {
+            return delegate;
+        }
+
+        @Override
+        public Optional<String> getNode(String key) {
+            return delegate.getNode(key);
+        }
+
+        @Override
+        public Set<String> getNodes(String key, int size) {
+            return delegate.getNodes(key, size);
+        }
+
+        @Override
+        public StableHash<String> addNode(String node) {
+            return addWeightedNode(node, 1);
+        }
+
+        @Override
+        public StableHash<String> addWeightedNode(String node, int weight) {
+            onChange.run();
+            return new CancellingHash(delegate.addWeightedNode(node, weight), onChange);
+        }
+
+        @Override
+        public StableHash<String> updateWeightedNode(String node, int weight) {
+            onChange.run();
+            return new CancellingHash(delegate.updateWeightedNode(node, weight), onChange);
+        }
+
+        @Override
+        public StableHash<String> removeNode(String node) {
+            return new CancellingHash(delegate.removeNode(node), onChange);
+        }
+
+    }
+
+    @Test
+    public void rampReachesTargetWeight() throws Exception {
+        try (WeightRamp<String> ramp = new WeightRamp<>(hash())) {
+            Ramp<String> progress = ramp.ramp("d", 100, RampOptions.defaults().withSteps(5).withDuration(20, TimeUnit.MILLISECONDS));
+
+            StableHash<String> done = progress.completion().get(5, TimeUnit.SECONDS);
+            Assert.assertSame(done, ramp.get());
+            Assert.assertEquals(100, weight(done, "d"));
+            Assert.assertEquals(1.0d, progress.getProgress(), 0.0d);
+            Assert.assertEquals(100, progress.getCurrentWeight());
+        }
+    }
+
+    @Test
+    public void rampKeepsDecoratorOfHash() throws Exception {
+        StableHash<String> decorated = HotKeyAwareStableHash.wrap(hash(), new HotKeyDetector());
+        try (WeightRamp<String> ramp = new WeightRamp<>(decorated)) {
+            Ramp<String> progress = ramp.ramp("d", 100, RampOptions.defaults().withSteps(2).withDuration(0, TimeUnit.SECONDS));
+
+            StableHash<String> done = progress.completion().get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(done instanceof HotKeyAwareStableHash);
+            Assert.assertEquals(100, weight(done, "d"));
+        }
+    }
+
+    @Test
+    public void firstStepMovesOnlyPartOfTheShare() throws Exception {
+        StableHash<String> initial = hash();
+        Map<String, String> before = route(initial);
+        try (WeightRamp<String> ramp = new WeightRamp<>(initial)) {
+            Ramp<String> progress = ramp.ramp("d", 100, slow);
+            awaitSteps(progress, 1);
+
+            Assert.assertEquals(0.25d, progress.getProgress(), 0.0d);
+            Assert.assertEquals(25, weight(ramp.get(), "d"));
+            Map<String, String> after = route(ramp.get());
+            int moved = 0;
+            for (Map.Entry<String, String> entry : before.entrySet()) {
+                if (!entry.getValue().equals(after.get(entry.getKey()))) {
+                    Assert.assertEquals("d", after.get(entry.getKey()));
+                    moved++;
+                }
+            }
+            // 25 / 325 of keys, instead of 100 / 400 if node was added with its full weight
+            Assert.assertEquals(0.077d, moved / 10_000.0d, 0.015d);
+
+            Assert.assertTrue(progress.cancel());
+            Assert.assertTrue(progress.isDone());
+            Assert.assertEquals(25, weight(ramp.get(), "d"));
+        }
+    }
+
+    @Test
+    public void newRampOfNodeSupersedesOldOne() throws Exception {
+        try (WeightRamp<String> ramp = new WeightRamp<>(hash())) {
+            Ramp<String> first = ramp.ramp("d", 100, slow);
+            awaitSteps(first, 1);
+            Ramp<String> second = ramp.ramp("d", 20, RampOptions.defaults().withSteps(2).withDuration(0, TimeUnit.SECONDS));
+
+            Assert.assertTrue(first.completion().isCancelled());
+            Assert.assertEquals(25, second.getStartWeight());
+            Assert.assertEquals(20, weight(second.completion().get(5, TimeUnit.SECONDS), "d"));
+            Assert.assertSame(second, ramp.getRamp("d").get());
+        }
+    }
+
+    @Test
+    public void removedNodeIsNotBroughtBack() throws Exception {
+        try (WeightRamp<String> ramp = new WeightRamp<>(hash())) {
+            Ramp<String> progress = ramp.ramp("d", 100, slow.withDuration(30, TimeUnit.MILLISECONDS));
+            awaitSteps(progress, 1);
+            ramp.update(hash -> hash.removeNode("d").addWeightedNode("e", 100));
+
+            try {
+                progress.completion().get(5, TimeUnit.SECONDS);
+                Assert.assertEquals(4, progress.getCompletedSteps());
+            } catch (CancellationException e) {
+                Assert.assertEquals(0, weight(ramp.get(), "d"));
+            }
+            Assert.assertEquals(100, weight(ramp.get(), "e"));
+        }
+    }
+
+    @Test
+    public void supersededRampsNeverOverwriteLatestOne() throws Exception {
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+        try (WeightRamp<String> ramp = new WeightRamp<>(hash(), executor)) {
+            RampOptions fast = RampOptions.defaults().withSteps(3).withDuration(0, TimeUnit.SECONDS);
+            Ramp<String> last = null;
+            for (int i = 1; i <= 200; i++) {
+                last = ramp.ramp("d", i, fast);
+            }
+            last.completion().get(5, TimeUnit.SECONDS);
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            Assert.assertEquals(200, weight(ramp.get(), "d"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failingStepCompletesRampExceptionally() throws Exception {
+        try (WeightRamp<String> ramp = new WeightRamp<>(hash())) {
+            Ramp<String> progress = ramp.ramp("d", 100, slow.withDuration(30, TimeUnit.MILLISECONDS));
+            // hierarchical hash does not support topology versioning, so weights cannot be read by next step
+            ramp.update(hash -> StableHashStaticFactory.newHierarchicalHash(StableHashStaticFactory.topology(hash).getWeights(),
+                    node -> Collections.singletonList("rack"), 0));
+            try {
+                progress.completion().get(5, TimeUnit.SECONDS);
+                Assert.fail("expected failed ramp");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+            Assert.assertTrue(progress.isDone());
+        }
+    }
+
+    @Test
+    public void stepPublishedJustBeforeCancelIsReported() throws Exception {
+        AtomicReference<WeightRamp<String>> owner = new AtomicReference<>();
+        // cancels the ramp while its step is being published, after the step's weight was computed
+        StableHash<String> cancelling = new CancellingHash(hash(), () -> owner.get().getRamp("d").get().cancel());
+        try (WeightRamp<String> ramp = new WeightRamp<>(cancelling)) {
+            owner.set(ramp);
+            Ramp<String> progress = ramp.ramp("d", 100, slow);
+
+            try {
+                progress.completion().get(5, TimeUnit.SECONDS);
+                Assert.fail("expected cancelled ramp");
+            } catch (CancellationException e) {
+                // expected
+            }
+            // cancellation is seen before the step is published; the step is still reported once it is
+            awaitSteps(progress, 1);
+            Assert.assertEquals(25, weight(ramp.get(), "d"));
+            Assert.assertEquals(25, progress.getCurrentWeight());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidStepsAreRejected() {
+        RampOptions.defaults().withSteps(0);
+    }
+
+}
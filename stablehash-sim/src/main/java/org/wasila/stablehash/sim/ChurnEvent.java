@@ -0,0 +1,75 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import org.wasila.stablehash.StableHash;
+
+/**
+ * Single membership change applied at given tick of simulation.
+ */
+public final class ChurnEvent {
+
+    enum Type { ADD, REMOVE, WEIGHT }
+
+    private final int tick;
+    private final Type type;
+    private final String node;
+    private final int weight;
+
+    private ChurnEvent(int tick, Type type, String node, int weight) {
+        this.tick = tick;
+        this.type = type;
+        this.node = node;
+        this.weight = weight;
+    }
+
+    public static ChurnEvent add(int tick, String node, int weight) {
+        return new ChurnEvent(tick, Type.ADD, node, weight);
+    }
+
+    public static ChurnEvent remove(int tick, String node) {
+        return new ChurnEvent(tick, Type.REMOVE, node, 0);
+    }
+
+    public static ChurnEvent weight(int tick, String node, int weight) {
+        return new ChurnEvent(tick, Type.WEIGHT, node, weight);
+    }
+
+    StableHash<String> apply(StableHash<String> hash) {
+        switch (type) {
+            case ADD:
+                return hash.addWeightedNode(node, weight);
+            case REMOVE:
+                return hash.removeNode(node);
+            default:
+                return hash.updateWeightedNode(node, weight);
+        }
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.REMOVE ? "remove " + node : type.name().toLowerCase() + " " + node + "=" + weight;
+    }
+
+}
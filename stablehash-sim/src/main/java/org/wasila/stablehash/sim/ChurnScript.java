@@ -0,0 +1,74 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Scripted sequence of membership changes.
+ */
+public final class ChurnScript {
+
+    private final List<ChurnEvent> events = new ArrayList<>();
+
+    public ChurnScript add(int tick, String node, int weight) {
+        events.add(ChurnEvent.add(tick, node, weight));
+        return this;
+    }
+
+    public ChurnScript remove(int tick, String node) {
+        events.add(ChurnEvent.remove(tick, node));
+        return this;
+    }
+
+    public ChurnScript weight(int tick, String node, int weight) {
+        events.add(ChurnEvent.weight(tick, node, weight));
+        return this;
+    }
+
+    /**
+     * Adds node with weight {@code from} at {@code startTick} and raises its weight linearly to {@code to}
+     * in given number of steps, one step every {@code ticksPerStep} ticks.
+     */
+    public ChurnScript ramp(int startTick, String node, int from, int to, int steps, int ticksPerStep) {
+        add(startTick, node, from);
+        for (int step = 1; step <= steps; step++) {
+            int weight = from + (int) Math.round((to - from) * (double) step / steps);
+            weight(startTick + step * ticksPerStep, node, weight);
+        }
+        return this;
+    }
+
+    List<ChurnEvent> eventsAt(int tick) {
+        List<ChurnEvent> result = new ArrayList<>();
+        for (ChurnEvent event : events) {
+            if (event.getTick() == tick) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    public List<ChurnEvent> getEvents() {
+        List<ChurnEvent> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparingInt(ChurnEvent::getTick));
+        return Collections.unmodifiableList(sorted);
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import org.wasila.stablehash.AuxHashKey;
+import org.wasila.stablehash.HashFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link HashFactory} over any {@link MessageDigest}: auxiliary hashes are consecutive 4 byte little-endian words
+ * of the digest, like in the default MD5 based factory, so digests can be compared with each other.
+ */
+public final class DigestHashFactory implements HashFactory {
+
+    private final String algorithm;
+
+    /**
+     * @param algorithm Name of digest algorithm, eg. {@code SHA-1}
+     * @throws IllegalArgumentException if algorithm is not available
+     */
+    public DigestHashFactory(String algorithm) {
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown digest algorithm: " + algorithm, e);
+        }
+        this.algorithm = algorithm;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public Iterator<AuxHashKey> iterator(String key) {
+        byte[] digest = digest(key);
+        return new Iterator<AuxHashKey>() {
+
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                return offset + 4 <= digest.length;
+            }
+
+            @Override
+            public AuxHashKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long value = (digest[offset] & 0xFFL) | (digest[offset + 1] & 0xFFL) << 8
+                        | (digest[offset + 2] & 0xFFL) << 16 | (digest[offset + 3] & 0xFFL) << 24;
+                offset += 4;
+                return new Key(value);
+            }
+
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DigestHashFactory && algorithm.equals(((DigestHashFactory) o).algorithm);
+    }
+
+    @Override
+    public int hashCode() {
+        return algorithm.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return algorithm;
+    }
+
+    private byte[] digest(String key) {
+        try {
+            return MessageDigest.getInstance(algorithm).digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Key implements AuxHashKey {
+
+        private final long value;
+
+        private Key(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long getHash() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(AuxHashKey other) {
+            return Long.compare(value, other.getHash());
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+/**
+ * Synthetic stream of keys. Keys are picked from a fixed key space of {@code "key-0"} to {@code "key-(n-1)"}.
+ */
+public interface KeyDistribution {
+
+    /**
+     * Maps uniform random value to index of a key.
+     *
+     * @param uniform   Value in range [0, 1)
+     * @return          Index of key in range [0, keySpace)
+     */
+    int keyIndex(double uniform);
+
+    int getKeySpace();
+
+    static KeyDistribution uniform(int keySpace) {
+        return new KeyDistribution() {
+            @Override
+            public int keyIndex(double uniform) {
+                return (int) (uniform * keySpace);
+            }
+
+            @Override
+            public int getKeySpace() {
+                return keySpace;
+            }
+
+            @Override
+            public String toString() {
+                return "uniform(" + keySpace + ")";
+            }
+        };
+    }
+
+    /**
+     * Zipfian distribution where key of rank {@code k} is drawn with probability proportional to {@code 1 / k^exponent}.
+     *
+     * @param keySpace  Number of distinct keys
+     * @param exponent  Skew; 0 is uniform, values around 1 match typical web workloads
+     * @return          Distribution
+     */
+    static KeyDistribution zipfian(int keySpace, double exponent) {
+        double[] cdf = new double[keySpace];
+        double sum = 0.0d;
+        for (int i = 0; i < keySpace; i++) {
+            sum += 1.0d / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < keySpace; i++) {
+            cdf[i] /= sum;
+        }
+        return new KeyDistribution() {
+            @Override
+            public int keyIndex(double uniform) {
+                int low = 0;
+                int high = keySpace - 1;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (cdf[mid] < uniform) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                return low;
+            }
+
+            @Override
+            public int getKeySpace() {
+                return keySpace;
+            }
+
+            @Override
+            public String toString() {
+                return "zipfian(" + keySpace + ", " + exponent + ")";
+            }
+        };
+    }
+
+}
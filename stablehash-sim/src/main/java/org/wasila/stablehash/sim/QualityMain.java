@@ -0,0 +1,79 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs {@link QualitySuite} with default scenarios and writes JSON results.
+ *
+ * Usage: {@code QualityMain [--nodes 3,10,100] [--keys 100000] [--lookups keyed,string] [--repeats 3] [--seed 42]
+ * [--out results.json]}; without {@code --out} JSON is printed to standard output. Human readable summary goes to
+ * standard error. Run with {@code -Dstablehash.vnodeCache.maxPoints=0} to measure cold builds.
+ */
+public class QualityMain {
+
+    public static void main(String[] args) throws IOException {
+        QualitySuite suite = new QualitySuite();
+        String out = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--nodes":
+                    suite.nodeCounts(Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray());
+                    break;
+                case "--keys":
+                    suite.probeKeys(Integer.parseInt(value));
+                    break;
+                case "--lookups":
+                    suite.lookups(Arrays.stream(value.split(","))
+                            .map(lookup -> QualitySuite.Lookup.valueOf(lookup.toUpperCase(Locale.ROOT)))
+                            .toArray(QualitySuite.Lookup[]::new));
+                    break;
+                case "--repeats":
+                    suite.buildRepeats(Integer.parseInt(value));
+                    break;
+                case "--seed":
+                    suite.seed(Long.parseLong(value));
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<QualityResult> results = suite.run();
+        results.forEach(System.err::println);
+        String json = suite.toJson(results);
+        if (out == null) {
+            System.out.println(json);
+        } else {
+            Files.write(Paths.get(out), json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+}
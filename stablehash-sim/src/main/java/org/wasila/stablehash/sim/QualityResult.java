@@ -0,0 +1,201 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+/**
+ * Distribution quality of one algorithm and hash factory at one node count and lookup path, as measured by
+ * {@link QualitySuite}.
+ *
+ * Moved fractions are fractions of probe keys routed to a different node after the change; optimal values are
+ * the fractions which have to move at least (the new node's share, the removed node's share or the share gained
+ * by the reweighted node). Reweighted share tells whether the lookup path honours weights proportionally.
+ */
+public final class QualityResult {
+
+    private final String algorithm;
+    private final String hashFactory;
+    private final String lookup;
+    private final int nodes;
+    private final int probeKeys;
+    private final double peakToMean;
+    private final double standardDeviation;
+    private final boolean balanceSampled;
+    private final int pointCount;
+    private final double heapBytesPerNode;
+    private final double buildMillis;
+    private final double movedOnAdd;
+    private final double movedOnRemove;
+    private final double movedOnReweight;
+    private final double reweightedShare;
+
+    QualityResult(String algorithm, String hashFactory, String lookup, int nodes, int probeKeys, double peakToMean,
+                  double standardDeviation, boolean balanceSampled, int pointCount, double heapBytesPerNode,
+                  double buildMillis, double movedOnAdd, double movedOnRemove, double movedOnReweight,
+                  double reweightedShare) {
+        this.algorithm = algorithm;
+        this.hashFactory = hashFactory;
+        this.lookup = lookup;
+        this.nodes = nodes;
+        this.probeKeys = probeKeys;
+        this.peakToMean = peakToMean;
+        this.standardDeviation = standardDeviation;
+        this.balanceSampled = balanceSampled;
+        this.pointCount = pointCount;
+        this.heapBytesPerNode = heapBytesPerNode;
+        this.buildMillis = buildMillis;
+        this.movedOnAdd = movedOnAdd;
+        this.movedOnRemove = movedOnRemove;
+        this.movedOnReweight = movedOnReweight;
+        this.reweightedShare = reweightedShare;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getHashFactory() {
+        return hashFactory;
+    }
+
+    /**
+     * @return {@code keyed} or {@code string}, see {@link QualitySuite.Lookup}
+     */
+    public String getLookup() {
+        return lookup;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getProbeKeys() {
+        return probeKeys;
+    }
+
+    /**
+     * @return ratio of the biggest ownership to the mean ownership
+     */
+    public double getPeakToMean() {
+        return peakToMean;
+    }
+
+    /**
+     * @return standard deviation of ownership fractions
+     */
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * @return true if balance was estimated from probe keys, false if it was computed exactly
+     */
+    public boolean isBalanceSampled() {
+        return balanceSampled;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return estimated heap of the hash structure divided by number of nodes
+     */
+    public double getHeapBytesPerNode() {
+        return heapBytesPerNode;
+    }
+
+    /**
+     * @return the fastest of repeated builds (construction and first lookup); builds are cold only when
+     *         the vnode point cache of core is disabled
+     */
+    public double getBuildMillis() {
+        return buildMillis;
+    }
+
+    public double getMovedOnAdd() {
+        return movedOnAdd;
+    }
+
+    public double getOptimalOnAdd() {
+        return 1.0d / (nodes + 1);
+    }
+
+    public double getMovedOnRemove() {
+        return movedOnRemove;
+    }
+
+    public double getOptimalOnRemove() {
+        return 1.0d / nodes;
+    }
+
+    /**
+     * @return fraction of keys moved when weight of one node is doubled
+     */
+    public double getMovedOnReweight() {
+        return movedOnReweight;
+    }
+
+    public double getOptimalOnReweight() {
+        return 2.0d / (nodes + 1) - 1.0d / nodes;
+    }
+
+    /**
+     * @return probed share of the node with doubled weight divided by its proportional share; 1 is optimal
+     */
+    public double getReweightedShare() {
+        return reweightedShare;
+    }
+
+    /**
+     * @return result as JSON object
+     */
+    public String toJson() {
+        return "{" +
+                "\"algorithm\":\"" + algorithm + "\"" +
+                ",\"hashFactory\":\"" + hashFactory + "\"" +
+                ",\"lookup\":\"" + lookup + "\"" +
+                ",\"nodes\":" + nodes +
+                ",\"probeKeys\":" + probeKeys +
+                ",\"peakToMean\":" + number(peakToMean) +
+                ",\"standardDeviation\":" + number(standardDeviation) +
+                ",\"balanceSampled\":" + balanceSampled +
+                ",\"pointCount\":" + pointCount +
+                ",\"heapBytesPerNode\":" + number(heapBytesPerNode) +
+                ",\"buildMillis\":" + number(buildMillis) +
+                ",\"movedOnAdd\":" + number(movedOnAdd) +
+                ",\"optimalOnAdd\":" + number(getOptimalOnAdd()) +
+                ",\"movedOnRemove\":" + number(movedOnRemove) +
+                ",\"optimalOnRemove\":" + number(getOptimalOnRemove()) +
+                ",\"movedOnReweight\":" + number(movedOnReweight) +
+                ",\"optimalOnReweight\":" + number(getOptimalOnReweight()) +
+                ",\"reweightedShare\":" + number(reweightedShare) +
+                "}";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-14s %-8s %-6s %6d nodes  peak-to-mean %.3f%s  moved add %.5f/%.5f remove %.5f/%.5f"
+                        + " reweight %.5f/%.5f share %.3f  %.0f B/node  build %.2f ms",
+                algorithm, hashFactory, lookup, nodes, peakToMean, balanceSampled ? "~" : " ",
+                movedOnAdd, getOptimalOnAdd(), movedOnRemove, getOptimalOnRemove(),
+                movedOnReweight, getOptimalOnReweight(), reweightedShare, heapBytesPerNode, buildMillis);
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+    }
+
+}
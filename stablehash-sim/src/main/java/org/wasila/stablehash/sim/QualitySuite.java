@@ -0,0 +1,347 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import org.wasila.stablehash.HashFactory;
+import org.wasila.stablehash.HashStats;
+import org.wasila.stablehash.KeyHasher;
+import org.wasila.stablehash.KeyedStableHash;
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashOptions;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code QualitySuite} class measures distribution quality of hashing algorithms: balance, fraction of keys
+ * moved by adding, removing and reweighting a node, memory per node and build time, for every scenario (algorithm
+ * and hash factory) and node count. Results can be written as JSON to track regressions between versions.
+ *
+ * Nodes are named {@code node-0} to {@code node-(n-1)}, all of weight 1; node {@code node-n} is added, {@code node-0}
+ * is removed or gets weight 2. Probe keys are routed through every {@link Lookup} path: keyed lookups hash keys with
+ * the built-in streaming hash, so hash factory of a scenario affects only placement of nodes there, while string
+ * lookups hash keys with the scenario's hash factory. Balance is exact when the algorithm computes it exactly,
+ * otherwise it is estimated from probe keys of the lookup path and its noise depends on number of probe keys per
+ * node. Keys derive from seed only, so runs are reproducible.
+ *
+ * Build time is the fastest of repeated builds. Core caches ring points of virtual nodes process wide, so repeated
+ * builds are cold only if the cache is disabled with {@code -Dstablehash.vnodeCache.maxPoints=0}, as the
+ * {@code qualitySuite} task does; the property is reported in JSON.
+ */
+public final class QualitySuite {
+
+    private static final String VNODE_CACHE_PROPERTY = "stablehash.vnodeCache.maxPoints";
+
+    private List<Scenario> scenarios = defaultScenarios();
+    private Set<Lookup> lookups = EnumSet.allOf(Lookup.class);
+    private int[] nodeCounts = {3, 10, 100, 1000, 10_000};
+    private int probeKeys = 100_000;
+    private int buildRepeats = 3;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long seed = 42;
+
+    /**
+     * Path through which probe keys are routed.
+     */
+    public enum Lookup {
+
+        /**
+         * {@link KeyedStableHash} view with {@link KeyHasher#ofString()}; keys are hashed with built-in streaming hash.
+         */
+        KEYED,
+
+        /**
+         * {@link StableHash#getNode(String)}; keys are hashed with hash factory of the scenario.
+         */
+        STRING;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+    }
+
+    /**
+     * Algorithm with its settings and hash factory.
+     */
+    public static final class Scenario {
+
+        private final String algorithm;
+        private final String hashFactory;
+        private final Function<Map<String, Integer>, StableHash<String>> builder;
+        private final int maxStringLookupNodes;
+
+        /**
+         * @param algorithm     Name of algorithm and its settings
+         * @param hashFactory   Name of hash factory
+         * @param builder       Builds instance of given nodes and weights
+         */
+        public Scenario(String algorithm, String hashFactory, Function<Map<String, Integer>, StableHash<String>> builder) {
+            this(algorithm, hashFactory, builder, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param algorithm             Name of algorithm and its settings
+         * @param hashFactory           Name of hash factory
+         * @param builder               Builds instance of given nodes and weights
+         * @param maxStringLookupNodes  Largest node count probed with string lookups, for algorithms whose string
+         *                              lookup costs a digest per node
+         */
+        public Scenario(String algorithm, String hashFactory, Function<Map<String, Integer>, StableHash<String>> builder,
+                        int maxStringLookupNodes) {
+            this.algorithm = algorithm;
+            this.hashFactory = hashFactory;
+            this.builder = builder;
+            this.maxStringLookupNodes = maxStringLookupNodes;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public String getHashFactory() {
+            return hashFactory;
+        }
+
+    }
+
+    /**
+     * @return consistent hashing with 32 and 64-bit points and rendezvous hashing over MD5 (default), SHA-1
+     *         and SHA-256 digests, and fixed partitions (which use built-in streaming hash only); string lookups
+     *         of rendezvous hashing are probed up to 1000 nodes
+     */
+    public static List<Scenario> defaultScenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new Scenario("consistent", "MD5", StableHashStaticFactory::newConsistentHash));
+        scenarios.add(new Scenario("consistent-64", "MD5",
+                weights -> StableHashStaticFactory.newConsistentHash(weights, StableHashOptions.defaults().withPointBits(64))));
+        scenarios.add(new Scenario("rendezvous", "MD5", StableHashStaticFactory::newRendezvousHash, 1000));
+        for (String digest : Arrays.asList("SHA-1", "SHA-256")) {
+            HashFactory factory = new DigestHashFactory(digest);
+            scenarios.add(new Scenario("consistent", digest, weights -> StableHashStaticFactory.newConsistentHash(factory, weights)));
+            scenarios.add(new Scenario("consistent-64", digest, weights -> StableHashStaticFactory.newConsistentHash(factory, weights,
+                    StableHashOptions.defaults().withPointBits(64))));
+            scenarios.add(new Scenario("rendezvous", digest, weights -> StableHashStaticFactory.newRendezvousHash(factory, weights), 1000));
+        }
+        scenarios.add(new Scenario("partitioned-64k", "streaming", weights -> StableHashStaticFactory.newPartitionedHash(weights, 1 << 16)));
+        return scenarios;
+    }
+
+    public QualitySuite scenarios(List<Scenario> scenarios) {
+        this.scenarios = new ArrayList<>(scenarios);
+        return this;
+    }
+
+    public QualitySuite lookups(Lookup... lookups) {
+        if (lookups.length == 0) {
+            throw new IllegalArgumentException("Invalid lookups: none; should be at least one.");
+        }
+        this.lookups = EnumSet.copyOf(Arrays.asList(lookups));
+        return this;
+    }
+
+    public QualitySuite nodeCounts(int... nodeCounts) {
+        for (int nodeCount : nodeCounts) {
+            if (nodeCount < 1) {
+                throw new IllegalArgumentException("Invalid node count: " + nodeCount + "; should be > 0.");
+            }
+        }
+        this.nodeCounts = nodeCounts.clone();
+        return this;
+    }
+
+    /**
+     * @param probeKeys Number of keys routed to measure key movement (and balance if not computed exactly)
+     */
+    public QualitySuite probeKeys(int probeKeys) {
+        if (probeKeys < 1) {
+            throw new IllegalArgumentException("Invalid number of probe keys: " + probeKeys + "; should be > 0.");
+        }
+        this.probeKeys = probeKeys;
+        return this;
+    }
+
+    /**
+     * @param buildRepeats Number of builds timed; the fastest one is reported
+     */
+    public QualitySuite buildRepeats(int buildRepeats) {
+        if (buildRepeats < 1) {
+            throw new IllegalArgumentException("Invalid number of build repeats: " + buildRepeats + "; should be > 0.");
+        }
+        this.buildRepeats = buildRepeats;
+        return this;
+    }
+
+    public QualitySuite parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public QualitySuite seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public List<QualityResult> run() {
+        List<QualityResult> results = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            String[] keys = IntStream.range(0, probeKeys).mapToObj(i -> "key-" + seed + "-" + i).toArray(String[]::new);
+            for (Scenario scenario : scenarios) {
+                for (int nodeCount : nodeCounts) {
+                    results.addAll(measure(scenario, nodeCount, keys, pool));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * @return results as JSON document with suite settings and environment
+     */
+    public String toJson(List<QualityResult> results) {
+        return "{" +
+                "\"suite\":\"distribution-quality\"" +
+                ",\"version\":1" +
+                ",\"seed\":" + seed +
+                ",\"probeKeys\":" + probeKeys +
+                ",\"buildRepeats\":" + buildRepeats +
+                ",\"javaVersion\":\"" + System.getProperty("java.version") + "\"" +
+                ",\"vnodeCacheMaxPoints\":" + Long.getLong(VNODE_CACHE_PROPERTY) +
+                ",\"results\":[\n" +
+                results.stream().map(QualityResult::toJson).collect(Collectors.joining(",\n")) +
+                "\n]}";
+    }
+
+    private List<QualityResult> measure(Scenario scenario, int nodeCount, String[] keys, ForkJoinPool pool) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < nodeCount; i++) {
+            weights.put("node-" + i, 1);
+        }
+
+        double buildMillis = Double.MAX_VALUE;
+        StableHash<String> hash = null;
+        for (int i = 0; i < buildRepeats; i++) {
+            long started = System.nanoTime();
+            hash = scenario.builder.apply(weights);
+            hash.getNode(keys[0]);
+            buildMillis = Math.min(buildMillis, (System.nanoTime() - started) / 1e6d);
+        }
+        HashStats<String> stats = hash.stats();
+        StableHash<String> added = hash.addNode("node-" + nodeCount);
+        StableHash<String> removed = hash.removeNode("node-0");
+        StableHash<String> reweighted = hash.updateWeightedNode("node-0", 2);
+
+        List<QualityResult> results = new ArrayList<>();
+        for (Lookup lookup : lookups) {
+            if (lookup == Lookup.STRING && nodeCount > scenario.maxStringLookupNodes) {
+                continue;
+            }
+            String[] owners = route(hash, keys, pool, lookup);
+            double peakToMean = stats.getPeakToMean();
+            double standardDeviation = stats.getStandardDeviation();
+            if (stats.isSampled()) {
+                HashStats<String> probed = probedStats(weights, owners);
+                peakToMean = probed.getPeakToMean();
+                standardDeviation = probed.getStandardDeviation();
+            }
+
+            String[] reweightedOwners = route(reweighted, keys, pool, lookup);
+            double movedOnAdd = moved(owners, route(added, keys, pool, lookup));
+            double movedOnRemove = moved(owners, route(removed, keys, pool, lookup));
+            double movedOnReweight = moved(owners, reweightedOwners);
+            double reweightedShare = share(reweightedOwners, "node-0") / (2.0d / (nodeCount + 1));
+
+            results.add(new QualityResult(scenario.algorithm, scenario.hashFactory, lookup.label(), nodeCount, keys.length,
+                    peakToMean, standardDeviation, stats.isSampled(), stats.getPointCount(),
+                    stats.getEstimatedHeapBytes() / (double) nodeCount, buildMillis, movedOnAdd, movedOnRemove,
+                    movedOnReweight, reweightedShare));
+        }
+        return results;
+    }
+
+    private static String[] route(StableHash<String> hash, String[] keys, ForkJoinPool pool, Lookup lookup) {
+        Function<String, Optional<String>> lookupNode;
+        if (lookup == Lookup.KEYED) {
+            KeyedStableHash<CharSequence, String> keyed = StableHashStaticFactory.keyed(hash, KeyHasher.ofString());
+            lookupNode = keyed::getNode;
+        } else {
+            lookupNode = hash::getNode;
+        }
+        String[] owners = new String[keys.length];
+        try {
+            pool.submit(() -> IntStream.range(0, keys.length).parallel()
+                    .forEach(i -> owners[i] = lookupNode.apply(keys[i]).orElse(null))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return owners;
+    }
+
+    private static double share(String[] owners, String node) {
+        int owned = 0;
+        for (String owner : owners) {
+            if (node.equals(owner)) {
+                owned++;
+            }
+        }
+        return owned / (double) owners.length;
+    }
+
+    private static double moved(String[] before, String[] after) {
+        int moved = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] == null ? after[i] != null : !before[i].equals(after[i])) {
+                moved++;
+            }
+        }
+        return moved / (double) before.length;
+    }
+
+    private static HashStats<String> probedStats(Map<String, Integer> weights, String[] owners) {
+        Map<String, Double> ownership = new HashMap<>();
+        for (String node : weights.keySet()) {
+            ownership.put(node, 0.0d);
+        }
+        double share = 1.0d / owners.length;
+        for (String owner : owners) {
+            if (owner != null) {
+                ownership.merge(owner, share, Double::sum);
+            }
+        }
+        return new HashStats<>(ownership, 0, 0, true);
+    }
+
+}
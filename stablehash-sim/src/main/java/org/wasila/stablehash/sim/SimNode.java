@@ -0,0 +1,88 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in of a cache node. It serves at most {@code capacity} requests per tick and keeps
+ * LRU cache of recently served keys, so cache hit loss after membership changes can be observed.
+ */
+final class SimNode {
+
+    private final String name;
+    private final int capacity;
+    private final Map<String, Boolean> cache;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder tickRequests = new LongAdder();
+
+    SimNode(String name, int capacity, int cacheSize) {
+        this.name = name;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return true if request was served from cache
+     */
+    boolean serve(String key) {
+        tickRequests.increment();
+        if (tickRequests.sum() > capacity) {
+            rejected.increment();
+            return false;
+        }
+        served.increment();
+        boolean hit;
+        synchronized (cache) {
+            hit = cache.put(key, Boolean.TRUE) != null;
+        }
+        if (hit) {
+            hits.increment();
+        }
+        return hit;
+    }
+
+    void startTick() {
+        tickRequests.reset();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getServed() {
+        return served.sum();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+}
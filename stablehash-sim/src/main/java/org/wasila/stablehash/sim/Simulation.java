@@ -0,0 +1,193 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import org.wasila.stablehash.StableHash;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code Simulation} class drives any {@link StableHash} with synthetic key stream and scripted
+ * membership churn. Every tick routes given number of requests in parallel on a fork-join pool to
+ * in-process stand-in nodes with capacity limits and LRU caches, then reports throughput, per node
+ * load, fraction of keys moved by every change and cache hit rate around it.
+ *
+ * Keys are derived deterministically from seed, tick and request number, so runs are reproducible
+ * regardless of parallelism.
+ */
+public final class Simulation {
+
+    private final StableHash<String> initialHash;
+    private final KeyDistribution keys;
+
+    private ChurnScript churn = new ChurnScript();
+    private int ticks = 20;
+    private int requestsPerTick = 100_000;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int nodeCapacity = Integer.MAX_VALUE;
+    private int cacheSize = 10_000;
+    private int probeKeys = 10_000;
+    private long seed = 42;
+
+    public Simulation(StableHash<String> hash, KeyDistribution keys) {
+        this.initialHash = hash;
+        this.keys = keys;
+    }
+
+    public Simulation churn(ChurnScript churn) {
+        this.churn = churn;
+        return this;
+    }
+
+    public Simulation ticks(int ticks) {
+        this.ticks = ticks;
+        return this;
+    }
+
+    public Simulation requestsPerTick(int requestsPerTick) {
+        this.requestsPerTick = requestsPerTick;
+        return this;
+    }
+
+    public Simulation parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param nodeCapacity Requests per tick every node can serve; requests above are rejected
+     */
+    public Simulation nodeCapacity(int nodeCapacity) {
+        this.nodeCapacity = nodeCapacity;
+        return this;
+    }
+
+    /**
+     * @param cacheSize Number of keys every node keeps in its LRU cache
+     */
+    public Simulation cacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    /**
+     * @param probeKeys Number of keys used to measure key movement on every change
+     */
+    public Simulation probeKeys(int probeKeys) {
+        this.probeKeys = probeKeys;
+        return this;
+    }
+
+    public Simulation seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public SimulationReport run() {
+        Map<String, SimNode> nodes = new ConcurrentHashMap<>();
+        List<SimulationReport.Change> changes = new ArrayList<>();
+        double[] hitRates = new double[ticks];
+        LongAdder unrouted = new LongAdder();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        StableHash<String> hash = initialHash;
+        long started = System.nanoTime();
+        try {
+            for (int tick = 0; tick < ticks; tick++) {
+                for (ChurnEvent event : churn.eventsAt(tick)) {
+                    StableHash<String> changed = event.apply(hash);
+                    changes.add(new SimulationReport.Change(tick, event.toString(), movedFraction(hash, changed)));
+                    hash = changed;
+                }
+
+                nodes.values().forEach(SimNode::startTick);
+                long hitsBefore = totalHits(nodes);
+                long servedBefore = totalServed(nodes);
+
+                StableHash<String> current = hash;
+                int currentTick = tick;
+                pool.submit(() -> IntStream.range(0, requestsPerTick).parallel().forEach(request -> {
+                    String key = key(currentTick, request);
+                    Optional<String> node = current.getNode(key);
+                    if (node.isPresent()) {
+                        nodes.computeIfAbsent(node.get(), name -> new SimNode(name, nodeCapacity, cacheSize)).serve(key);
+                    } else {
+                        unrouted.increment();
+                    }
+                })).get();
+
+                long served = totalServed(nodes) - servedBefore;
+                hitRates[tick] = served == 0 ? 0.0d : (double) (totalHits(nodes) - hitsBefore) / served;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("simulation interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("simulation failed", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Map<String, SimulationReport.NodeLoad> loads = new LinkedHashMap<>();
+        nodes.values().stream()
+                .sorted((a, b) -> a.getName().compareTo(b.getName()))
+                .forEach(node -> loads.put(node.getName(),
+                        new SimulationReport.NodeLoad(node.getServed(), node.getRejected(), node.getHits())));
+
+        return new SimulationReport(keys.toString(), (long) ticks * requestsPerTick, unrouted.sum(), elapsed,
+                loads, changes, hitRates);
+    }
+
+    private String key(int tick, int request) {
+        long mixed = seed ^ ((long) tick << 32 | request);
+        mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+        mixed ^= mixed >>> 31;
+        double uniform = (mixed >>> 11) * 0x1.0p-53;
+        return "key-" + keys.keyIndex(uniform);
+    }
+
+    private double movedFraction(StableHash<String> before, StableHash<String> after) {
+        int probes = Math.min(probeKeys, keys.getKeySpace());
+        int moved = 0;
+        for (int i = 0; i < probes; i++) {
+            String key = "key-" + i;
+            if (!before.getNode(key).equals(after.getNode(key))) {
+                moved++;
+            }
+        }
+        return probes == 0 ? 0.0d : (double) moved / probes;
+    }
+
+    private static long totalHits(Map<String, SimNode> nodes) {
+        return nodes.values().stream().mapToLong(SimNode::getHits).sum();
+    }
+
+    private static long totalServed(Map<String, SimNode> nodes) {
+        return nodes.values().stream().mapToLong(SimNode::getServed).sum();
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import org.wasila.stablehash.StableHash;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs example scenario: 10 nodes under Zipfian load, one node added, one removed and one ramped up,
+ * for both consistent and rendezvous hashing.
+ */
+public class SimulationMain {
+
+    public static void main(String[] args) {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add("node-" + i);
+        }
+
+        ChurnScript churn = new ChurnScript()
+                .add(10, "node-new", 1)
+                .remove(15, "node-0")
+                .ramp(20, "node-ramped", 1, 4, 3, 2);
+
+        KeyDistribution keys = KeyDistribution.zipfian(1_000_000, 0.99d);
+
+        run("consistent", StableHashStaticFactory.newConsistentHash(nodes), keys, churn, ticks);
+        run("rendezvous", StableHashStaticFactory.newRendezvousHash(nodes), keys, churn, ticks);
+    }
+
+    private static void run(String name, StableHash<String> hash, KeyDistribution keys, ChurnScript churn, int ticks) {
+        SimulationReport report = new Simulation(hash, keys)
+                .churn(churn)
+                .ticks(ticks)
+                .requestsPerTick(50_000)
+                .cacheSize(20_000)
+                .run();
+        System.out.println("== " + name);
+        System.out.println(report);
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of a {@link Simulation} run.
+ */
+public final class SimulationReport {
+
+    private final String workload;
+    private final long requests;
+    private final long unrouted;
+    private final long elapsedNanos;
+    private final Map<String, NodeLoad> nodeLoads;
+    private final List<Change> changes;
+    private final double[] hitRates;
+
+    SimulationReport(String workload, long requests, long unrouted, long elapsedNanos,
+                     Map<String, NodeLoad> nodeLoads, List<Change> changes, double[] hitRates) {
+        this.workload = workload;
+        this.requests = requests;
+        this.unrouted = unrouted;
+        this.elapsedNanos = elapsedNanos;
+        this.nodeLoads = Collections.unmodifiableMap(nodeLoads);
+        this.changes = Collections.unmodifiableList(changes);
+        this.hitRates = hitRates.clone();
+    }
+
+    /**
+     * @return routed requests per second of wall clock time
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0.0d : requests * 1e9d / elapsedNanos;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getUnrouted() {
+        return unrouted;
+    }
+
+    public Map<String, NodeLoad> getNodeLoads() {
+        return nodeLoads;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @param tick  Tick number
+     * @return      Fraction of served requests which hit node cache in given tick
+     */
+    public double getHitRate(int tick) {
+        return hitRates[tick];
+    }
+
+    /**
+     * @return ratio of the most loaded node to the mean load
+     */
+    public double getPeakToMeanLoad() {
+        long max = 0;
+        long sum = 0;
+        for (NodeLoad load : nodeLoads.values()) {
+            max = Math.max(max, load.getRequests());
+            sum += load.getRequests();
+        }
+        return sum == 0 ? 0.0d : max / ((double) sum / nodeLoads.size());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("workload: %s%n", workload));
+        sb.append(String.format("requests: %d (unrouted %d), throughput: %.0f req/s, peak-to-mean load: %.3f%n",
+                requests, unrouted, getThroughput(), getPeakToMeanLoad()));
+        sb.append(String.format("nodes:%n"));
+        nodeLoads.forEach((node, load) -> sb.append(String.format("  %-24s served %10d  rejected %10d  hit rate %.3f%n",
+                node, load.getServed(), load.getRejected(), load.getHitRate())));
+        sb.append(String.format("changes:%n"));
+        for (Change change : changes) {
+            int tick = change.getTick();
+            sb.append(String.format("  tick %4d  %-24s moved %.4f  hit rate %.3f -> %.3f%n", tick, change.getDescription(),
+                    change.getMovedFraction(), tick > 0 ? hitRates[tick - 1] : 0.0d, hitRates[tick]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Load of single node over whole simulation.
+     */
+    public static final class NodeLoad {
+
+        private final long served;
+        private final long rejected;
+        private final long hits;
+
+        NodeLoad(long served, long rejected, long hits) {
+            this.served = served;
+            this.rejected = rejected;
+            this.hits = hits;
+        }
+
+        public long getRequests() {
+            return served + rejected;
+        }
+
+        public long getServed() {
+            return served;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public double getHitRate() {
+            return served == 0 ? 0.0d : (double) hits / served;
+        }
+
+    }
+
+    /**
+     * Membership change and fraction of probed keys it moved to different node.
+     */
+    public static final class Change {
+
+        private final int tick;
+        private final String description;
+        private final double movedFraction;
+
+        Change(int tick, String description, double movedFraction) {
+            this.tick = tick;
+            this.description = description;
+            this.movedFraction = movedFraction;
+        }
+
+        public int getTick() {
+            return tick;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public double getMovedFraction() {
+            return movedFraction;
+        }
+
+    }
+
+}
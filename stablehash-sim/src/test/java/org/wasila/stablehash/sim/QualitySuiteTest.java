@@ -0,0 +1,103 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class QualitySuiteTest {
+
+    @Test
+    public void measuresEveryScenarioAndNodeCount() {
+        QualitySuite suite = new QualitySuite().nodeCounts(3, 10).probeKeys(5_000).buildRepeats(1).parallelism(2);
+        List<QualityResult> results = suite.run();
+
+        Assert.assertEquals(QualitySuite.defaultScenarios().size() * 2 * QualitySuite.Lookup.values().length,
+                results.size());
+        for (QualityResult result : results) {
+            Assert.assertTrue(result.toString(), result.getPeakToMean() >= 1.0d);
+            Assert.assertTrue(result.toString(), result.getMovedOnAdd() > 0.0d && result.getMovedOnAdd() < 0.5d);
+            Assert.assertTrue(result.toString(), result.getMovedOnRemove() > 0.0d && result.getMovedOnRemove() < 0.6d);
+            Assert.assertTrue(result.toString(), result.getHeapBytesPerNode() > 0.0d);
+        }
+    }
+
+    @Test
+    public void rendezvousMovesOptimalFractionOfKeys() {
+        QualityResult result = new QualitySuite()
+                .scenarios(Arrays.asList(new QualitySuite.Scenario("rendezvous", "MD5", StableHashStaticFactory::newRendezvousHash)))
+                .lookups(QualitySuite.Lookup.KEYED)
+                .nodeCounts(20)
+                .probeKeys(20_000)
+                .run()
+                .get(0);
+
+        Assert.assertTrue(result.isBalanceSampled());
+        Assert.assertEquals(result.getOptimalOnAdd(), result.getMovedOnAdd(), 0.01d);
+        Assert.assertEquals(result.getOptimalOnRemove(), result.getMovedOnRemove(), 0.01d);
+        Assert.assertEquals(result.getOptimalOnReweight(), result.getMovedOnReweight(), 0.01d);
+        Assert.assertEquals(1.0d, result.getReweightedShare(), 0.05d);
+    }
+
+    @Test
+    public void stringLookupsHashKeysWithScenarioFactory() {
+        List<QualityResult> results = new QualitySuite()
+                .scenarios(Arrays.asList(
+                        new QualitySuite.Scenario("rendezvous", "SHA-256", weights ->
+                                StableHashStaticFactory.newRendezvousHash(new DigestHashFactory("SHA-256"), weights), 10)))
+                .nodeCounts(10, 20)
+                .probeKeys(5_000)
+                .run();
+
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals("keyed", results.get(0).getLookup());
+        Assert.assertEquals("string", results.get(1).getLookup());
+        Assert.assertEquals(10, results.get(1).getNodes());
+        Assert.assertEquals(20, results.get(2).getNodes());
+        Assert.assertEquals(results.get(1).getOptimalOnRemove(), results.get(1).getMovedOnRemove(), 0.02d);
+    }
+
+    @Test
+    public void jsonListsSettingsAndResults() {
+        QualitySuite suite = new QualitySuite()
+                .scenarios(QualitySuite.defaultScenarios().subList(0, 2))
+                .nodeCounts(5)
+                .probeKeys(1_000)
+                .seed(7);
+        String json = suite.toJson(suite.run());
+
+        Assert.assertTrue(json, json.startsWith("{\"suite\":\"distribution-quality\",\"version\":1,\"seed\":7,\"probeKeys\":1000,"));
+        Assert.assertTrue(json, json.contains("{\"algorithm\":\"consistent\",\"hashFactory\":\"MD5\",\"lookup\":\"keyed\",\"nodes\":5,"));
+        Assert.assertTrue(json, json.contains("{\"algorithm\":\"consistent\",\"hashFactory\":\"MD5\",\"lookup\":\"string\",\"nodes\":5,"));
+        Assert.assertTrue(json, json.contains("{\"algorithm\":\"consistent-64\",\"hashFactory\":\"MD5\",\"lookup\":\"keyed\",\"nodes\":5,"));
+        Assert.assertTrue(json, json.contains(",\"vnodeCacheMaxPoints\":"));
+        Assert.assertTrue(json, json.endsWith("}\n]}"));
+        Assert.assertFalse(json, json.contains("NaN"));
+    }
+
+    @Test
+    public void digestFactoryMatchesDefaultLayoutOfWords() {
+        DigestHashFactory md5 = new DigestHashFactory("MD5");
+        Assert.assertEquals(StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "b", "c")).getNode("key"),
+                StableHashStaticFactory.newConsistentHash(md5, Arrays.asList("a", "b", "c")).getNode("key"));
+        Assert.assertEquals(new DigestHashFactory("SHA-1"), new DigestHashFactory("SHA-1"));
+    }
+
+}
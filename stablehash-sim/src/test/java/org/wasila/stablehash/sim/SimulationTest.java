@@ -0,0 +1,59 @@
+/**
+ * (C) Copyright 2017 Adam Wasila.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wasila.stablehash.sim;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wasila.stablehash.StableHashStaticFactory;
+
+import java.util.Arrays;
+
+public class SimulationTest {
+
+    @Test
+    public void reportsLoadAndKeyMovement() {
+        SimulationReport report = new Simulation(
+                StableHashStaticFactory.newConsistentHash(Arrays.asList("a", "b", "c", "d")),
+                KeyDistribution.zipfian(10_000, 0.9d))
+                .churn(new ChurnScript().add(3, "e", 1))
+                .ticks(6)
+                .requestsPerTick(5_000)
+                .parallelism(2)
+                .run();
+
+        Assert.assertEquals(30_000, report.getRequests());
+        Assert.assertEquals(30_000, report.getNodeLoads().values().stream().mapToLong(SimulationReport.NodeLoad::getRequests).sum());
+        Assert.assertEquals(5, report.getNodeLoads().size());
+        Assert.assertEquals(1, report.getChanges().size());
+        double moved = report.getChanges().get(0).getMovedFraction();
+        Assert.assertTrue(moved > 0.05d && moved < 0.5d);
+        Assert.assertTrue(report.getHitRate(2) > report.getHitRate(0));
+    }
+
+    @Test
+    public void capacityLimitsRejectRequests() {
+        SimulationReport report = new Simulation(
+                StableHashStaticFactory.newRendezvousHash(Arrays.asList("a", "b")),
+                KeyDistribution.uniform(1000))
+                .ticks(2)
+                .requestsPerTick(1000)
+                .nodeCapacity(100)
+                .run();
+
+        report.getNodeLoads().values().forEach(load -> Assert.assertTrue(load.getRejected() > 0));
+    }
+
+}